@@ -0,0 +1,122 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.benchmark;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import hu.icellmobilsoft.coffee.cdi.logger.AppLogger;
+import hu.speter555.mockservice.exception.ErrorLogLimiter;
+import hu.speter555.mockservice.exception.FaultBodies;
+import hu.speter555.mockservice.exception.MockNotFoundException;
+import hu.speter555.mockservice.exception.RestExceptionMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mapping of the missing mock files to the 418 response, the path of every unmocked url
+ *
+ * @author speter555
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExceptionMappingBenchmark {
+
+    private static final String FILE_PATH = "rest/userService/unmocked.json";
+
+    private RestExceptionMapper mapper;
+
+    private MockNotFoundException exception;
+
+    /**
+     * Creates the mapper with a logger discarding everything, like a production log level, and with a JSON client
+     *
+     * @throws ReflectiveOperationException if the dependencies cannot be injected
+     */
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        mapper = new RestExceptionMapper();
+        AppLogger logger = (AppLogger) Proxy.newProxyInstance(AppLogger.class.getClassLoader(), new Class<?>[] { AppLogger.class },
+                (proxy, method, args) -> method.getReturnType() == boolean.class ? Boolean.FALSE : null);
+        HttpHeaders httpHeaders = (HttpHeaders) Proxy.newProxyInstance(HttpHeaders.class.getClassLoader(), new Class<?>[] { HttpHeaders.class },
+                (proxy, method, args) -> "getAcceptableMediaTypes".equals(method.getName()) ? List.of(MediaType.APPLICATION_JSON_TYPE) : null);
+        ErrorLogLimiter errorLogLimiter = new ErrorLogLimiter();
+        inject(ErrorLogLimiter.class, errorLogLimiter, "intervalMillis", 10_000L);
+        inject(RestExceptionMapper.class, mapper, "log", logger);
+        inject(RestExceptionMapper.class, mapper, "faultBodies", new FaultBodies());
+        inject(RestExceptionMapper.class, mapper, "errorLogLimiter", errorLogLimiter);
+        inject(RestExceptionMapper.class, mapper, "httpHeaders", httpHeaders);
+        exception = new MockNotFoundException(FILE_PATH);
+    }
+
+    /**
+     * Creates the exception of a miss
+     *
+     * @return exception
+     */
+    @Benchmark
+    public MockNotFoundException create() {
+        return new MockNotFoundException(FILE_PATH);
+    }
+
+    /**
+     * Maps the exception of a miss to the response
+     *
+     * @return 418 response
+     */
+    @Benchmark
+    public Response map() {
+        return mapper.toResponse(exception);
+    }
+
+    /**
+     * Creates and maps the exception of a miss, the whole miss path after the lookup
+     *
+     * @return 418 response
+     */
+    @Benchmark
+    public Response createAndMap() {
+        return mapper.toResponse(new MockNotFoundException(FILE_PATH));
+    }
+
+    private static void inject(Class<?> type, Object target, String name, Object value) throws ReflectiveOperationException {
+        Field field = type.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -0,0 +1,156 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.benchmark;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import hu.icellmobilsoft.coffee.dto.exception.BaseException;
+import hu.speter555.mockservice.cache.MockCache;
+import hu.speter555.mockservice.cache.MockEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lookups of the mock file cache under contention. The keys are skewed towards a hot set like real traffic, and the
+ * larger key counts do not fit into the cache, so they measure the miss and eviction path as well.
+ *
+ * @author speter555
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MockCacheBenchmark {
+
+    private static final int MAX_ENTRIES = 10_000;
+
+    private static final int SEQUENCE_LENGTH = 1 << 16;
+
+    @Param({ "1000", "100000" })
+    private int keyCount;
+
+    private MockCache<String, MockEntry> cache;
+
+    private String[] sequence;
+
+    private MockEntry entry;
+
+    /**
+     * Key sequence position of a benchmark thread
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int position = new SplittableRandom().nextInt(SEQUENCE_LENGTH);
+
+        String next(String[] sequence) {
+            position = (position + 1) & (SEQUENCE_LENGTH - 1);
+            return sequence[position];
+        }
+    }
+
+    /**
+     * Creates the cache with the hot keys loaded, and the skewed key sequence
+     */
+    @Setup
+    public void setup() {
+        entry = MockEntry.of("{\"id\":1,\"name\":\"mock\"}", "application/json");
+        cache = new MockCache<>(MAX_ENTRIES, Long.MAX_VALUE, MockEntry::getHeapSize);
+        String[] keys = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = "rest/userService/" + i + ".json";
+            if (i < MAX_ENTRIES) {
+                cache.put(keys[i], entry);
+            }
+        }
+        // the cube of a uniform value puts about half of the lookups on the first eighth of the keys
+        SplittableRandom random = new SplittableRandom(42);
+        sequence = new String[SEQUENCE_LENGTH];
+        for (int i = 0; i < SEQUENCE_LENGTH; i++) {
+            double uniform = random.nextDouble();
+            sequence[i] = keys[(int) (keyCount * uniform * uniform * uniform)];
+        }
+    }
+
+    /**
+     * Lookup without loading, the path of the request serving
+     *
+     * @param cursor key sequence position
+     * @return cached entry or null
+     */
+    @Benchmark
+    @Threads(8)
+    public MockEntry getIfPresent(Cursor cursor) {
+        return cache.getIfPresent(cursor.next(sequence));
+    }
+
+    /**
+     * Lookup with loading and eviction of the missing keys
+     *
+     * @param cursor key sequence position
+     * @return cached or loaded entry
+     * @throws BaseException never, the loader does not fail
+     */
+    @Benchmark
+    @Threads(8)
+    public MockEntry getOrLoad(Cursor cursor) throws BaseException {
+        return cache.getOrLoad(cursor.next(sequence), key -> entry);
+    }
+
+    /**
+     * Lookups while other threads replace entries, like recorded redirect responses
+     *
+     * @param cursor key sequence position
+     * @return cached entry or null
+     */
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(6)
+    public MockEntry readWriteGet(Cursor cursor) {
+        return cache.getIfPresent(cursor.next(sequence));
+    }
+
+    /**
+     * Replaces entries while other threads look up
+     *
+     * @param cursor key sequence position
+     */
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(2)
+    public void readWritePut(Cursor cursor) {
+        cache.put(cursor.next(sequence), entry);
+    }
+}
@@ -0,0 +1,49 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.benchmark;
+
+/**
+ * Generated mock payloads of the benchmarks
+ *
+ * @author speter555
+ */
+final class Payloads {
+
+    private Payloads() {
+    }
+
+    /**
+     * Creates a JSON array of user objects
+     *
+     * @param size approximate size in bytes
+     * @return JSON text, not shorter than the size
+     */
+    static String json(int size) {
+        StringBuilder json = new StringBuilder(size + 64).append('[');
+        for (int i = 0; json.length() < size; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(i).append(",\"name\":\"user").append(i).append("\",\"email\":\"user").append(i)
+                    .append("@example.com\",\"active\":true}");
+        }
+        return json.append(']').toString();
+    }
+}
@@ -0,0 +1,102 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import hu.speter555.mockservice.httpclient.RedirectCoalescer;
+import hu.speter555.mockservice.rest.MockRest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing of the redirect headers and the key of the redirect call coalescing
+ *
+ * @author speter555
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RedirectHeaderBenchmark {
+
+    private static final String URL = "http://localhost:8080/rest/userService/1";
+
+    @Param({ "1", "8" })
+    private int headerCount;
+
+    private String redirectHeaders;
+
+    private Map<String, String> requestHeaders;
+
+    private Map<String, String> parsedHeaders;
+
+    private String body;
+
+    /**
+     * Creates the request headers and the redirect header list
+     */
+    @Setup
+    public void setup() {
+        requestHeaders = new HashMap<>();
+        StringBuilder names = new StringBuilder();
+        for (int i = 0; i < headerCount; i++) {
+            String name = "X-Mock-Header-" + i;
+            requestHeaders.put(name, "value-" + i);
+            names.append(i > 0 ? "," : "").append(name);
+        }
+        redirectHeaders = names.toString();
+        parsedHeaders = MockRest.parseRedirectHeaders(redirectHeaders, requestHeaders::get);
+        body = Payloads.json(1024);
+    }
+
+    /**
+     * Parses the MOCKSERVICE-REDIRECT-HEADERS header
+     *
+     * @return listed headers with their values
+     */
+    @Benchmark
+    public Map<String, String> parse() {
+        return MockRest.parseRedirectHeaders(redirectHeaders, requestHeaders::get);
+    }
+
+    /**
+     * Computes the coalescing key of a redirect call with body
+     *
+     * @return coalescing key
+     */
+    @Benchmark
+    public String coalescingKey() {
+        return RedirectCoalescer.key("POST", URL, parsedHeaders, body);
+    }
+}
@@ -0,0 +1,129 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.benchmark;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import hu.icellmobilsoft.coffee.dto.exception.BaseException;
+import hu.speter555.mockservice.cache.MockEntry;
+import hu.speter555.mockservice.util.FileUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading and decoding of mock files of several sizes, the cache miss path of the request serving
+ *
+ * @author speter555
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResourceReadBenchmark {
+
+    @Param({ "1024", "65536", "1048576" })
+    private int size;
+
+    private Path file;
+
+    private MockEntry entry;
+
+    /**
+     * Writes a JSON mock file of the benchmarked size
+     *
+     * @throws IOException if the file cannot be written
+     * @throws BaseException if the file cannot be read
+     */
+    @Setup
+    public void setup() throws IOException, BaseException {
+        file = Files.createTempFile("mockservice-benchmark", ".json");
+        Files.write(file, Payloads.json(size).getBytes(StandardCharsets.UTF_8));
+        entry = MockEntry.of(FileUtil.readFileContent(file, Long.MAX_VALUE), FileUtil.getMediaType(file.toString()));
+    }
+
+    /**
+     * Deletes the mock file
+     *
+     * @throws IOException if the file cannot be deleted
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Reads the file into the heap
+     *
+     * @return file entry
+     * @throws BaseException if the file cannot be read
+     */
+    @Benchmark
+    public MockEntry readHeap() throws BaseException {
+        return MockEntry.of(FileUtil.readFileContent(file, Long.MAX_VALUE), FileUtil.getMediaType(file.toString()));
+    }
+
+    /**
+     * Memory-maps the file
+     *
+     * @return file entry
+     * @throws BaseException if the file cannot be read
+     */
+    @Benchmark
+    public MockEntry readMapped() throws BaseException {
+        return MockEntry.of(FileUtil.readFileContent(file, 0), FileUtil.getMediaType(file.toString()));
+    }
+
+    /**
+     * Decodes the body as UTF-8 text, the path of the body validation and logging
+     *
+     * @return decoded body
+     */
+    @Benchmark
+    public String decode() {
+        return entry.getBodyAsString();
+    }
+
+    /**
+     * Returns the body without decoding
+     *
+     * @return read-only view of the body
+     */
+    @Benchmark
+    public ByteBuffer body() {
+        return entry.getBody();
+    }
+}
@@ -0,0 +1,143 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+import hu.icellmobilsoft.coffee.dto.exception.BaseException;
+import hu.speter555.mockservice.cache.MockEntry;
+import hu.speter555.mockservice.util.FileUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Serialization of the cached mock entries into the response, from heap and from memory-mapped files
+ *
+ * @author speter555
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseWriteBenchmark {
+
+    @Param({ "1024", "65536", "1048576" })
+    private int size;
+
+    private Path file;
+
+    private MockEntry heapEntry;
+
+    private MockEntry mappedEntry;
+
+    private OutputStream output;
+
+    /**
+     * Creates the heap and the memory-mapped entries of the benchmarked size
+     *
+     * @param blackhole consumes the written bytes
+     * @throws IOException if the file cannot be written
+     * @throws BaseException if the file cannot be read
+     */
+    @Setup
+    public void setup(Blackhole blackhole) throws IOException, BaseException {
+        byte[] body = Payloads.json(size).getBytes(StandardCharsets.UTF_8);
+        heapEntry = MockEntry.of(body, FileUtil.getMediaType(".json"));
+        file = Files.createTempFile("mockservice-benchmark", ".json");
+        Files.write(file, body);
+        mappedEntry = MockEntry.of(FileUtil.readFileContent(file, 0), FileUtil.getMediaType(".json"));
+        output = new OutputStream() {
+
+            @Override
+            public void write(int b) {
+                blackhole.consume(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                blackhole.consume(b);
+                blackhole.consume(len);
+            }
+        };
+    }
+
+    /**
+     * Deletes the mapped file
+     *
+     * @throws IOException if the file cannot be deleted
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Writes a heap entry
+     *
+     * @throws IOException never, the output discards the bytes
+     */
+    @Benchmark
+    public void writeHeap() throws IOException {
+        heapEntry.write(output);
+    }
+
+    /**
+     * Writes a memory-mapped entry
+     *
+     * @throws IOException never, the output discards the bytes
+     */
+    @Benchmark
+    public void writeMapped() throws IOException {
+        mappedEntry.write(output);
+    }
+
+    /**
+     * Builds the response of an entry like the mock endpoints
+     *
+     * @return response
+     */
+    @Benchmark
+    public Response buildResponse() {
+        return Response.ok(heapEntry, heapEntry.getMediaType())
+                .header(HttpHeaders.CONTENT_LENGTH, heapEntry.getContentLength())
+                .build();
+    }
+}
@@ -0,0 +1,191 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.loadtest;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Command line options of the load harness, in {@code --name=value} form
+ *
+ * @author speter555
+ */
+final class HarnessOptions {
+
+    private final Map<String, String> values = new HashMap<>();
+
+    private HarnessOptions() {
+    }
+
+    /**
+     * Parses the arguments, an argument may contain several options separated by whitespace
+     *
+     * @param args command line arguments
+     * @return options
+     * @throws IllegalArgumentException if an argument is not an option
+     */
+    static HarnessOptions parse(String[] args) {
+        HarnessOptions options = new HarnessOptions();
+        for (String arg : args) {
+            for (String option : arg.trim().split("\\s+")) {
+                if (option.isEmpty()) {
+                    continue;
+                }
+                if (!option.startsWith("--")) {
+                    throw new IllegalArgumentException("Invalid option: [" + option + "], usage: --name=value");
+                }
+                int separator = option.indexOf('=');
+                if (separator < 0) {
+                    options.values.put(option.substring(2), "true");
+                } else {
+                    options.values.put(option.substring(2, separator), option.substring(separator + 1));
+                }
+            }
+        }
+        return options;
+    }
+
+    /**
+     * @return Thorntail uber jar of the service, null if the service is not booted by the harness
+     */
+    Path getJar() {
+        String jar = values.get("jar");
+        return jar == null || jar.isBlank() ? null : Path.of(jar);
+    }
+
+    /**
+     * @return base URI of an already running service, null if the harness boots the service
+     */
+    URI getTarget() {
+        String target = values.get("target");
+        return target == null || target.isBlank() ? null : URI.create(target.endsWith("/") ? target : target + "/");
+    }
+
+    /**
+     * @return HTTP port of the booted service
+     */
+    int getPort() {
+        return getInt("port", 18080);
+    }
+
+    /**
+     * @return extra JVM options of the booted service, separated by commas
+     */
+    List<String> getJavaOptions() {
+        return getList("java-opts", "");
+    }
+
+    /**
+     * @return workloads to run, in order
+     */
+    List<Workload> getWorkloads() {
+        List<Workload> workloads = new ArrayList<>();
+        for (String name : getList("workloads", "mock-hit,cache-miss,redirect")) {
+            workloads.add(Workload.valueOf(name.toUpperCase(Locale.ROOT).replace('-', '_')));
+        }
+        return workloads;
+    }
+
+    /**
+     * @return number of concurrent clients
+     */
+    int getConcurrency() {
+        return getInt("concurrency", 64);
+    }
+
+    /**
+     * @return requests per second sent by all clients together at fixed intervals, 0 if every client sends its next
+     *         request when the previous one is answered
+     */
+    int getRate() {
+        return getInt("rate", 0);
+    }
+
+    /**
+     * @return warmup of every workload, not measured
+     */
+    Duration getWarmup() {
+        return Duration.ofSeconds(getInt("warmup", 10));
+    }
+
+    /**
+     * @return measured duration of every workload
+     */
+    Duration getDuration() {
+        return Duration.ofSeconds(getInt("duration", 30));
+    }
+
+    /**
+     * @return response delay of the upstream stub
+     */
+    Duration getUpstreamDelay() {
+        return Duration.ofMillis(getInt("upstream-delay-millis", 20));
+    }
+
+    /**
+     * @return number of mock files of the cache miss workload, more than the cache capacity of the booted service
+     */
+    int getMissFiles() {
+        return getInt("miss-files", 10_000);
+    }
+
+    /**
+     * @return cache capacity of the booted service
+     */
+    int getCacheEntries() {
+        return getInt("cache-entries", 1000);
+    }
+
+    /**
+     * @return JSON report file, null if only the console report is written
+     */
+    Path getReport() {
+        String report = values.get("report");
+        return report == null || report.isBlank() ? null : Path.of(report);
+    }
+
+    private int getInt(String name, int defaultValue) {
+        String value = values.get(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option --" + name + " is not a number: [" + value + "]", e);
+        }
+    }
+
+    private List<String> getList(String name, String defaultValue) {
+        List<String> list = new ArrayList<>();
+        for (String item : values.getOrDefault(name, defaultValue).split(",")) {
+            if (!item.isBlank()) {
+                list.add(item.trim());
+            }
+        }
+        return list;
+    }
+}
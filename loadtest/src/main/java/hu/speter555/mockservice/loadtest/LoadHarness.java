@@ -0,0 +1,220 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import hu.speter555.mockservice.metrics.Histogram;
+
+/**
+ * End-to-end load harness. Boots the service from its Thorntail jar and an upstream stub on localhost, then drives the
+ * workloads one after the other with a fixed number of concurrent clients, and reports the throughput and the latency
+ * quantiles.
+ * <p>
+ * By default the clients send the next request when the previous one is answered (closed loop), so the latencies are
+ * measured at the throughput the service can sustain. A stalled service also stalls the clients, the requests they
+ * would have sent meanwhile are never measured, and the high quantiles look better than reality (coordinated omission).
+ * With {@code --rate} the clients send at fixed intervals (open loop), and the latency is measured from the intended send
+ * time, so the time a request waited for a busy client is included.
+ *
+ * @author speter555
+ */
+public final class LoadHarness {
+
+    private static final Duration READY_TIMEOUT = Duration.ofMinutes(2);
+
+    private static final int UPSTREAM_THREADS = 256;
+
+    private final HarnessOptions options;
+
+    private final HttpClient client;
+
+    private LoadHarness(HarnessOptions options) {
+        this.options = options;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    /**
+     * Runs the harness
+     *
+     * @param args options like {@code --concurrency=64 --duration=30 --workloads=mock-hit,redirect}, see the README
+     * @throws Exception if the service cannot be booted or the report cannot be written
+     */
+    public static void main(String[] args) throws Exception {
+        new LoadHarness(HarnessOptions.parse(args)).run();
+    }
+
+    private void run() throws Exception {
+        List<LoadResult> results = new ArrayList<>();
+        Path mockDirectory = Files.createTempDirectory("mockservice-loadtest");
+        try (UpstreamStub upstream = UpstreamStub.start(options.getUpstreamDelay(), UPSTREAM_THREADS)) {
+            URI target = options.getTarget();
+            if (target != null) {
+                results = runWorkloads(target, upstream.getUri());
+            } else {
+                writeMissFiles(mockDirectory);
+                try (ServiceProcess service = ServiceProcess.start(requireJar(), options.getPort(), mockDirectory, options.getCacheEntries(),
+                        options.getJavaOptions())) {
+                    System.out.println("Booting service, console output: " + service.getLog());
+                    service.awaitReady(client, READY_TIMEOUT);
+                    results = runWorkloads(service.getUri(), upstream.getUri());
+                }
+            }
+        } finally {
+            deleteRecursively(mockDirectory);
+        }
+        writeReport(results);
+    }
+
+    private List<LoadResult> runWorkloads(URI base, URI upstream) throws InterruptedException {
+        List<LoadResult> results = new ArrayList<>();
+        System.out.println(LoadResult.header());
+        for (Workload workload : options.getWorkloads()) {
+            LoadResult result = runWorkload(workload, base, upstream);
+            System.out.println(result.toLine());
+            results.add(result);
+        }
+        return results;
+    }
+
+    private LoadResult runWorkload(Workload workload, URI base, URI upstream) throws InterruptedException {
+        Histogram latency = new Histogram();
+        LongAdder errors = new LongAdder();
+        AtomicLong sequence = new AtomicLong();
+        long measureStart = System.nanoTime() + options.getWarmup().toNanos();
+        long measureEnd = measureStart + options.getDuration().toNanos();
+        int missFiles = options.getMissFiles();
+
+        int rate = options.getRate();
+        // every client sends its share of the rate
+        long intervalNanos = rate > 0 ? Math.max(1, TimeUnit.SECONDS.toNanos(options.getConcurrency()) / rate) : 0;
+        long start = System.nanoTime();
+
+        List<Thread> clients = new ArrayList<>();
+        for (int i = 0; i < options.getConcurrency(); i++) {
+            // the open-loop clients are staggered evenly over the interval
+            long firstSend = start + intervalNanos * i / options.getConcurrency();
+            Thread thread = new Thread(() -> {
+                long intended = firstSend;
+                while (!Thread.currentThread().isInterrupted()) {
+                    long sent = intervalNanos > 0 ? awaitSendTime(intended) : System.nanoTime();
+                    if (sent >= measureEnd) {
+                        return;
+                    }
+                    HttpRequest request = workload.request(base, upstream, sequence.getAndIncrement(), missFiles);
+                    boolean failed;
+                    try {
+                        failed = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() != 200;
+                    } catch (IOException e) {
+                        failed = true;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    // the requests started in the warmup are not measured
+                    if (sent >= measureStart) {
+                        latency.record(System.nanoTime() - sent);
+                        if (failed) {
+                            errors.increment();
+                        }
+                    }
+                    intended += intervalNanos;
+                }
+            }, "loadtest-" + workload.getName() + "-" + i);
+            thread.setDaemon(true);
+            clients.add(thread);
+            thread.start();
+        }
+        for (Thread thread : clients) {
+            thread.join();
+        }
+        return new LoadResult(workload, options.getConcurrency(), rate, options.getDuration().toNanos(), errors.sum(), latency);
+    }
+
+    /**
+     * Waits until the intended send time of an open-loop request. A client behind its schedule sends at once, but the
+     * latency is still measured from the intended time.
+     *
+     * @param intended intended send time in {@link System#nanoTime()}
+     * @return intended send time
+     */
+    private static long awaitSendTime(long intended) {
+        long remaining;
+        while ((remaining = intended - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(remaining);
+        }
+        return intended;
+    }
+
+    private Path requireJar() {
+        Path jar = options.getJar();
+        if (jar == null) {
+            throw new IllegalArgumentException("Either --jar or --target is required");
+        }
+        return jar;
+    }
+
+    private void writeMissFiles(Path mockDirectory) throws IOException {
+        Path directory = mockDirectory.resolve(Workload.MISS_DIRECTORY);
+        Files.createDirectories(directory);
+        for (int i = 0; i < options.getMissFiles(); i++) {
+            String body = "{\"id\":" + i + ",\"partnerName\":\"" + "x".repeat(1000) + "\"}";
+            Files.write(directory.resolve(i + ".json"), body.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void writeReport(List<LoadResult> results) throws IOException {
+        Path report = options.getReport();
+        if (report == null) {
+            return;
+        }
+        String json = results.stream().map(LoadResult::toJson).collect(Collectors.joining(",\n  ", "[\n  ", "\n]\n"));
+        Files.write(report, json.getBytes(StandardCharsets.UTF_8));
+        System.out.println("Report written: " + report.toAbsolutePath());
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.loadtest;
+
+import java.util.Locale;
+
+import hu.speter555.mockservice.metrics.Histogram;
+
+/**
+ * Measured throughput and latency distribution of a workload. The latencies of the closed-loop clients suffer from
+ * coordinated omission, see {@link LoadHarness}.
+ *
+ * @author speter555
+ */
+final class LoadResult {
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private static final String CLOSED_LOOP = "closed";
+
+    private final Workload workload;
+
+    private final int concurrency;
+
+    private final int rate;
+
+    private final long durationNanos;
+
+    private final long errors;
+
+    private final Histogram latency;
+
+    LoadResult(Workload workload, int concurrency, int rate, long durationNanos, long errors, Histogram latency) {
+        this.workload = workload;
+        this.concurrency = concurrency;
+        this.rate = rate;
+        this.durationNanos = durationNanos;
+        this.errors = errors;
+        this.latency = latency;
+    }
+
+    /**
+     * @return completed requests per second, including the failed ones
+     */
+    double getThroughput() {
+        return latency.getCount() / (durationNanos / NANOS_PER_SECOND);
+    }
+
+    /**
+     * @return header line of the console report
+     */
+    static String header() {
+        return String.format(Locale.ROOT, "%-12s %11s %9s %10s %12s %9s %9s %9s %9s %9s", "workload", "concurrency", "rate", "requests",
+                "req/s", "errors", "p50 ms", "p99 ms", "p999 ms", "max ms");
+    }
+
+    /**
+     * @return line of the console report
+     */
+    String toLine() {
+        return String.format(Locale.ROOT, "%-12s %11d %9s %10d %12.1f %9d %9.2f %9.2f %9.2f %9.2f", workload.getName(), concurrency,
+                rate > 0 ? String.valueOf(rate) : CLOSED_LOOP, latency.getCount(), getThroughput(), errors, millis(0.5), millis(0.99),
+                millis(0.999), latency.getMax() / NANOS_PER_MILLI);
+    }
+
+    /**
+     * @return JSON object of the report file
+     */
+    String toJson() {
+        return String.format(Locale.ROOT,
+                "{\"workload\":\"%s\",\"concurrency\":%d,\"rate\":%d,\"requests\":%d,\"errors\":%d,"
+                        + "\"throughput\":%.1f,\"p50Millis\":%.3f,\"p99Millis\":%.3f,\"p999Millis\":%.3f,\"maxMillis\":%.3f}",
+                workload.getName(), concurrency, rate, latency.getCount(), errors, getThroughput(), millis(0.5), millis(0.99),
+                millis(0.999), latency.getMax() / NANOS_PER_MILLI);
+    }
+
+    private double millis(double quantile) {
+        return latency.getValueAtQuantile(quantile) / NANOS_PER_MILLI;
+    }
+}
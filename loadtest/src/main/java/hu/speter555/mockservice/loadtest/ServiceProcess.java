@@ -0,0 +1,138 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The service booted from its Thorntail uber jar in a child JVM, so the harness does not disturb its heap and JIT
+ *
+ * @author speter555
+ */
+final class ServiceProcess implements AutoCloseable {
+
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(500);
+
+    private static final long STOP_TIMEOUT_SECONDS = 10;
+
+    private final Process process;
+
+    private final URI uri;
+
+    private final Path log;
+
+    private ServiceProcess(Process process, URI uri, Path log) {
+        this.process = process;
+        this.uri = uri;
+        this.log = log;
+    }
+
+    /**
+     * Starts the service
+     *
+     * @param jar Thorntail uber jar
+     * @param port HTTP port
+     * @param mockDirectory external mock directory of the service
+     * @param cacheEntries cache capacity of the service
+     * @param javaOptions extra JVM options
+     * @return started process, it may not be ready yet
+     * @throws IOException if the process cannot be started
+     */
+    static ServiceProcess start(Path jar, int port, Path mockDirectory, int cacheEntries, List<String> javaOptions) throws IOException {
+        if (!Files.isRegularFile(jar)) {
+            throw new IOException("Service jar [" + jar + "] does not exist, build it with mvn package");
+        }
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(javaOptions);
+        command.add("-Dthorntail.http.port=" + port);
+        command.add("-Dmockservice.mock.directory=" + mockDirectory);
+        command.add("-Dmockservice.cache.max.entries=" + cacheEntries);
+        command.add("-jar");
+        command.add(jar.toString());
+        Path log = Files.createTempFile("mockservice-loadtest", ".log");
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+        return new ServiceProcess(process, URI.create("http://localhost:" + port + "/"), log);
+    }
+
+    /**
+     * @return base URI of the service
+     */
+    URI getUri() {
+        return uri;
+    }
+
+    /**
+     * @return console output of the service
+     */
+    Path getLog() {
+        return log;
+    }
+
+    /**
+     * Waits until the service answers the root mock
+     *
+     * @param client HTTP client
+     * @param timeout maximum wait
+     * @throws IOException if the service exited or did not become ready in time
+     * @throws InterruptedException if interrupted
+     */
+    void awaitReady(HttpClient client, Duration timeout) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(POLL_INTERVAL).GET().build();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IOException("Service exited with code [" + process.exitValue() + "], see [" + log + "]");
+            }
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // not listening yet
+            }
+            Thread.sleep(POLL_INTERVAL.toMillis());
+        }
+        throw new IOException("Service is not ready in [" + timeout + "], see [" + log + "]");
+    }
+
+    @Override
+    public void close() {
+        process.destroy();
+        try {
+            if (!process.waitFor(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process upstream of the redirect workload. It answers every request with a small JSON body after a fixed delay,
+ * like a partner system.
+ *
+ * @author speter555
+ */
+final class UpstreamStub implements AutoCloseable {
+
+    private static final byte[] BODY = "{\"id\":1,\"partnerName\":\"upstream\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    private final long delayMillis;
+
+    private UpstreamStub(HttpServer server, ExecutorService executor, Duration delay) {
+        this.server = server;
+        this.executor = executor;
+        this.delayMillis = delay.toMillis();
+    }
+
+    /**
+     * Starts the stub on a free localhost port
+     *
+     * @param delay response delay
+     * @param threads number of handler threads, the delayed requests occupy a thread each
+     * @return started stub
+     * @throws IOException if the server cannot be started
+     */
+    static UpstreamStub start(Duration delay, int threads) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        UpstreamStub stub = new UpstreamStub(server, executor, delay);
+        server.createContext("/", stub::handle);
+        server.setExecutor(executor);
+        server.start();
+        return stub;
+    }
+
+    /**
+     * @return base URI of the stub
+     */
+    URI getUri() {
+        InetSocketAddress address = server.getAddress();
+        return URI.create("http://" + address.getHostString() + ":" + address.getPort() + "/");
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (InputStream request = exchange.getRequestBody(); OutputStream response = exchange.getResponseBody()) {
+            request.readAllBytes();
+            if (delayMillis > 0) {
+                Thread.sleep(delayMillis);
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, BODY.length);
+            response.write(BODY);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Request mix of a load run
+ *
+ * @author speter555
+ */
+enum Workload {
+
+    /**
+     * Requests of one cached mock file
+     */
+    MOCK_HIT {
+        @Override
+        HttpRequest request(URI base, URI upstream, long sequence, int missFiles) {
+            return get(base.resolve("rest/userService/0")).build();
+        }
+    },
+
+    /**
+     * Requests cycling through more mock files than the cache capacity, every request loads its file
+     */
+    CACHE_MISS {
+        @Override
+        HttpRequest request(URI base, URI upstream, long sequence, int missFiles) {
+            return get(base.resolve(MISS_DIRECTORY + "/" + (sequence % missFiles))).build();
+        }
+    },
+
+    /**
+     * Requests redirected to the upstream stub
+     */
+    REDIRECT {
+        @Override
+        HttpRequest request(URI base, URI upstream, long sequence, int missFiles) {
+            return get(base.resolve("loadtest/redirect/" + (sequence % REDIRECT_PATHS)))
+                    .header(REDIRECT_HEADER_URL, upstream.resolve("upstream/" + sequence).toString())
+                    .header("Accept", "application/json")
+                    .build();
+        }
+    };
+
+    /**
+     * Mock directory subdirectory of the cache miss files
+     */
+    static final String MISS_DIRECTORY = "loadtest/miss";
+
+    private static final String REDIRECT_HEADER_URL = "MOCKSERVICE-REDIRECT-URL";
+
+    private static final int REDIRECT_PATHS = 100;
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    /**
+     * Creates the request of a sequence number
+     *
+     * @param base base URI of the service
+     * @param upstream base URI of the upstream stub
+     * @param sequence sequence number of the request, unique in the run
+     * @param missFiles number of mock files of the cache miss workload
+     * @return request
+     */
+    abstract HttpRequest request(URI base, URI upstream, long sequence, int missFiles);
+
+    /**
+     * @return name of the workload on the command line and in the report
+     */
+    String getName() {
+        return name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+
+    private static HttpRequest.Builder get(URI uri) {
+        return HttpRequest.newBuilder(uri).timeout(REQUEST_TIMEOUT).GET();
+    }
+}
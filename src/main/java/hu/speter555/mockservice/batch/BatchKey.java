@@ -0,0 +1,158 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.batch;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.enterprise.inject.Vetoed;
+import javax.ws.rs.HttpMethod;
+
+import hu.speter555.mockservice.exception.InvalidBatchException;
+import hu.speter555.mockservice.util.JsonFields;
+
+/**
+ * Key of a mock request in a batch, like {@code GET /rest/users/1?type=full}. The method is optional, GET by default.
+ *
+ * @author speter555
+ */
+@Vetoed
+public final class BatchKey {
+
+    private static final Set<String> METHODS = Set.of(HttpMethod.DELETE, HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS,
+            HttpMethod.PATCH, HttpMethod.POST, HttpMethod.PUT);
+
+    private static final String ROOT = "root";
+
+    private final String key;
+
+    private final String method;
+
+    private final String path;
+
+    private final String query;
+
+    private BatchKey(String key, String method, String path, String query) {
+        this.key = key;
+        this.method = method;
+        this.path = path;
+        this.query = query;
+    }
+
+    /**
+     * Parses the key
+     *
+     * @param key key like {@code GET /rest/users/1?type=full} or {@code /rest/users/1}
+     * @return parsed key, null if the key is blank or its method is unknown
+     */
+    public static BatchKey parse(String key) {
+        if (key == null || key.isBlank()) {
+            return null;
+        }
+        String trimmed = key.trim();
+        String method = HttpMethod.GET;
+        String target = trimmed;
+        int space = trimmed.indexOf(' ');
+        if (space > 0) {
+            method = trimmed.substring(0, space);
+            target = trimmed.substring(space + 1).trim();
+            if (!METHODS.contains(method)) {
+                return null;
+            }
+        }
+        String query = null;
+        int question = target.indexOf('?');
+        if (question >= 0) {
+            query = target.substring(question + 1);
+            target = target.substring(0, question);
+        }
+        // like the path info of a mock request, without the leading slash
+        String path = target.startsWith("/") ? target.substring(1) : target;
+        return new BatchKey(trimmed, method, path.isEmpty() ? ROOT : path, query);
+    }
+
+    /**
+     * Parses the keys of a batch request
+     *
+     * @param request JSON array of keys, or one key per line if plain text
+     * @param plainText whether the request is plain text
+     * @param maxKeys maximum number of keys
+     * @return parsed keys in the order of the request
+     * @throws InvalidBatchException if the request is malformed, has an invalid key or more keys than the maximum
+     */
+    public static List<BatchKey> parseRequest(String request, boolean plainText, int maxKeys) throws InvalidBatchException {
+        List<String> values = plainText ? lines(request) : JsonFields.elements(request);
+        if (values == null) {
+            throw new InvalidBatchException("Batch request must be a JSON array of keys");
+        }
+        if (values.size() > maxKeys) {
+            throw new InvalidBatchException(
+                    MessageFormat.format("Batch request has [{0}] keys, the limit is [{1}]", values.size(), String.valueOf(maxKeys)));
+        }
+        List<BatchKey> keys = new ArrayList<>(values.size());
+        for (String value : values) {
+            String text = plainText ? value : JsonFields.unquote(value);
+            BatchKey key = text != null ? parse(text) : null;
+            if (key == null) {
+                throw new InvalidBatchException(MessageFormat.format("Invalid batch key: [{0}]", value));
+            }
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    private static List<String> lines(String request) {
+        List<String> lines = new ArrayList<>();
+        if (request != null) {
+            request.lines().filter(line -> !line.isBlank()).forEach(lines::add);
+        }
+        return lines;
+    }
+
+    /**
+     * @return the key as it was sent
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return http method
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return request path without the leading slash, {@code root} if empty
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return query string, not decoded, null if none
+     */
+    public String getQuery() {
+        return query;
+    }
+}
@@ -0,0 +1,177 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.ws.rs.core.Response;
+
+import hu.icellmobilsoft.coffee.dto.exception.BaseException;
+import hu.speter555.mockservice.cache.MockEntry;
+import hu.speter555.mockservice.config.ConfigKey;
+import hu.speter555.mockservice.exception.MockNotFoundException;
+import hu.speter555.mockservice.route.RouteMatch;
+import hu.speter555.mockservice.route.RouteTable;
+import hu.speter555.mockservice.template.ResponseTemplate;
+import hu.speter555.mockservice.template.TemplateContext;
+import hu.speter555.mockservice.util.CacheFileHelper;
+import hu.speter555.mockservice.util.NamedThreadFactory;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Resolves the mock files of the batch keys, like the mock requests without redirect header. The cached and preloaded
+ * files are resolved by the calling thread, the cache misses are loaded in parallel by the batch threads.
+ *
+ * @author speter555
+ */
+@ApplicationScoped
+public class BatchResolver {
+
+    private static final String JSON_EXTENSION = ".json";
+
+    private static final int HTTP_STATUS_I_AM_A_TEAPOT = 418;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.BATCH_PARALLELISM, defaultValue = "0")
+    private int parallelism;
+
+    @Inject
+    private CacheFileHelper cacheFileHelper;
+
+    @Inject
+    private RouteTable routeTable;
+
+    private ExecutorService executor;
+
+    /**
+     * Starts the batch threads
+     */
+    @PostConstruct
+    public void init() {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        executor = Executors.newFixedThreadPool(threads, new NamedThreadFactory("mock-batch"));
+    }
+
+    /**
+     * Stops the batch threads
+     */
+    @PreDestroy
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Resolves the mock files of the keys
+     *
+     * @param keys batch keys
+     * @return results in the order of the keys, the cached files are completed, the cache misses are completed when
+     *         they are loaded. The futures are never completed exceptionally, the errors are results.
+     */
+    public List<CompletableFuture<BatchResult>> resolve(List<BatchKey> keys) {
+        List<CompletableFuture<BatchResult>> results = new ArrayList<>(keys.size());
+        for (BatchKey key : keys) {
+            String filePath = key.getPath() + JSON_EXTENSION;
+            // the last redirect response of the path takes precedence over the mock files, like at the mock requests
+            MockEntry redirectResponse = cacheFileHelper.getRedirectResponse(filePath);
+            if (redirectResponse != null) {
+                results.add(CompletableFuture.completedFuture(BatchResult.ok(key.getKey(), redirectResponse)));
+                continue;
+            }
+            Map<String, String> pathParameters = Map.of();
+            if (routeTable.isEnabled()) {
+                RouteMatch match = routeTable.match(key.getMethod(), key.getPath(), key.getQuery());
+                if (match == null) {
+                    results.add(CompletableFuture.completedFuture(notFound(key, new MockNotFoundException(filePath))));
+                    continue;
+                }
+                filePath = match.getFilePath();
+                pathParameters = match.getParameters();
+            }
+            String mockFile = filePath;
+            Map<String, String> parameters = pathParameters;
+            if (cacheFileHelper.isLoaded(mockFile)) {
+                results.add(CompletableFuture.completedFuture(load(key, mockFile, parameters)));
+            } else {
+                results.add(CompletableFuture.supplyAsync(() -> load(key, mockFile, parameters), executor));
+            }
+        }
+        return results;
+    }
+
+    private BatchResult load(BatchKey key, String filePath, Map<String, String> pathParameters) {
+        try {
+            return BatchResult.ok(key.getKey(), render(cacheFileHelper.getOrLoadResource(filePath), key, pathParameters));
+        } catch (MockNotFoundException e) {
+            return notFound(key, e);
+        } catch (BaseException | RuntimeException e) {
+            return BatchResult.failed(key.getKey(), Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), e.getLocalizedMessage());
+        }
+    }
+
+    private static BatchResult notFound(BatchKey key, MockNotFoundException e) {
+        // the status of an unmocked request
+        return BatchResult.failed(key.getKey(), HTTP_STATUS_I_AM_A_TEAPOT, e.getLocalizedMessage());
+    }
+
+    /**
+     * Renders the template of the mock file by the key, a batch key has no headers and no body
+     */
+    private static MockEntry render(MockEntry entry, BatchKey key, Map<String, String> pathParameters) {
+        ResponseTemplate template = entry.getTemplate();
+        if (template == null) {
+            return entry;
+        }
+        Map<String, String> query = RouteTable.parseQuery(key.getQuery());
+        TemplateContext context = new TemplateContext() {
+
+            @Override
+            public String getPathParameter(String name) {
+                return pathParameters.get(name);
+            }
+
+            @Override
+            public String getQueryParameter(String name) {
+                return query.get(name);
+            }
+
+            @Override
+            public String getHeader(String name) {
+                return null;
+            }
+
+            @Override
+            public String getBody() {
+                return null;
+            }
+        };
+        return MockEntry.rendered(template.render(context), entry.getMediaType());
+    }
+}
@@ -0,0 +1,96 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.batch;
+
+import javax.enterprise.inject.Vetoed;
+import javax.ws.rs.core.Response;
+
+import hu.speter555.mockservice.cache.MockEntry;
+
+/**
+ * Resolved mock response of a batch key, or the error of its resolution
+ *
+ * @author speter555
+ */
+@Vetoed
+public final class BatchResult {
+
+    private final String key;
+
+    private final int status;
+
+    private final MockEntry entry;
+
+    private final String error;
+
+    private BatchResult(String key, int status, MockEntry entry, String error) {
+        this.key = key;
+        this.status = status;
+        this.entry = entry;
+        this.error = error;
+    }
+
+    /**
+     * @param key batch key
+     * @param entry mock response
+     * @return result with 200 status
+     */
+    static BatchResult ok(String key, MockEntry entry) {
+        return new BatchResult(key, Response.Status.OK.getStatusCode(), entry, null);
+    }
+
+    /**
+     * @param key batch key
+     * @param status http status of the error, the status the mock request would be answered with
+     * @param error error message
+     * @return result without response
+     */
+    static BatchResult failed(String key, int status, String error) {
+        return new BatchResult(key, status, null, error);
+    }
+
+    /**
+     * @return batch key as it was sent
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return http status of the mock request
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return mock response, null if the resolution failed
+     */
+    public MockEntry getEntry() {
+        return entry;
+    }
+
+    /**
+     * @return error message, null if the resolution succeeded
+     */
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,159 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.batch;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import javax.enterprise.inject.Vetoed;
+import javax.ws.rs.core.Response;
+
+import hu.speter555.mockservice.cache.MockEntry;
+import hu.speter555.mockservice.util.FileUtil;
+import hu.speter555.mockservice.util.JsonFields;
+
+/**
+ * Streams the batch results as a JSON array or as newline delimited JSON (one result per line). The results are
+ * written in the order of the keys, the output is flushed before waiting for a result which is still loading, so the
+ * client receives the completed results early. The line breaks of the embedded JSON bodies are written as spaces in
+ * newline delimited JSON, a JSON string cannot contain a raw line break, so only the formatting whitespace changes.
+ *
+ * <pre>
+ * {"key":"GET /rest/users/1","status":200,"contentType":"application/json","body":{...}}
+ * {"key":"GET /img/logo.png","status":200,"contentType":"image/png","bodyBase64":"iVBORw0..."}
+ * {"key":"GET /rest/missing","status":418,"error":"..."}
+ * </pre>
+ *
+ * @author speter555
+ */
+@Vetoed
+public final class BatchWriter {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private BatchWriter() {
+    }
+
+    /**
+     * Writes the results
+     *
+     * @param output response output stream
+     * @param results results in the order of the keys
+     * @param ndjson true for newline delimited JSON, false for JSON array
+     * @throws IOException if the client is gone
+     */
+    public static void write(OutputStream output, List<CompletableFuture<BatchResult>> results, boolean ndjson)
+            throws IOException {
+        if (!ndjson) {
+            output.write('[');
+        }
+        boolean first = true;
+        for (CompletableFuture<BatchResult> future : results) {
+            if (!future.isDone()) {
+                output.flush();
+            }
+            if (!first && !ndjson) {
+                output.write(',');
+            }
+            first = false;
+            writeResult(output, join(future), ndjson);
+            if (ndjson) {
+                output.write('\n');
+            }
+        }
+        if (!ndjson) {
+            output.write(']');
+        }
+        output.flush();
+    }
+
+    private static BatchResult join(CompletableFuture<BatchResult> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            // the resolver returns the errors as results, this is only a safety net
+            return BatchResult.failed(null, Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), String.valueOf(e.getCause()));
+        }
+    }
+
+    private static void writeResult(OutputStream output, BatchResult result, boolean ndjson) throws IOException {
+        StringBuilder item = new StringBuilder(64);
+        item.append("{\"key\":");
+        JsonFields.appendString(item, result.getKey());
+        item.append(",\"status\":").append(result.getStatus());
+        MockEntry entry = result.getEntry();
+        if (entry == null) {
+            item.append(",\"error\":");
+            JsonFields.appendString(item, result.getError());
+            item.append('}');
+            output.write(item.toString().getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        String mediaType = entry.getMediaType();
+        item.append(",\"contentType\":");
+        JsonFields.appendString(item, mediaType);
+        if (!FileUtil.isText(mediaType)) {
+            item.append(",\"bodyBase64\":\"");
+            output.write(item.toString().getBytes(StandardCharsets.UTF_8));
+            output.write(Base64.getEncoder().encode(toBytes(entry.getBody())));
+            output.write('"');
+        } else if (entry.isJson()) {
+            // a valid JSON body is embedded as it is, without re-encoding
+            item.append(",\"body\":");
+            output.write(item.toString().getBytes(StandardCharsets.UTF_8));
+            if (ndjson) {
+                writeSingleLine(output, entry.getBody());
+            } else {
+                entry.write(output);
+            }
+        } else {
+            item.append(",\"body\":");
+            JsonFields.appendString(item, entry.getBodyAsString());
+            output.write(item.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        output.write('}');
+    }
+
+    private static void writeSingleLine(OutputStream output, ByteBuffer body) throws IOException {
+        byte[] chunk = new byte[Math.min(body.remaining(), CHUNK_SIZE)];
+        while (body.hasRemaining()) {
+            int length = Math.min(chunk.length, body.remaining());
+            body.get(chunk, 0, length);
+            for (int i = 0; i < length; i++) {
+                if (chunk[i] == '\n' || chunk[i] == '\r') {
+                    chunk[i] = ' ';
+                }
+            }
+            output.write(chunk, 0, length);
+        }
+    }
+
+    private static byte[] toBytes(ByteBuffer body) {
+        byte[] bytes = new byte[body.remaining()];
+        body.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,132 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.cache;
+
+import javax.enterprise.inject.Vetoed;
+
+/**
+ * Immutable snapshot of the {@link MockCache} statistics
+ *
+ * @author speter555
+ */
+@Vetoed
+public final class CacheStats {
+
+    private final long hitCount;
+
+    private final long missCount;
+
+    private final long loadCount;
+
+    private final long evictionCount;
+
+    private final long size;
+
+    private final long weight;
+
+    private final long maxEntries;
+
+    private final long maxWeight;
+
+    CacheStats(long hitCount, long missCount, long loadCount, long evictionCount, long size, long weight, long maxEntries,
+            long maxWeight) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.loadCount = loadCount;
+        this.evictionCount = evictionCount;
+        this.size = size;
+        this.weight = weight;
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Returns the ratio of the hits and all lookups
+     *
+     * @return hit rate between 0 and 1, 1 if there was no lookup
+     */
+    public double hitRate() {
+        long requestCount = hitCount + missCount;
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    /**
+     * @return number of lookups that found a cached value
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return number of lookups that did not find a cached value
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return number of loader calls
+     */
+    public long getLoadCount() {
+        return loadCount;
+    }
+
+    /**
+     * @return number of entries evicted because of the size limits
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return number of cached entries
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return summarized weight of the cached values in bytes
+     */
+    public long getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return maximum number of entries
+     */
+    public long getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * @return maximum summarized weight in bytes
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats [hitCount=" + hitCount + ", missCount=" + missCount + ", loadCount=" + loadCount + ", evictionCount="
+                + evictionCount + ", size=" + size + ", weight=" + weight + ", maxEntries=" + maxEntries + ", maxWeight=" + maxWeight
+                + "]";
+    }
+}
@@ -0,0 +1,177 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.cache;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import javax.enterprise.inject.Vetoed;
+
+/**
+ * Freshness of an upstream response for a shared cache, by its {@code Cache-Control}, {@code Expires} and {@code Date}
+ * headers
+ *
+ * @author speter555
+ */
+@Vetoed
+public final class Freshness {
+
+    /**
+     * Value of a lifetime not specified by the upstream
+     */
+    public static final long UNSPECIFIED = -1;
+
+    /**
+     * Freshness of a response without caching headers
+     */
+    public static final Freshness DEFAULT = new Freshness(true, false, UNSPECIFIED, UNSPECIFIED);
+
+    private final boolean storable;
+
+    private final boolean mustRevalidate;
+
+    private final long maxAgeMillis;
+
+    private final long staleWhileRevalidateMillis;
+
+    private Freshness(boolean storable, boolean mustRevalidate, long maxAgeMillis, long staleWhileRevalidateMillis) {
+        this.storable = storable;
+        this.mustRevalidate = mustRevalidate;
+        this.maxAgeMillis = maxAgeMillis;
+        this.staleWhileRevalidateMillis = staleWhileRevalidateMillis;
+    }
+
+    /**
+     * Parses the caching headers of a response
+     *
+     * @param cacheControl Cache-Control header, null if missing
+     * @param expires Expires header, null if missing
+     * @param date Date header, null if missing
+     * @return freshness of the response
+     */
+    public static Freshness of(String cacheControl, String expires, String date) {
+        if (cacheControl == null && expires == null) {
+            return DEFAULT;
+        }
+        boolean storable = true;
+        boolean mustRevalidate = false;
+        long maxAge = UNSPECIFIED;
+        long sharedMaxAge = UNSPECIFIED;
+        long staleWhileRevalidate = UNSPECIFIED;
+        if (cacheControl != null) {
+            for (String directive : cacheControl.split(",")) {
+                String name = directive.trim().toLowerCase(Locale.ROOT);
+                int equals = name.indexOf('=');
+                String value = equals < 0 ? null : name.substring(equals + 1).trim();
+                name = equals < 0 ? name : name.substring(0, equals).trim();
+                switch (name) {
+                    case "no-store":
+                    case "private":
+                        storable = false;
+                        break;
+                    case "no-cache":
+                        maxAge = 0;
+                        mustRevalidate = true;
+                        break;
+                    case "must-revalidate":
+                    case "proxy-revalidate":
+                        mustRevalidate = true;
+                        break;
+                    case "max-age":
+                        maxAge = maxAge == 0 ? 0 : seconds(value);
+                        break;
+                    case "s-maxage":
+                        sharedMaxAge = seconds(value);
+                        break;
+                    case "stale-while-revalidate":
+                        staleWhileRevalidate = seconds(value);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        if (sharedMaxAge != UNSPECIFIED && maxAge != 0) {
+            maxAge = sharedMaxAge;
+        }
+        if (maxAge == UNSPECIFIED && expires != null) {
+            // an invalid Expires header means already expired
+            long expiresAt = parseDate(expires);
+            long now = date != null ? parseDate(date) : 0;
+            if (now <= 0) {
+                now = System.currentTimeMillis();
+            }
+            maxAge = expiresAt > now ? expiresAt - now : 0;
+        }
+        return new Freshness(storable, mustRevalidate, maxAge, staleWhileRevalidate);
+    }
+
+    /**
+     * @return false if the response must not be stored by a shared cache
+     */
+    public boolean isStorable() {
+        return storable;
+    }
+
+    /**
+     * @return true if the expired response must not be served without a successful revalidation
+     */
+    public boolean isMustRevalidate() {
+        return mustRevalidate;
+    }
+
+    /**
+     * @return time to live of the response in milliseconds, {@link #UNSPECIFIED} if not specified
+     */
+    public long getMaxAgeMillis() {
+        return maxAgeMillis;
+    }
+
+    /**
+     * @return time in milliseconds while the expired response may be served during its revalidation,
+     *         {@link #UNSPECIFIED} if not specified
+     */
+    public long getStaleWhileRevalidateMillis() {
+        return staleWhileRevalidateMillis;
+    }
+
+    private static long seconds(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return TimeUnit.SECONDS.toMillis(Math.max(0, Long.parseLong(value.replace("\"", ""))));
+        } catch (NumberFormatException e) {
+            // an invalid lifetime means already expired
+            return 0;
+        }
+    }
+
+    private static long parseDate(String value) {
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+}
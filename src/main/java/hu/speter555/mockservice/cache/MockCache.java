@@ -0,0 +1,468 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.cache;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+import javax.enterprise.inject.Vetoed;
+
+import hu.icellmobilsoft.coffee.dto.exception.BaseException;
+
+/**
+ * Thread-safe, bounded in-memory cache.<br>
+ * The cache is limited by the number of entries and by the summarized weight (size in bytes) of the values. When one of
+ * the limits is exceeded, entries are evicted by a frequency-aware CLOCK policy: every hit raises the frequency of the
+ * entry (up to {@value #MAX_FREQUENCY}), the eviction walks the entries in insertion order, gives a second chance to
+ * the frequently used ones by decreasing their frequency, and evicts the first entry with zero frequency.<br>
+ * A value may grow after it has been cached, e.g. by a lazily built variant, its weight is refreshed on its next hit.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author speter555
+ */
+@Vetoed
+public class MockCache<K, V> {
+
+    private static final int MAX_FREQUENCY = 3;
+
+    private final ConcurrentHashMap<K, Node<K, V>> map = new ConcurrentHashMap<>();
+
+    private final Queue<Node<K, V>> clock = new ConcurrentLinkedQueue<>();
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final AtomicLong weight = new AtomicLong();
+
+    private final AtomicLong queued = new AtomicLong();
+
+    // keys with an in-flight load, so an invalidation only affects the loads of its own key
+    private final ConcurrentHashMap<K, Loading> loads = new ConcurrentHashMap<>();
+
+    private final LongAdder hitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
+    private final LongAdder loadCount = new LongAdder();
+
+    private final LongAdder evictionCount = new LongAdder();
+
+    private final long maxEntries;
+
+    private final long maxWeight;
+
+    private final ToLongFunction<? super V> weigher;
+
+    private final Consumer<? super K> evictionListener;
+
+    /**
+     * Loader of the missing cache values
+     *
+     * @param <K> key type
+     * @param <V> value type
+     */
+    @FunctionalInterface
+    public interface Loader<K, V> {
+
+        /**
+         * Loads the value of the key
+         *
+         * @param key cache key
+         * @return loaded value, null if the value should not be cached
+         * @throws BaseException if error
+         */
+        V load(K key) throws BaseException;
+    }
+
+    /**
+     * Creates a new cache
+     *
+     * @param maxEntries maximum number of entries
+     * @param maxWeight maximum summarized weight of the values
+     * @param weigher calculates the weight (size in bytes) of a value
+     */
+    public MockCache(long maxEntries, long maxWeight, ToLongFunction<? super V> weigher) {
+        this(maxEntries, maxWeight, weigher, key -> {
+        });
+    }
+
+    /**
+     * Creates a new cache with an eviction listener
+     *
+     * @param maxEntries maximum number of entries
+     * @param maxWeight maximum summarized weight of the values
+     * @param weigher calculates the weight (size in bytes) of a value
+     * @param evictionListener called with the key of every entry evicted by the limits, under the eviction lock, it must
+     *            be fast
+     */
+    public MockCache(long maxEntries, long maxWeight, ToLongFunction<? super V> weigher, Consumer<? super K> evictionListener) {
+        if (maxEntries <= 0 || maxWeight <= 0) {
+            throw new IllegalArgumentException("Cache limits must be positive!");
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.weigher = Objects.requireNonNull(weigher, "weigher is null!");
+        this.evictionListener = Objects.requireNonNull(evictionListener, "evictionListener is null!");
+    }
+
+    /**
+     * Returns the cached value
+     *
+     * @param key cache key
+     * @return cached value or null if the key is not cached
+     */
+    public V get(K key) {
+        Node<K, V> node = map.get(key);
+        if (node == null) {
+            missCount.increment();
+            return null;
+        }
+        node.touch();
+        hitCount.increment();
+        reweigh(node);
+        return node.value;
+    }
+
+    /**
+     * Returns the cached value. Only the hit is counted, the caller is expected to load the value on miss through
+     * {@link #getOrLoad(Object, Loader)}, which counts the miss.
+     *
+     * @param key cache key
+     * @return cached value or null if the key is not cached
+     */
+    public V getIfPresent(K key) {
+        Node<K, V> node = map.get(key);
+        if (node == null) {
+            return null;
+        }
+        node.touch();
+        hitCount.increment();
+        reweigh(node);
+        return node.value;
+    }
+
+    /**
+     * Returns whether the key is cached. Does not affect the statistics and the eviction order.
+     *
+     * @param key cache key
+     * @return true if the key is cached
+     */
+    public boolean containsKey(K key) {
+        return map.containsKey(key);
+    }
+
+    /**
+     * Returns the cached value, or loads, caches and returns it. The value is loaded outside of the map, so a slow load
+     * does not block the other keys. The load is not atomic: concurrent callers of the same missing key load it
+     * concurrently and the first loaded value is cached, so callers which must load a key once per burst have to wrap
+     * this call in {@link SingleFlight}. A value loaded while its key was invalidated is returned, but not cached, it may
+     * be outdated.
+     *
+     * @param key cache key
+     * @param loader loader of the missing value
+     * @return cached or loaded value, null if the loader returned null
+     * @throws BaseException if the loader failed
+     */
+    public V getOrLoad(K key, Loader<? super K, ? extends V> loader) throws BaseException {
+        Node<K, V> node = map.get(key);
+        if (node != null) {
+            node.touch();
+            hitCount.increment();
+            reweigh(node);
+            return node.value;
+        }
+        missCount.increment();
+        long loadedAt = startLoad(key);
+        boolean cached = false;
+        try {
+            V value = loader.load(key);
+            loadCount.increment();
+            if (value == null) {
+                return null;
+            }
+            long valueWeight = weigher.applyAsLong(value);
+            if (valueWeight > maxWeight) {
+                return value;
+            }
+            Node<K, V> created = new Node<>(key, value, valueWeight);
+            Node<K, V> existing = map.putIfAbsent(key, created);
+            if (existing != null) {
+                // loaded concurrently, the cached value wins
+                existing.touch();
+                return existing.value;
+            }
+            added(created, valueWeight);
+            cached = true;
+            // the invalidation counts before removing, so either it removes this node, or the changed count is seen here
+            if (endLoad(key) != loadedAt && map.remove(key, created)) {
+                // a concurrent put may have replaced the value of the node
+                weight.addAndGet(-created.weight);
+            }
+            return value;
+        } finally {
+            if (!cached) {
+                endLoad(key);
+            }
+        }
+    }
+
+    /**
+     * Caches the value. Values heavier than the weight limit are not cached.
+     *
+     * @param key cache key
+     * @param value value, null removes the key
+     */
+    public void put(K key, V value) {
+        if (value == null) {
+            invalidate(key);
+            return;
+        }
+        long newWeight = weigher.applyAsLong(value);
+        if (newWeight > maxWeight) {
+            invalidate(key);
+            return;
+        }
+        long[] delta = new long[1];
+        Node<K, V> created = new Node<>(key, value, newWeight);
+        Node<K, V> node = map.compute(key, (k, existing) -> {
+            if (existing == null) {
+                delta[0] = newWeight;
+                return created;
+            }
+            delta[0] = newWeight - existing.weight;
+            existing.update(value, newWeight);
+            return existing;
+        });
+        if (node == created) {
+            added(created, delta[0]);
+        } else {
+            weight.addAndGet(delta[0]);
+            evictIfNeeded();
+        }
+    }
+
+    /**
+     * Removes the key from the cache
+     *
+     * @param key cache key
+     */
+    public void invalidate(K key) {
+        loads.computeIfPresent(key, (k, loading) -> {
+            loading.invalidations++;
+            return loading;
+        });
+        Node<K, V> node = map.remove(key);
+        if (node != null) {
+            weight.addAndGet(-node.weight);
+        }
+    }
+
+    /**
+     * Removes all entries from the cache
+     */
+    public void invalidateAll() {
+        for (K key : map.keySet()) {
+            invalidate(key);
+        }
+    }
+
+    /**
+     * Returns the number of cached entries
+     *
+     * @return number of entries
+     */
+    public long size() {
+        return map.mappingCount();
+    }
+
+    /**
+     * Returns the summarized weight of the cached values
+     *
+     * @return weight in bytes
+     */
+    public long weight() {
+        return weight.get();
+    }
+
+    /**
+     * Returns a snapshot of the cache statistics
+     *
+     * @return statistics
+     */
+    public CacheStats stats() {
+        return new CacheStats(hitCount.sum(), missCount.sum(), loadCount.sum(), evictionCount.sum(), size(), weight(),
+                maxEntries, maxWeight);
+    }
+
+    /**
+     * Registers a load of the key
+     *
+     * @return invalidation count of the key at the start of the load
+     */
+    private long startLoad(K key) {
+        long[] invalidations = new long[1];
+        loads.compute(key, (k, loading) -> {
+            Loading current = loading != null ? loading : new Loading();
+            current.loaders++;
+            invalidations[0] = current.invalidations;
+            return current;
+        });
+        return invalidations[0];
+    }
+
+    /**
+     * Unregisters a load of the key, the key is forgotten after its last concurrent load
+     *
+     * @return invalidation count of the key at the end of the load
+     */
+    private long endLoad(K key) {
+        long[] invalidations = new long[1];
+        loads.computeIfPresent(key, (k, loading) -> {
+            invalidations[0] = loading.invalidations;
+            return --loading.loaders > 0 ? loading : null;
+        });
+        return invalidations[0];
+    }
+
+    private void reweigh(Node<K, V> node) {
+        V value = node.value;
+        long newWeight = weigher.applyAsLong(value);
+        if (newWeight == node.weight) {
+            return;
+        }
+        long[] delta = new long[1];
+        // the weight of a node is only changed in its bin, like by the put
+        map.computeIfPresent(node.key, (k, existing) -> {
+            if (existing == node && existing.value == value) {
+                delta[0] = newWeight - existing.weight;
+                existing.weight = newWeight;
+            }
+            return existing;
+        });
+        if (delta[0] != 0) {
+            weight.addAndGet(delta[0]);
+            evictIfNeeded();
+        }
+    }
+
+    private void added(Node<K, V> node, long addedWeight) {
+        weight.addAndGet(addedWeight);
+        clock.offer(node);
+        if (queued.incrementAndGet() > 2 * map.mappingCount() + 1024) {
+            purgeStale();
+        }
+        evictIfNeeded();
+    }
+
+    private void purgeStale() {
+        // invalidated nodes stay in the clock queue until the eviction reaches them
+        if (evictionLock.tryLock()) {
+            try {
+                clock.removeIf(node -> map.get(node.key) != node);
+                queued.set(clock.size());
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private boolean overLimit() {
+        return map.mappingCount() > maxEntries || weight.get() > maxWeight;
+    }
+
+    private void evictIfNeeded() {
+        if (!overLimit()) {
+            return;
+        }
+        evictionLock.lock();
+        try {
+            while (overLimit()) {
+                Node<K, V> node = clock.poll();
+                if (node == null) {
+                    return;
+                }
+                queued.decrementAndGet();
+                if (map.get(node.key) != node) {
+                    // already removed or replaced entry
+                    continue;
+                }
+                if (node.frequency > 0) {
+                    node.frequency--;
+                    clock.offer(node);
+                    queued.incrementAndGet();
+                } else if (map.remove(node.key, node)) {
+                    weight.addAndGet(-node.weight);
+                    evictionCount.increment();
+                    evictionListener.accept(node.key);
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * In-flight loads of a key, changed only in the bin of the key
+     */
+    private static final class Loading {
+
+        private int loaders;
+
+        private long invalidations;
+    }
+
+    private static final class Node<K, V> {
+
+        private final K key;
+
+        private volatile V value;
+
+        private volatile long weight;
+
+        private volatile int frequency;
+
+        private Node(K key, V value, long weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+
+        private void update(V newValue, long newWeight) {
+            value = newValue;
+            weight = newWeight;
+            touch();
+        }
+
+        private void touch() {
+            // a lost increment under contention is acceptable for a frequency estimate
+            int current = frequency;
+            if (current < MAX_FREQUENCY) {
+                frequency = current + 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,363 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.zip.GZIPOutputStream;
+
+import javax.enterprise.inject.Vetoed;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+
+import hu.icellmobilsoft.coffee.dto.exception.BaseException;
+import hu.speter555.mockservice.template.ResponseTemplate;
+import hu.speter555.mockservice.util.DigestUtil;
+import hu.speter555.mockservice.util.JsonValidator;
+
+/**
+ * Immutable, pre-encoded mock response. The body is encoded once when the entry is created, and written to the output
+ * stream as is on every request. The body is either a heap array or a read-only (e.g. memory-mapped) buffer. The gzip
+ * compressed variant of the body is built once, on the first request accepting it, and kept with the entry. The
+ * validators of the conditional requests are the creation time of the entry and the hash of the body, computed once. A
+ * mock file with placeholders carries its compiled template, it is rendered by every request.
+ *
+ * @author speter555
+ */
+@Vetoed
+public final class MockEntry implements StreamingOutput {
+
+    private static final int HEAP_OVERHEAD = 64;
+
+    // a variant saving less than 10% is not worth the decompression of the client
+    private static final double MAX_COMPRESSION_RATIO = 0.9;
+
+    private final byte[] body;
+
+    private final ByteBuffer buffer;
+
+    private final String mediaType;
+
+    private final long lastModified;
+
+    private final Freshness freshness;
+
+    private final ResponseTemplate template;
+
+    private final boolean rendered;
+
+    private volatile String etag;
+
+    // null if not validated yet
+    private volatile Boolean json;
+
+    // null if not built yet, the entry itself if the body is not worth compressing
+    private volatile MockEntry gzipVariant;
+
+    private MockEntry(byte[] body, ByteBuffer buffer, String mediaType, long lastModified) {
+        this(body, buffer, mediaType, lastModified, Freshness.DEFAULT, null, false);
+    }
+
+    private MockEntry(byte[] body, ByteBuffer buffer, String mediaType, long lastModified, Freshness freshness,
+            ResponseTemplate template, boolean rendered) {
+        this.body = body;
+        this.buffer = buffer;
+        this.mediaType = mediaType != null ? mediaType : MediaType.APPLICATION_OCTET_STREAM;
+        // http dates have second precision
+        this.lastModified = lastModified - lastModified % 1000;
+        this.freshness = freshness;
+        this.template = template;
+        this.rendered = rendered;
+    }
+
+    /**
+     * Creates entry from encoded body. The array is owned by the entry afterwards, the caller must not modify it.
+     *
+     * @param body encoded body
+     * @param mediaType media type of the body, if null application/octet-stream
+     * @return new entry
+     */
+    public static MockEntry of(byte[] body, String mediaType) {
+        Objects.requireNonNull(body, "body is null!");
+        return new MockEntry(body, ByteBuffer.wrap(body).asReadOnlyBuffer(), mediaType, System.currentTimeMillis());
+    }
+
+    /**
+     * Creates entry of a response rendered for a single request. It is not cached, so it has no validators and no
+     * compressed variant.
+     *
+     * @param body encoded body, owned by the entry afterwards
+     * @param mediaType media type of the body, if null application/octet-stream
+     * @return new entry
+     */
+    public static MockEntry rendered(byte[] body, String mediaType) {
+        Objects.requireNonNull(body, "body is null!");
+        return new MockEntry(body, ByteBuffer.wrap(body).asReadOnlyBuffer(), mediaType, System.currentTimeMillis(), Freshness.DEFAULT,
+                null, true);
+    }
+
+    /**
+     * Creates entry from a buffer, e.g. a memory-mapped file. The remaining content of the buffer is the body, the buffer
+     * is not modified.
+     *
+     * @param body encoded body
+     * @param mediaType media type of the body, if null application/octet-stream
+     * @return new entry
+     */
+    public static MockEntry of(ByteBuffer body, String mediaType) {
+        return of(body, mediaType, System.currentTimeMillis());
+    }
+
+    /**
+     * Creates entry from a buffer, with the modification time of its source, e.g. a file
+     *
+     * @param body encoded body
+     * @param mediaType media type of the body, if null application/octet-stream
+     * @param lastModified modification time in epoch milliseconds
+     * @return new entry
+     */
+    public static MockEntry of(ByteBuffer body, String mediaType, long lastModified) {
+        Objects.requireNonNull(body, "body is null!");
+        if (body.hasArray() && body.arrayOffset() == 0 && body.position() == 0 && body.limit() == body.array().length) {
+            return new MockEntry(body.array(), ByteBuffer.wrap(body.array()).asReadOnlyBuffer(), mediaType, lastModified);
+        }
+        return new MockEntry(null, body.slice().asReadOnlyBuffer(), mediaType, lastModified);
+    }
+
+    /**
+     * Creates entry from text body, encoded in UTF-8
+     *
+     * @param body text body
+     * @param mediaType media type of the body
+     * @return new entry
+     */
+    public static MockEntry of(String body, String mediaType) {
+        Objects.requireNonNull(body, "body is null!");
+        return of(body.getBytes(StandardCharsets.UTF_8), mediaType);
+    }
+
+    /**
+     * Writes the body to the output stream without copy
+     */
+    @Override
+    public void write(OutputStream output) throws IOException {
+        if (body != null) {
+            output.write(body);
+            return;
+        }
+        ByteBuffer source = buffer.duplicate();
+        WritableByteChannel channel = Channels.newChannel(output);
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+
+    /**
+     * Returns the gzip compressed variant of the entry, it is built on the first call
+     *
+     * @param minBytes minimum length of a compressed body
+     * @return compressed variant, or null if the body is shorter than the minimum or it does not compress
+     */
+    public MockEntry getGzipVariant(int minBytes) {
+        if (getContentLength() < minBytes) {
+            return null;
+        }
+        MockEntry variant = gzipVariant;
+        if (variant == null) {
+            variant = buildGzipVariant();
+        }
+        return variant != this ? variant : null;
+    }
+
+    /**
+     * Returns the strong entity tag of the body, it is computed on the first call
+     *
+     * @return SHA-256 hash of the body, without quotes
+     */
+    public String getETag() {
+        String value = etag;
+        if (value == null) {
+            MessageDigest digest = DigestUtil.newSha256();
+            digest.update(buffer.duplicate());
+            value = DigestUtil.toHex(digest.digest());
+            // concurrent first calls compute the same value
+            etag = value;
+        }
+        return value;
+    }
+
+    /**
+     * Returns whether the body is a valid JSON document, it is validated on the first call
+     *
+     * @return true if the media type is a JSON type and the body is valid JSON
+     */
+    public boolean isJson() {
+        Boolean value = json;
+        if (value == null) {
+            value = mediaType.toLowerCase(Locale.ROOT).contains("json") && isValidJson();
+            // concurrent first calls compute the same value
+            json = value;
+        }
+        return value;
+    }
+
+    /**
+     * @return creation time of the entry or modification time of its source in epoch milliseconds, truncated to seconds
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Returns the entry with the freshness of its upstream response, the body is not copied
+     *
+     * @param upstreamFreshness freshness by the caching headers of the upstream response
+     * @return new entry
+     */
+    public MockEntry withFreshness(Freshness upstreamFreshness) {
+        return new MockEntry(body, buffer, mediaType, lastModified, Objects.requireNonNull(upstreamFreshness, "freshness is null!"),
+                template, rendered);
+    }
+
+    /**
+     * @return freshness of the upstream response, {@link Freshness#DEFAULT} if the entry is not an upstream response
+     */
+    public Freshness getFreshness() {
+        return freshness;
+    }
+
+    /**
+     * Returns the entry with the compiled template of its body, the body is not copied
+     *
+     * @param compiled template compiled from the body
+     * @return new entry
+     */
+    public MockEntry withTemplate(ResponseTemplate compiled) {
+        return new MockEntry(body, buffer, mediaType, lastModified, freshness, Objects.requireNonNull(compiled, "template is null!"),
+                rendered);
+    }
+
+    /**
+     * @return compiled template of the body, null if the body has no placeholder
+     */
+    public ResponseTemplate getTemplate() {
+        return template;
+    }
+
+    /**
+     * @return true if the body is rendered for a single request by a template
+     */
+    public boolean isRendered() {
+        return rendered;
+    }
+
+    /**
+     * Returns a part of the body as a new entry, the body is not copied
+     *
+     * @param offset position of the first byte of the part
+     * @param length length of the part in bytes
+     * @return entry of the part, with the media type and the modification time of this entry
+     */
+    public MockEntry getRange(int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > getContentLength()) {
+            throw new IndexOutOfBoundsException("Range [" + offset + ", " + length + "] is out of the body!");
+        }
+        ByteBuffer part = buffer.duplicate();
+        part.position(part.position() + offset);
+        part.limit(part.position() + length);
+        return new MockEntry(null, part.slice(), mediaType, lastModified);
+    }
+
+    /**
+     * @return read-only view of the body
+     */
+    public ByteBuffer getBody() {
+        return buffer.duplicate();
+    }
+
+    /**
+     * @return body decoded as UTF-8 text
+     */
+    public String getBodyAsString() {
+        return StandardCharsets.UTF_8.decode(buffer.duplicate()).toString();
+    }
+
+    /**
+     * @return length of the body in bytes, the value of the {@code Content-Length} header
+     */
+    public int getContentLength() {
+        return buffer.remaining();
+    }
+
+    /**
+     * @return approximate heap size of the entry in bytes with its compressed variant, if it has been built. A buffer
+     *         outside of the heap is not counted.
+     */
+    public long getHeapSize() {
+        MockEntry variant = gzipVariant;
+        long variantSize = variant != null && variant != this ? variant.getHeapSize() : 0;
+        return HEAP_OVERHEAD + (body != null ? body.length : 0) + (template != null ? template.getHeapSize() : 0) + variantSize;
+    }
+
+    /**
+     * @return media type of the body, the value of the {@code Content-Type} header
+     */
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    private boolean isValidJson() {
+        byte[] content = body;
+        if (content == null) {
+            content = new byte[buffer.remaining()];
+            buffer.duplicate().get(content);
+        }
+        try {
+            JsonValidator.validate(mediaType, content);
+            return true;
+        } catch (BaseException e) {
+            return false;
+        }
+    }
+
+    private synchronized MockEntry buildGzipVariant() {
+        // concurrent first requests compress the body once
+        if (gzipVariant == null) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, getContentLength() / 4));
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                write(gzip);
+            } catch (IOException e) {
+                // the in-memory streams do not fail
+                throw new IllegalStateException(e);
+            }
+            gzipVariant = compressed.size() < getContentLength() * MAX_COMPRESSION_RATIO ? of(compressed.toByteArray(), mediaType)
+                    : this;
+        }
+        return gzipVariant;
+    }
+}
@@ -0,0 +1,145 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.cache;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.enterprise.inject.Vetoed;
+
+/**
+ * Bounded set of known-missing keys with time to live, to answer repeated lookups of missing keys without any I/O. A
+ * full cache is purged in batches, down to {@value #PURGE_RATIO} of its limit, so the scans are amortized over many new
+ * keys.
+ *
+ * @param <K> key type
+ * @author speter555
+ */
+@Vetoed
+public class NegativeCache<K> {
+
+    private static final double PURGE_RATIO = 0.9;
+
+    private final Map<K, Long> expirations = new ConcurrentHashMap<>();
+
+    private final LongAdder hitCount = new LongAdder();
+
+    private final AtomicBoolean purging = new AtomicBoolean();
+
+    private final int maxEntries;
+
+    private final long ttlNanos;
+
+    /**
+     * Creates a new negative cache
+     *
+     * @param maxEntries maximum number of known-missing keys
+     * @param ttlMillis time to live of a known-missing key in milliseconds, 0 disables the cache
+     */
+    public NegativeCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    /**
+     * Returns whether the key is known to be missing
+     *
+     * @param key key
+     * @return true if the key was marked as missing and it is not expired
+     */
+    public boolean isMissing(K key) {
+        Long expiration = expirations.get(key);
+        if (expiration == null) {
+            return false;
+        }
+        if (System.nanoTime() - expiration >= 0) {
+            expirations.remove(key, expiration);
+            return false;
+        }
+        hitCount.increment();
+        return true;
+    }
+
+    /**
+     * Marks the key as missing
+     *
+     * @param key key
+     */
+    public void markMissing(K key) {
+        if (ttlNanos <= 0 || maxEntries <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        // a single thread purges, the others may exceed the limit by their own key meanwhile
+        if (expirations.size() >= maxEntries && purging.compareAndSet(false, true)) {
+            try {
+                purge(now);
+            } finally {
+                purging.set(false);
+            }
+        }
+        expirations.put(key, now + ttlNanos);
+    }
+
+    /**
+     * Removes the key, e.g. because it has been created
+     *
+     * @param key key
+     */
+    public void invalidate(K key) {
+        expirations.remove(key);
+    }
+
+    /**
+     * Removes all keys
+     */
+    public void invalidateAll() {
+        expirations.clear();
+    }
+
+    /**
+     * @return number of lookups answered by the negative cache
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * @return number of known-missing keys
+     */
+    public int size() {
+        return expirations.size();
+    }
+
+    private void purge(long now) {
+        expirations.values().removeIf(expiration -> now - expiration >= 0);
+        // the cache is full of live keys, drop arbitrary ones to make room for the next batch of keys
+        int target = (int) (maxEntries * PURGE_RATIO);
+        Iterator<K> iterator = expirations.keySet().iterator();
+        while (expirations.size() > target && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import javax.enterprise.inject.Vetoed;
+
+import hu.icellmobilsoft.coffee.dto.exception.BaseException;
+import hu.icellmobilsoft.coffee.dto.exception.TechnicalException;
+import hu.icellmobilsoft.coffee.dto.exception.enums.CoffeeFaultType;
+
+/**
+ * Coalesces the concurrent calls of the same key: the first caller executes the call, the callers arriving while it is
+ * in flight wait for it and share its result or its failure. The key is released when the call completes, so the next
+ * caller executes it again.
+ *
+ * @param <K> key type
+ * @param <V> result type
+ * @author speter555
+ */
+@Vetoed
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder executionCount = new LongAdder();
+
+    private final LongAdder sharedCount = new LongAdder();
+
+    /**
+     * Executes the call, or waits for the in-flight call of the same key
+     *
+     * @param key call key
+     * @param call executed call
+     * @return result of the call
+     * @throws BaseException failure of the call
+     */
+    public V execute(K key, MockCache.Loader<? super K, ? extends V> call) throws BaseException {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            sharedCount.increment();
+            return join(existing);
+        }
+        executionCount.increment();
+        try {
+            V value = call.load(key);
+            future.complete(value);
+            return value;
+        } catch (Throwable e) {
+            // an Error must also complete the shared call, or the waiting callers would wait forever
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Starts the asynchronous call, or joins the in-flight call of the same key
+     *
+     * @param key call key
+     * @param call starts the call
+     * @return future of the result. Every caller gets its own future, cancelling it does not cancel the shared call.
+     */
+    public CompletableFuture<V> executeAsync(K key, Function<? super K, ? extends CompletableFuture<V>> call) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            sharedCount.increment();
+            return existing.copy();
+        }
+        executionCount.increment();
+        try {
+            call.apply(key).whenComplete((value, error) -> {
+                inFlight.remove(key, future);
+                if (error == null) {
+                    future.complete(value);
+                } else {
+                    future.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+                }
+            });
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, future);
+            future.completeExceptionally(e);
+        }
+        return future.copy();
+    }
+
+    /**
+     * @return number of executed calls
+     */
+    public long getExecutionCount() {
+        return executionCount.sum();
+    }
+
+    /**
+     * @return number of callers which shared the result of an in-flight call instead of executing it
+     */
+    public long getSharedCount() {
+        return sharedCount.sum();
+    }
+
+    /**
+     * @return number of calls in flight
+     */
+    public int size() {
+        return inFlight.size();
+    }
+
+    private static <V> V join(CompletableFuture<V> future) throws BaseException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof BaseException) {
+                throw (BaseException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new TechnicalException(CoffeeFaultType.OPERATION_FAILED, "Shared call failed: " + cause.getLocalizedMessage(), cause);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.config;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Response compression configuration, resolved once for the request scoped rest endpoints
+ *
+ * @author speter555
+ */
+@ApplicationScoped
+public class CompressionConfig {
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.COMPRESSION_ENABLED, defaultValue = "true")
+    private boolean enabled;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.COMPRESSION_MIN_BYTES, defaultValue = "1024")
+    private int minBytes;
+
+    /**
+     * @return true if the responses are compressed for the clients accepting it
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return minimum size in bytes of the compressed responses
+     */
+    public int getMinBytes() {
+        return minBytes;
+    }
+}
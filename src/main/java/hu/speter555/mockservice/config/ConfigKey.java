@@ -0,0 +1,356 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.config;
+
+/**
+ * MicroProfile config keys of the mock service
+ *
+ * @author speter555
+ */
+public final class ConfigKey {
+
+    /**
+     * Maximum number of entries in the response cache
+     */
+    public static final String CACHE_MAX_ENTRIES = "mockservice.cache.max.entries";
+
+    /**
+     * Maximum summarized size of the cached responses in bytes
+     */
+    public static final String CACHE_MAX_BYTES = "mockservice.cache.max.bytes";
+
+    /**
+     * Maximum number of known-missing mock files in the negative cache
+     */
+    public static final String NEGATIVE_CACHE_MAX_ENTRIES = "mockservice.cache.negative.max.entries";
+
+    /**
+     * Time to live of a known-missing mock file in milliseconds, 0 disables the negative cache
+     */
+    public static final String NEGATIVE_CACHE_TTL_MILLIS = "mockservice.cache.negative.ttl.millis";
+
+    /**
+     * Whether to load and index all mock files at startup
+     */
+    public static final String PRELOAD_ENABLED = "mockservice.preload.enabled";
+
+    /**
+     * Comma separated classpath roots of the preloaded mock files, {@code .} is the classpath root
+     */
+    public static final String PRELOAD_ROOTS = "mockservice.preload.roots";
+
+    /**
+     * Number of preloader threads, 0 means the number of processors
+     */
+    public static final String PRELOAD_PARALLELISM = "mockservice.preload.parallelism";
+
+    /**
+     * External mock directory, its files override the classpath mock files
+     */
+    public static final String MOCK_DIRECTORY = "mockservice.mock.directory";
+
+    /**
+     * Whether the large mock directory files are memory-mapped. Only for directories whose files are replaced, never
+     * rewritten in place: a truncated mapped file crashes the requests served from the mapping. Without mapping the files
+     * heavier than {@link #CACHE_MAX_BYTES} are read by every request.
+     */
+    public static final String MOCK_DIRECTORY_MAP_ENABLED = "mockservice.mock.directory.map.enabled";
+
+    /**
+     * Minimum size in bytes of the mock directory files to be memory-mapped, if mapping is enabled
+     */
+    public static final String MOCK_DIRECTORY_MAP_THRESHOLD = "mockservice.mock.directory.map.threshold";
+
+    /**
+     * Maximum number of pooled upstream connections
+     */
+    public static final String REDIRECT_POOL_MAX_TOTAL = "mockservice.redirect.pool.max.total";
+
+    /**
+     * Maximum number of pooled connections per upstream route
+     */
+    public static final String REDIRECT_POOL_MAX_PER_ROUTE = "mockservice.redirect.pool.max.per.route";
+
+    /**
+     * Keep-alive of the upstream connections in milliseconds, if the upstream does not send Keep-Alive header
+     */
+    public static final String REDIRECT_POOL_KEEP_ALIVE_MILLIS = "mockservice.redirect.pool.keepalive.millis";
+
+    /**
+     * Idle time in milliseconds after the pooled upstream connections are closed
+     */
+    public static final String REDIRECT_POOL_IDLE_TIMEOUT_MILLIS = "mockservice.redirect.pool.idle.timeout.millis";
+
+    /**
+     * Whether to stream the request and response bodies of the redirect calls instead of buffering them
+     */
+    public static final String REDIRECT_STREAMING_ENABLED = "mockservice.redirect.streaming.enabled";
+
+    /**
+     * Maximum size in bytes of a streamed redirect response recorded into the cache, larger responses are not recorded
+     */
+    public static final String REDIRECT_RECORD_MAX_BYTES = "mockservice.redirect.record.max.bytes";
+
+    /**
+     * Whether to execute the redirect calls on the non-blocking client, without holding a request thread
+     */
+    public static final String REDIRECT_ASYNC_ENABLED = "mockservice.redirect.async.enabled";
+
+    /**
+     * Maximum duration of an asynchronous redirect call in milliseconds
+     */
+    public static final String REDIRECT_ASYNC_TIMEOUT_MILLIS = "mockservice.redirect.async.timeout.millis";
+
+    /**
+     * Maximum number of in-flight asynchronous redirect calls, the calls above it are rejected
+     */
+    public static final String REDIRECT_ASYNC_MAX_IN_FLIGHT = "mockservice.redirect.async.max.inflight";
+
+    /**
+     * Number of I/O threads of the non-blocking client, 0 means the number of processors
+     */
+    public static final String REDIRECT_ASYNC_IO_THREADS = "mockservice.redirect.async.io.threads";
+
+    /**
+     * Whether to limit the concurrent redirect calls per upstream host by adaptive bulkheads
+     */
+    public static final String REDIRECT_BULKHEAD_ENABLED = "mockservice.redirect.bulkhead.enabled";
+
+    /**
+     * Maximum number of concurrent redirect calls of all upstream hosts, it must stay below the request threads of the
+     * server, so the mock files are served while the upstreams are slow
+     */
+    public static final String REDIRECT_BULKHEAD_TOTAL_LIMIT = "mockservice.redirect.bulkhead.total.limit";
+
+    /**
+     * Initial concurrency limit of an upstream host, it is adapted by the latency and the failures of the calls
+     */
+    public static final String REDIRECT_BULKHEAD_INITIAL_LIMIT = "mockservice.redirect.bulkhead.initial.limit";
+
+    /**
+     * Maximum concurrency limit of an upstream host
+     */
+    public static final String REDIRECT_BULKHEAD_MAX_LIMIT = "mockservice.redirect.bulkhead.max.limit";
+
+    /**
+     * Maximum number of calls waiting for an upstream host at its limit, the calls above it are rejected
+     */
+    public static final String REDIRECT_BULKHEAD_QUEUE_SIZE = "mockservice.redirect.bulkhead.queue.size";
+
+    /**
+     * Maximum wait in milliseconds of a call for an upstream host at its limit
+     */
+    public static final String REDIRECT_BULKHEAD_MAX_WAIT_MILLIS = "mockservice.redirect.bulkhead.max.wait.millis";
+
+    /**
+     * Duration in milliseconds above a call decreases the concurrency limit of its upstream host, like a failed call
+     */
+    public static final String REDIRECT_BULKHEAD_LATENCY_THRESHOLD_MILLIS = "mockservice.redirect.bulkhead.latency.threshold.millis";
+
+    /**
+     * Whether to send a second call of the idempotent blocking redirect calls (GET, HEAD, OPTIONS) which are not
+     * answered within the latency quantile of their upstream
+     */
+    public static final String REDIRECT_HEDGE_ENABLED = "mockservice.redirect.hedge.enabled";
+
+    /**
+     * Latency quantile of the upstream after the hedge call is sent, between 0 and 1
+     */
+    public static final String REDIRECT_HEDGE_QUANTILE = "mockservice.redirect.hedge.quantile";
+
+    /**
+     * Minimum delay in milliseconds of the hedge calls
+     */
+    public static final String REDIRECT_HEDGE_MIN_DELAY_MILLIS = "mockservice.redirect.hedge.min.delay.millis";
+
+    /**
+     * Maximum ratio of the hedge calls to the hedgeable calls, between 0 and 1
+     */
+    public static final String REDIRECT_HEDGE_MAX_RATIO = "mockservice.redirect.hedge.max.ratio";
+
+    /**
+     * Maximum number of threads running the calls of the hedged requests, the requests above it are not hedged
+     */
+    public static final String REDIRECT_HEDGE_MAX_THREADS = "mockservice.redirect.hedge.max.threads";
+
+    /**
+     * Whether to stop calling an upstream host after consecutive failures, and answer the last recorded response instead
+     */
+    public static final String REDIRECT_CIRCUIT_ENABLED = "mockservice.redirect.circuit.enabled";
+
+    /**
+     * Number of consecutive failed calls which open the circuit of an upstream host
+     */
+    public static final String REDIRECT_CIRCUIT_FAILURE_THRESHOLD = "mockservice.redirect.circuit.failure.threshold";
+
+    /**
+     * Time in milliseconds while the circuit of an upstream host is open, then a trial call is sent
+     */
+    public static final String REDIRECT_CIRCUIT_OPEN_MILLIS = "mockservice.redirect.circuit.open.millis";
+
+    /**
+     * Operating mode of the recording store: {@code OFF}, {@code RECORD} or {@code REPLAY}
+     */
+    public static final String RECORDING_MODE = "mockservice.recording.mode";
+
+    /**
+     * Directory of the recording store segment files
+     */
+    public static final String RECORDING_DIRECTORY = "mockservice.recording.directory";
+
+    /**
+     * Size in bytes after a new recording segment file is started
+     */
+    public static final String RECORDING_SEGMENT_MAX_BYTES = "mockservice.recording.segment.max.bytes";
+
+    /**
+     * Interval of flushing the recordings to the storage device in milliseconds, 0 flushes every record, negative
+     * leaves it to the operating system
+     */
+    public static final String RECORDING_FSYNC_INTERVAL_MILLIS = "mockservice.recording.fsync.interval.millis";
+
+    /**
+     * Ratio of the replaced records in the recording store which triggers the compaction
+     */
+    public static final String RECORDING_COMPACTION_RATIO = "mockservice.recording.compaction.ratio";
+
+    /**
+     * Whether to resolve the mock files of the requests by the compiled route table
+     */
+    public static final String ROUTES_ENABLED = "mockservice.routes.enabled";
+
+    /**
+     * Comma separated classpath roots of the routed mock files, {@code .} is the classpath root
+     */
+    public static final String ROUTES_ROOTS = "mockservice.routes.roots";
+
+    /**
+     * Whether to compile the mock files with placeholders like {@code {{path.id}}} into templates rendered by every request
+     */
+    public static final String TEMPLATES_ENABLED = "mockservice.templates.enabled";
+
+    /**
+     * Maximum number of keys of a batch request
+     */
+    public static final String BATCH_MAX_KEYS = "mockservice.batch.max.keys";
+
+    /**
+     * Number of threads loading the mock files missing from the cache of the batch requests, 0 means the number of
+     * processors
+     */
+    public static final String BATCH_PARALLELISM = "mockservice.batch.parallelism";
+
+    /**
+     * Properties file of the simulated latency, bandwidth, error and connection reset behaviors of the mock files
+     */
+    public static final String BEHAVIOR_FILE = "mockservice.behavior.file";
+
+    /**
+     * Number of timer threads resuming the delayed responses
+     */
+    public static final String BEHAVIOR_TIMER_THREADS = "mockservice.behavior.timer.threads";
+
+    /**
+     * Whether to record the latency histograms of the requests, mock file loads and upstream calls
+     */
+    public static final String METRICS_ENABLED = "mockservice.metrics.enabled";
+
+    /**
+     * Maximum number of distinct route and upstream labels per metric, the labels above it are merged into {@code other}
+     */
+    public static final String METRICS_MAX_LABELS = "mockservice.metrics.max.labels";
+
+    /**
+     * Whether to write the structured access log of the requests and the upstream calls, disabled by default
+     */
+    public static final String ACCESS_LOG_ENABLED = "mockservice.accesslog.enabled";
+
+    /**
+     * Ratio of the successful responses logged on the {@code SAMPLED} level, between 0 and 1
+     */
+    public static final String ACCESS_LOG_SAMPLE_RATE = "mockservice.accesslog.sample.rate";
+
+    /**
+     * Comma separated access log levels by route prefix like {@code rest/userService/=ALL,root=OFF}, an item without
+     * prefix is the default level
+     */
+    public static final String ACCESS_LOG_LEVELS = "mockservice.accesslog.levels";
+
+    /**
+     * Maximum number of logged body bytes of an access log line, 0 disables the body logging
+     */
+    public static final String ACCESS_LOG_BODY_MAX_BYTES = "mockservice.accesslog.body.max.bytes";
+
+    /**
+     * Number of access log lines buffered for the writer, the lines above it are dropped
+     */
+    public static final String ACCESS_LOG_BUFFER_SIZE = "mockservice.accesslog.buffer.size";
+
+    /**
+     * Access log file, if not set the lines are written to the {@code hu.speter555.mockservice.access} logger
+     */
+    public static final String ACCESS_LOG_FILE = "mockservice.accesslog.file";
+
+    /**
+     * Minimum interval in milliseconds between two error logs of the same exception type, the occurrences between them
+     * are only counted, 0 logs every occurrence
+     */
+    public static final String ERROR_LOG_INTERVAL_MILLIS = "mockservice.error.log.interval.millis";
+
+    /**
+     * Whether to serve the gzip compressed variant of the responses to the clients accepting it
+     */
+    public static final String COMPRESSION_ENABLED = "mockservice.compression.enabled";
+
+    /**
+     * Minimum size in bytes of the compressed responses
+     */
+    public static final String COMPRESSION_MIN_BYTES = "mockservice.compression.min.bytes";
+
+    /**
+     * Whether to serve the redirect responses from the cache while they are fresh, cache-first proxy mode
+     */
+    public static final String PROXY_CACHE_ENABLED = "mockservice.proxy.cache.enabled";
+
+    /**
+     * Time to live of a cached redirect response in milliseconds, if the upstream does not send Cache-Control max-age
+     * or Expires header
+     */
+    public static final String PROXY_CACHE_TTL_MILLIS = "mockservice.proxy.cache.ttl.millis";
+
+    /**
+     * Time in milliseconds while an expired redirect response is served during its background refresh, if the upstream
+     * does not send Cache-Control stale-while-revalidate
+     */
+    public static final String PROXY_CACHE_STALE_MILLIS = "mockservice.proxy.cache.stale.millis";
+
+    /**
+     * Maximum number of cached redirect responses
+     */
+    public static final String PROXY_CACHE_MAX_ENTRIES = "mockservice.proxy.cache.max.entries";
+
+    /**
+     * Maximum summarized size of the cached redirect responses in bytes
+     */
+    public static final String PROXY_CACHE_MAX_BYTES = "mockservice.proxy.cache.max.bytes";
+
+    private ConfigKey() {
+    }
+}
@@ -0,0 +1,78 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.config;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Redirect mode configuration, resolved once for the request scoped rest endpoints
+ *
+ * @author speter555
+ */
+@ApplicationScoped
+public class RedirectConfig {
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.REDIRECT_STREAMING_ENABLED, defaultValue = "false")
+    private boolean streamingEnabled;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.REDIRECT_RECORD_MAX_BYTES, defaultValue = "1048576")
+    private int recordMaxBytes;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.REDIRECT_ASYNC_ENABLED, defaultValue = "false")
+    private boolean asyncEnabled;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.REDIRECT_ASYNC_TIMEOUT_MILLIS, defaultValue = "30000")
+    private long asyncTimeoutMillis;
+
+    /**
+     * @return true if the request and response bodies of the redirect calls are streamed instead of buffered
+     */
+    public boolean isStreamingEnabled() {
+        return streamingEnabled;
+    }
+
+    /**
+     * @return maximum size in bytes of a streamed redirect response recorded into the cache
+     */
+    public int getRecordMaxBytes() {
+        return recordMaxBytes;
+    }
+
+    /**
+     * @return true if the redirect calls are executed on the non-blocking client
+     */
+    public boolean isAsyncEnabled() {
+        return asyncEnabled;
+    }
+
+    /**
+     * @return maximum duration of an asynchronous redirect call in milliseconds
+     */
+    public long getAsyncTimeoutMillis() {
+        return asyncTimeoutMillis;
+    }
+}
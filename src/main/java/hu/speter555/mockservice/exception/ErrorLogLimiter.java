@@ -0,0 +1,107 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.exception;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import hu.speter555.mockservice.config.ConfigKey;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Counts the mapped exceptions by type and limits their logging. A failing upstream or a client looping over an
+ * unmocked url produces the same error thousands of times per second, logging all of them costs more than serving them,
+ * so an error type is logged at most once per interval, together with the number of its suppressed occurrences.
+ *
+ * @author speter555
+ */
+@ApplicationScoped
+public class ErrorLogLimiter {
+
+    /**
+     * Key of the error types above {@value #MAX_KEYS}
+     */
+    public static final String OTHER = "other";
+
+    /**
+     * Returned by {@link #occurred(String)} if the occurrence should not be logged
+     */
+    public static final long SUPPRESSED = -1;
+
+    private static final int MAX_KEYS = 100;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.ERROR_LOG_INTERVAL_MILLIS, defaultValue = "10000")
+    private long intervalMillis;
+
+    private final Map<String, Occurrences> occurrences = new ConcurrentHashMap<>();
+
+    /**
+     * Counts an occurrence of the error type
+     *
+     * @param key error type like the exception class name
+     * @return number of the occurrences suppressed since the last log if the occurrence should be logged, otherwise
+     *         {@link #SUPPRESSED}
+     */
+    public long occurred(String key) {
+        Occurrences counter = occurrences.get(key);
+        if (counter == null) {
+            counter = occurrences.size() < MAX_KEYS ? occurrences.computeIfAbsent(key, k -> new Occurrences())
+                    : occurrences.computeIfAbsent(OTHER, k -> new Occurrences());
+        }
+        counter.count.increment();
+        if (intervalMillis <= 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        long next = counter.nextLogNanos.get();
+        if (now - next >= 0 && counter.nextLogNanos.compareAndSet(next, now + TimeUnit.MILLISECONDS.toNanos(intervalMillis))) {
+            return counter.suppressed.sumThenReset();
+        }
+        counter.suppressed.increment();
+        return SUPPRESSED;
+    }
+
+    /**
+     * @return snapshot of the occurrence counts by error type
+     */
+    public Map<String, Long> getCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        occurrences.forEach((key, counter) -> counts.put(key, counter.count.sum()));
+        return counts;
+    }
+
+    private static final class Occurrences {
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder suppressed = new LongAdder();
+
+        // the first occurrence is logged
+        private final AtomicLong nextLogNanos = new AtomicLong(System.nanoTime());
+    }
+}
@@ -0,0 +1,65 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.exception;
+
+import java.nio.charset.StandardCharsets;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.ws.rs.core.MediaType;
+
+import hu.icellmobilsoft.coffee.dto.common.commonservice.FunctionCodeType;
+import hu.speter555.mockservice.cache.MockEntry;
+import hu.speter555.mockservice.util.JsonFields;
+
+/**
+ * JSON fault bodies built without the fault DTOs. The messages carry request specific parts like the path of an unmocked
+ * url, so the bodies are not cached; the fields are escaped into one presized builder, which is cheaper than
+ * serializing the fault DTOs.
+ *
+ * @author speter555
+ */
+@ApplicationScoped
+public class FaultBodies {
+
+    private static final String FUNC_CODE = "{\"funcCode\":\"" + FunctionCodeType.ERROR.name() + "\",\"message\":";
+
+    /**
+     * Returns the JSON body of a fault, with the fields of the fault DTOs
+     *
+     * @param className class name of the exception
+     * @param faultType fault type
+     * @param message message of the fault
+     * @param exception localized message of the exception
+     * @return serialized fault body
+     */
+    public MockEntry get(String className, String faultType, String message, String exception) {
+        StringBuilder json = new StringBuilder(FUNC_CODE.length() + 128);
+        json.append(FUNC_CODE);
+        JsonFields.appendString(json, message);
+        json.append(",\"faultType\":");
+        JsonFields.appendString(json, faultType);
+        json.append(",\"className\":");
+        JsonFields.appendString(json, className);
+        json.append(",\"exception\":");
+        JsonFields.appendString(json, exception);
+        json.append('}');
+        return MockEntry.of(json.toString().getBytes(StandardCharsets.UTF_8), MediaType.APPLICATION_JSON);
+    }
+}
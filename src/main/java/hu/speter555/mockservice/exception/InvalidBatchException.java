@@ -0,0 +1,51 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.exception;
+
+import hu.icellmobilsoft.coffee.dto.exception.BaseException;
+import hu.icellmobilsoft.coffee.dto.exception.enums.CoffeeFaultType;
+
+/**
+ * Malformed batch request, it is answered with 400. It is an error of the client, so the exception does not capture
+ * stack trace.
+ *
+ * @author speter555
+ */
+public class InvalidBatchException extends BaseException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates the exception
+     *
+     * @param message description of the malformed request
+     */
+    public InvalidBatchException(String message) {
+        super(CoffeeFaultType.OPERATION_FAILED, message);
+    }
+
+    /**
+     * Stack trace is not captured
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,50 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.exception;
+
+import hu.icellmobilsoft.coffee.dto.exception.BONotFoundException;
+
+/**
+ * Missing mock file. It is an expected outcome when a client calls an unmocked url, so the exception does not capture
+ * stack trace.
+ *
+ * @author speter555
+ */
+public class MockNotFoundException extends BONotFoundException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates the exception
+     *
+     * @param fileName name of the missing file
+     */
+    public MockNotFoundException(String fileName) {
+        super("Unable to find File [" + fileName + "] from resource");
+    }
+
+    /**
+     * Stack trace is not captured
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -20,8 +20,12 @@
 package hu.speter555.mockservice.exception;
 
 import java.util.List;
+import java.util.function.Supplier;
 
 import javax.inject.Inject;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.ext.ExceptionMapper;
 import javax.ws.rs.ext.Provider;
@@ -43,10 +47,13 @@ import hu.icellmobilsoft.coffee.dto.exception.BaseExceptionWrapper;
 import hu.icellmobilsoft.coffee.dto.exception.InvalidRequestException;
 import hu.icellmobilsoft.coffee.dto.exception.XMLValidationError;
 import hu.icellmobilsoft.coffee.dto.exception.enums.CoffeeFaultType;
+import hu.speter555.mockservice.cache.MockEntry;
 import org.jboss.resteasy.spi.InternalServerErrorException;
 
 /**
- * Exception mapper for handled exception throwing
+ * Exception mapper for handled exception throwing.<br>
+ * The JSON fault bodies are written by {@link FaultBodies} without the fault DTOs, and the error logs are limited by
+ * {@link ErrorLogLimiter}, so a flood of the same error does not flood the log.
  *
  * @author peter.szabo
  */
@@ -59,10 +66,27 @@ public class RestExceptionMapper implements ExceptionMapper<Exception> {
     @ThisLogger
     private AppLogger log;
 
+    @Inject
+    private FaultBodies faultBodies;
+
+    @Inject
+    private ErrorLogLimiter errorLogLimiter;
+
+    @Context
+    private HttpHeaders httpHeaders;
+
     @Override
     public Response toResponse(Exception e) {
         Response result = null;
-        if (e instanceof BaseException) {
+        if (e instanceof MockNotFoundException) {
+            result = handleMockNotFound((MockNotFoundException) e);
+        } else if (e instanceof UpstreamUnavailableException) {
+            result = handleUpstreamUnavailable((UpstreamUnavailableException) e);
+        } else if (e instanceof UpstreamStatusException) {
+            result = handleUpstreamStatus((UpstreamStatusException) e);
+        } else if (e instanceof InvalidBatchException) {
+            result = handleInvalidBatch((InvalidBatchException) e);
+        } else if (e instanceof BaseException) {
             result = handleBaseException((BaseException) e);
         } else if (e instanceof BaseExceptionWrapper) {
             BaseExceptionWrapper<?> wrappedException = (BaseExceptionWrapper) e;
@@ -73,46 +97,69 @@ public class RestExceptionMapper implements ExceptionMapper<Exception> {
                 this.log.info("Wrapped BaseException. Trying to match the correct mapper...");
                 result = this.handleWrappedException((BaseException) e.getCause());
             } else {
-                this.log.error("Unknown error in cause: ", e);
-                this.log.writeLogToError();
+                logError("Unknown error in cause: ", e);
             }
         } else {
-            this.log.error("Unknown error: ", e);
-            this.log.writeLogToError();
+            logError("Unknown error: ", e);
         }
 
         return result != null ? result : this.handleException(e);
     }
 
     private Response handleException(Exception e) {
-        TechnicalFault dto = new TechnicalFault();
-        addCommonInfo(dto, e, CoffeeFaultType.OPERATION_FAILED);
         Response.Status statusCode = Response.Status.INTERNAL_SERVER_ERROR;
         if (e instanceof InternalServerErrorException) {
             statusCode = Response.Status.BAD_REQUEST;
         }
-
-        Response.ResponseBuilder responseBuilder = Response.status(statusCode);
-        return responseBuilder.entity(dto).build();
+        return faultResponse(statusCode.getStatusCode(), e, CoffeeFaultType.OPERATION_FAILED, TechnicalFault::new);
     }
 
     private Response handleWrappedException(BaseException exception) {
         if (exception == null) {
             this.log.warn("Failed to map the wrapped exception. Wrapper exception don't have content.");
             return null;
+        } else if (exception instanceof UpstreamStatusException) {
+            return handleUpstreamStatus((UpstreamStatusException) exception);
         } else {
             return handleBaseException(exception);
         }
     }
 
+    private Response handleMockNotFound(MockNotFoundException e) {
+        // expected outcome of unmocked urls, no stack trace and no error log, only counted
+        errorLogLimiter.occurred(e.getClass().getName());
+        log.debug(e.getLocalizedMessage());
+        return faultResponse(HTTP_STATUS_I_AM_A_TEAPOT, e, e.getFaultTypeEnum(), BONotFound::new);
+    }
+
+    private Response handleUpstreamUnavailable(UpstreamUnavailableException e) {
+        // load shedding and timeouts are expected under load, no stack trace and no error log
+        logWarning(e);
+        return faultResponse(e.getStatus(), e, e.getFaultTypeEnum(), TechnicalFault::new);
+    }
+
+    private Response handleUpstreamStatus(UpstreamStatusException e) {
+        // error of the upstream, it is passed to the client as the redirect call answered it
+        logWarning(e);
+        if (e.getStatus() == HTTP_STATUS_I_AM_A_TEAPOT) {
+            return faultResponse(HTTP_STATUS_I_AM_A_TEAPOT, e, e.getFaultTypeEnum(), BONotFound::new);
+        } else if (e.getStatus() == Response.Status.UNAUTHORIZED.getStatusCode()) {
+            return faultResponse(e.getStatus(), e, e.getFaultTypeEnum(), BusinessFault::new);
+        }
+        return faultResponse(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), e, e.getFaultTypeEnum(), TechnicalFault::new);
+    }
+
+    private Response handleInvalidBatch(InvalidBatchException e) {
+        // error of the client, no stack trace
+        logWarning(e);
+        return faultResponse(Response.Status.BAD_REQUEST.getStatusCode(), e, e.getFaultTypeEnum(), BusinessFault::new);
+    }
+
     private Response handleBaseException(BaseException e) {
-        log.error("Known error: ", e);
-        log.writeLogToError();
+        logError("Known error: ", e);
 
         if (e instanceof BONotFoundException) {
-            BONotFound dto = new BONotFound();
-            addCommonInfo(dto, e);
-            return Response.status(HTTP_STATUS_I_AM_A_TEAPOT).entity(dto).build();
+            return faultResponse(HTTP_STATUS_I_AM_A_TEAPOT, e, e.getFaultTypeEnum(), BONotFound::new);
         } else if (e instanceof InvalidRequestException) {
             InvalidRequestException ire = (InvalidRequestException) e;
             InvalidRequestFault dto = new InvalidRequestFault();
@@ -120,31 +167,66 @@ public class RestExceptionMapper implements ExceptionMapper<Exception> {
             addValidationErrors(dto, ire.getErrors());
             return Response.status(Response.Status.BAD_REQUEST).entity(dto).build();
         } else if (e instanceof AccessDeniedException) {
-            BusinessFault dto = new BusinessFault();
-            addCommonInfo(dto, e, e.getFaultTypeEnum());
-            return Response.status(Response.Status.UNAUTHORIZED).entity(dto).build();
+            return faultResponse(Response.Status.UNAUTHORIZED.getStatusCode(), e, e.getFaultTypeEnum(), BusinessFault::new);
         } else {
             // BaseException
-            TechnicalFault dto = new TechnicalFault();
-            addCommonInfo(dto, e);
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(dto).build();
+            return faultResponse(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), e, e.getFaultTypeEnum(), TechnicalFault::new);
         }
     }
 
+    private void logError(String message, Exception e) {
+        long suppressed = errorLogLimiter.occurred(e.getClass().getName());
+        if (suppressed != ErrorLogLimiter.SUPPRESSED) {
+            log.error(withSuppressed(message, suppressed), e);
+            log.writeLogToError();
+        }
+    }
+
+    private void logWarning(Exception e) {
+        long suppressed = errorLogLimiter.occurred(e.getClass().getName());
+        if (suppressed != ErrorLogLimiter.SUPPRESSED) {
+            log.warn(withSuppressed(e.getLocalizedMessage(), suppressed));
+        }
+    }
+
+    private static String withSuppressed(String message, long suppressed) {
+        return suppressed > 0 ? message + " [" + suppressed + "] similar errors were not logged" : message;
+    }
+
+    private Response faultResponse(int status, Exception e, Enum<?> faultType, Supplier<? extends BaseExceptionResultType> dtoFactory) {
+        if (acceptsJson()) {
+            MockEntry body = faultBodies.get(e.getClass().getName(), faultType.name(), getMessage(e), e.getLocalizedMessage());
+            return Response.status(status)
+                    .entity(body)
+                    .type(body.getMediaType())
+                    .header(HttpHeaders.CONTENT_LENGTH, body.getContentLength())
+                    .build();
+        }
+        BaseExceptionResultType dto = dtoFactory.get();
+        addCommonInfo(dto, e, faultType);
+        return Response.status(status).entity(dto).build();
+    }
+
+    private boolean acceptsJson() {
+        if (httpHeaders == null) {
+            return false;
+        }
+        List<MediaType> acceptableMediaTypes = httpHeaders.getAcceptableMediaTypes();
+        MediaType preferred = acceptableMediaTypes.isEmpty() ? MediaType.WILDCARD_TYPE : acceptableMediaTypes.get(0);
+        if (preferred.isWildcardType()) {
+            // without preference the fault follows the format of the request
+            MediaType requestType = httpHeaders.getMediaType();
+            return requestType == null || !requestType.getSubtype().endsWith("xml");
+        }
+        return preferred.isCompatible(MediaType.APPLICATION_JSON_TYPE);
+    }
 
     private void addCommonInfo(BaseExceptionResultType dto, BaseException e) {
         this.addCommonInfo(dto, e, e.getFaultTypeEnum());
     }
 
     private void addCommonInfo(BaseExceptionResultType dto, Exception e, Enum<?> faultType) {
-        if (e instanceof JAXBException) {
-            if (e != null) {
-                Throwable t = ((JAXBException) e).getLinkedException();
-                dto.setMessage(t != null ? t.getLocalizedMessage() : e.getLocalizedMessage());
-            }
-        } else {
-            dto.setMessage(e.getLocalizedMessage());
-        }
+        dto.setMessage(getMessage(e));
         dto.setClassName(e.getClass().getName());
         dto.setException(e.getLocalizedMessage());
 
@@ -152,6 +234,14 @@ public class RestExceptionMapper implements ExceptionMapper<Exception> {
         dto.setFaultType(faultType.name());
     }
 
+    private static String getMessage(Exception e) {
+        if (e instanceof JAXBException) {
+            Throwable t = ((JAXBException) e).getLinkedException();
+            return t != null ? t.getLocalizedMessage() : e.getLocalizedMessage();
+        }
+        return e.getLocalizedMessage();
+    }
+
     private void addValidationErrors(InvalidRequestFault dto, List<XMLValidationError> errors) {
         if (errors != null) {
             for (XMLValidationError error : errors) {
@@ -0,0 +1,92 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.exception;
+
+import hu.icellmobilsoft.coffee.dto.exception.AccessDeniedException;
+import hu.icellmobilsoft.coffee.dto.exception.BONotFoundException;
+import hu.icellmobilsoft.coffee.dto.exception.BaseException;
+import hu.icellmobilsoft.coffee.dto.exception.TechnicalException;
+import hu.icellmobilsoft.coffee.dto.exception.enums.CoffeeFaultType;
+
+/**
+ * Non-200 response of a redirect call. It is an outcome of the upstream, not an error of the mock service, so the
+ * exception does not capture stack trace. It carries the fault type of the coffee exception the status used to be
+ * thrown as, so the fault responses keep their fault types.
+ *
+ * @author speter555
+ */
+public class UpstreamStatusException extends TechnicalException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Fault type of an upstream 418, as of {@link BONotFoundException}
+     */
+    public static final Enum<?> NOT_FOUND_FAULT_TYPE = new BONotFoundException("").getFaultTypeEnum();
+
+    /**
+     * Fault type of an upstream 401, as of {@link AccessDeniedException}
+     */
+    public static final Enum<?> ACCESS_DENIED_FAULT_TYPE = new AccessDeniedException("").getFaultTypeEnum();
+
+    /**
+     * Fault type of an upstream 500, as of {@link BaseException}
+     */
+    public static final Enum<?> FAILED_FAULT_TYPE = new BaseException("").getFaultTypeEnum();
+
+    private final int status;
+
+    /**
+     * Creates the exception
+     *
+     * @param status http status of the upstream response
+     * @param message message of the fault response
+     */
+    public UpstreamStatusException(int status, String message) {
+        this(status, CoffeeFaultType.OPERATION_FAILED, message);
+    }
+
+    /**
+     * Creates the exception
+     *
+     * @param status http status of the upstream response
+     * @param faultType fault type of the fault response
+     * @param message message of the fault response
+     */
+    public UpstreamStatusException(int status, Enum<?> faultType, String message) {
+        super(faultType, message);
+        this.status = status;
+    }
+
+    /**
+     * @return http status of the upstream response
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Stack trace is not captured
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
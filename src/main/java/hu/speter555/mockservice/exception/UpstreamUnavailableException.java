@@ -0,0 +1,98 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.exception;
+
+import javax.ws.rs.core.Response;
+
+import hu.icellmobilsoft.coffee.dto.exception.TechnicalException;
+import hu.icellmobilsoft.coffee.dto.exception.enums.CoffeeFaultType;
+
+/**
+ * Redirect call which is not executed or not answered in time. It is an expected outcome under load, so the exception
+ * does not capture stack trace, and it is answered with its own http status instead of 500.
+ *
+ * @author speter555
+ */
+public class UpstreamUnavailableException extends TechnicalException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    private final boolean circuitOpen;
+
+    private UpstreamUnavailableException(Response.Status status, String message, boolean circuitOpen) {
+        super(CoffeeFaultType.OPERATION_FAILED, message);
+        this.status = status.getStatusCode();
+        this.circuitOpen = circuitOpen;
+    }
+
+    /**
+     * Creates the exception of a rejected call
+     *
+     * @param message reason of the rejection
+     * @return exception with 503 status
+     */
+    public static UpstreamUnavailableException rejected(String message) {
+        return new UpstreamUnavailableException(Response.Status.SERVICE_UNAVAILABLE, message, false);
+    }
+
+    /**
+     * Creates the exception of a timed out call
+     *
+     * @param message description of the call
+     * @return exception with 504 status
+     */
+    public static UpstreamUnavailableException timeout(String message) {
+        return new UpstreamUnavailableException(Response.Status.GATEWAY_TIMEOUT, message, false);
+    }
+
+    /**
+     * Creates the exception of a call rejected by the open circuit of its upstream
+     *
+     * @param message reason of the rejection
+     * @return exception with 503 status
+     */
+    public static UpstreamUnavailableException circuitOpen(String message) {
+        return new UpstreamUnavailableException(Response.Status.SERVICE_UNAVAILABLE, message, true);
+    }
+
+    /**
+     * @return http status of the response
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return whether the call was rejected by an open circuit, the upstream has not been called
+     */
+    public boolean isCircuitOpen() {
+        return circuitOpen;
+    }
+
+    /**
+     * Stack trace is not captured
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,133 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.fault;
+
+import java.util.Map;
+
+import javax.enterprise.inject.Vetoed;
+
+/**
+ * Simulated behavior of a mock file: response latency, bandwidth, injected error responses and connection resets.
+ * Parsed from the properties of the mock file in the behavior file:
+ *
+ * <pre>
+ * rest/users/{id}.json.latency=normal:200,50
+ * rest/users/{id}.json.bandwidth=65536
+ * rest/users/{id}.json.error.rate=0.05
+ * rest/users/{id}.json.error.status=503
+ * rest/users/{id}.json.reset.rate=0.01
+ * </pre>
+ *
+ * @author speter555
+ */
+@Vetoed
+public final class Behavior {
+
+    /**
+     * Attribute names of the behavior properties
+     */
+    static final String[] ATTRIBUTES = { "latency", "bandwidth", "error.rate", "error.status", "reset.rate" };
+
+    private static final int DEFAULT_ERROR_STATUS = 503;
+
+    private final LatencyDistribution latency;
+
+    private final long bandwidth;
+
+    private final double errorRate;
+
+    private final int errorStatus;
+
+    private final double resetRate;
+
+    private Behavior(LatencyDistribution latency, long bandwidth, double errorRate, int errorStatus, double resetRate) {
+        this.latency = latency;
+        this.bandwidth = bandwidth;
+        this.errorRate = errorRate;
+        this.errorStatus = errorStatus;
+        this.resetRate = resetRate;
+    }
+
+    /**
+     * Parses the behavior
+     *
+     * @param attributes attribute values by name, see {@link #ATTRIBUTES}
+     * @return behavior
+     * @throws IllegalArgumentException if a value is invalid
+     */
+    static Behavior parse(Map<String, String> attributes) {
+        String latency = attributes.get("latency");
+        long bandwidth = Long.parseLong(attributes.getOrDefault("bandwidth", "0").trim());
+        double errorRate = parseRate(attributes.getOrDefault("error.rate", "0"));
+        int errorStatus = Integer.parseInt(attributes.getOrDefault("error.status", String.valueOf(DEFAULT_ERROR_STATUS)).trim());
+        double resetRate = parseRate(attributes.getOrDefault("reset.rate", "0"));
+        if (bandwidth < 0) {
+            throw new IllegalArgumentException("Bandwidth [" + bandwidth + "] is negative");
+        }
+        if (errorStatus < 100 || errorStatus > 599) {
+            throw new IllegalArgumentException("Error status [" + errorStatus + "] is not an http status");
+        }
+        return new Behavior(latency != null ? LatencyDistribution.parse(latency) : LatencyDistribution.NONE, bandwidth, errorRate,
+                errorStatus, resetRate);
+    }
+
+    /**
+     * @return response latency
+     */
+    public LatencyDistribution getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return simulated bandwidth in bytes per second, 0 means unlimited
+     */
+    public long getBandwidth() {
+        return bandwidth;
+    }
+
+    /**
+     * @return probability of an injected error response, between 0 and 1
+     */
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    /**
+     * @return http status of the injected error responses
+     */
+    public int getErrorStatus() {
+        return errorStatus;
+    }
+
+    /**
+     * @return probability of an injected connection reset, between 0 and 1
+     */
+    public double getResetRate() {
+        return resetRate;
+    }
+
+    private static double parseRate(String text) {
+        double rate = Double.parseDouble(text.trim());
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("Rate [" + text + "] is not between 0 and 1");
+        }
+        return rate;
+    }
+}
@@ -0,0 +1,275 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.fault;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.Initialized;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import hu.speter555.mockservice.cache.MockEntry;
+import hu.speter555.mockservice.config.ConfigKey;
+import hu.speter555.mockservice.httpclient.StreamingResponse;
+import hu.speter555.mockservice.util.NamedThreadFactory;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Applies the simulated {@link Behavior} of the mock files to the responses. The latency is waited on a timer, the
+ * suspended response is resumed when it expires, so delayed responses do not hold threads. The bandwidth is simulated
+ * as additional latency by the body size.
+ * <p>
+ * The behaviors are read from the configured properties file (file system path or classpath resource), keyed by mock
+ * file path, the {@code *} key is the default of all mock files.
+ *
+ * @author speter555
+ */
+@ApplicationScoped
+public class FaultInjector {
+
+    private static final Logger LOG = Logger.getLogger(FaultInjector.class.getName());
+
+    private static final String DEFAULT_KEY = "*";
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.BEHAVIOR_FILE)
+    private Optional<String> behaviorFile;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.BEHAVIOR_TIMER_THREADS, defaultValue = "2")
+    private int timerThreads;
+
+    private final LongAdder delayedCount = new LongAdder();
+
+    private final LongAdder errorCount = new LongAdder();
+
+    private final LongAdder resetCount = new LongAdder();
+
+    private volatile Map<String, Behavior> behaviors = Map.of();
+
+    private ScheduledExecutorService timer;
+
+    /**
+     * Reads the behavior file on application startup, if it is configured
+     *
+     * @param init application scope initialization event
+     */
+    public void onStartup(@Observes @Initialized(ApplicationScoped.class) Object init) {
+        if (behaviorFile.isEmpty() || behaviorFile.get().isBlank()) {
+            return;
+        }
+        try {
+            behaviors = Map.copyOf(parse(load(behaviorFile.get())));
+        } catch (IOException | IllegalArgumentException e) {
+            LOG.log(Level.SEVERE, "Unable to read behavior file [" + behaviorFile.get() + "], behaviors are disabled", e);
+            return;
+        }
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(timerThreads, new NamedThreadFactory("behavior-timer"));
+        executor.setRemoveOnCancelPolicy(true);
+        timer = executor;
+        LOG.info(() -> MessageFormat.format("Behavior file [{0}] read: [{1}] behaviors", behaviorFile.get(),
+                String.valueOf(behaviors.size())));
+    }
+
+    /**
+     * Returns the behavior of the mock file
+     *
+     * @param filePath mock file path
+     * @return behavior of the file, the default behavior or null if none
+     */
+    public Behavior getBehavior(String filePath) {
+        Map<String, Behavior> current = behaviors;
+        if (current.isEmpty()) {
+            return null;
+        }
+        Behavior behavior = filePath != null ? current.get(filePath) : null;
+        return behavior != null ? behavior : current.get(DEFAULT_KEY);
+    }
+
+    /**
+     * Resumes the suspended response by the behavior: it is replaced by an error response or a connection reset by the
+     * configured rates, and delayed by the latency and the bandwidth.
+     *
+     * @param asyncResponse suspended response
+     * @param behavior simulated behavior
+     * @param result the response or the {@link Throwable} to resume with
+     */
+    public void apply(AsyncResponse asyncResponse, Behavior behavior, Object result) {
+        Random random = ThreadLocalRandom.current();
+        Object outcome = result;
+        if (behavior.getErrorRate() > 0 && random.nextDouble() < behavior.getErrorRate()) {
+            errorCount.increment();
+            outcome = Response.status(behavior.getErrorStatus()).build();
+        } else if (behavior.getResetRate() > 0 && random.nextDouble() < behavior.getResetRate()) {
+            resetCount.increment();
+            outcome = reset(result);
+        }
+        if (outcome != result) {
+            // the replaced upstream stream is never written, its pooled connection must be released
+            close(result);
+        }
+        long delay = behavior.getLatency().sampleMillis(random) + transferMillis(outcome, behavior.getBandwidth());
+        if (delay <= 0) {
+            resume(asyncResponse, outcome);
+            return;
+        }
+        delayedCount.increment();
+        Object delayed = outcome;
+        timer.schedule(() -> resume(asyncResponse, delayed), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Resumes the suspended response. If the client is gone, a streamed upstream response is released.
+     *
+     * @param asyncResponse suspended response
+     * @param result the response or the {@link Throwable} to resume with
+     */
+    public static void resume(AsyncResponse asyncResponse, Object result) {
+        boolean resumed;
+        if (result instanceof Throwable) {
+            resumed = asyncResponse.resume((Throwable) result);
+        } else {
+            resumed = asyncResponse.resume(result);
+        }
+        if (!resumed) {
+            close(result);
+        }
+    }
+
+    /**
+     * @return number of delayed responses
+     */
+    public long getDelayedCount() {
+        return delayedCount.sum();
+    }
+
+    /**
+     * @return number of injected error responses
+     */
+    public long getErrorCount() {
+        return errorCount.sum();
+    }
+
+    /**
+     * @return number of injected connection resets
+     */
+    public long getResetCount() {
+        return resetCount.sum();
+    }
+
+    /**
+     * Stops the timer, the pending delayed responses are not resumed
+     */
+    @PreDestroy
+    public void close() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+    }
+
+    private static Properties load(String location) throws IOException {
+        Properties properties = new Properties();
+        Path path = Path.of(location);
+        if (Files.isRegularFile(path)) {
+            try (InputStream input = Files.newInputStream(path)) {
+                properties.load(input);
+            }
+            return properties;
+        }
+        try (InputStream input = ClassLoader.getSystemResourceAsStream(location)) {
+            if (input == null) {
+                throw new IOException("Behavior file [" + location + "] not found");
+            }
+            properties.load(input);
+        }
+        return properties;
+    }
+
+    private static Map<String, Behavior> parse(Properties properties) {
+        Map<String, Map<String, String>> attributes = new HashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            boolean known = false;
+            for (String attribute : Behavior.ATTRIBUTES) {
+                if (name.endsWith("." + attribute)) {
+                    String filePath = name.substring(0, name.length() - attribute.length() - 1);
+                    attributes.computeIfAbsent(filePath, key -> new HashMap<>()).put(attribute, properties.getProperty(name));
+                    known = true;
+                    break;
+                }
+            }
+            if (!known) {
+                throw new IllegalArgumentException("Unknown behavior property [" + name + "]");
+            }
+        }
+        Map<String, Behavior> parsed = new HashMap<>();
+        for (Map.Entry<String, Map<String, String>> entry : attributes.entrySet()) {
+            parsed.put(entry.getKey(), Behavior.parse(entry.getValue()));
+        }
+        return parsed;
+    }
+
+    private static void close(Object result) {
+        if (result instanceof Response && ((Response) result).getEntity() instanceof StreamingResponse) {
+            ((StreamingResponse) ((Response) result).getEntity()).close();
+        }
+    }
+
+    private static Response reset(Object result) {
+        long contentLength = 1;
+        if (result instanceof Response && ((Response) result).getEntity() instanceof MockEntry) {
+            contentLength = Math.max(1, ((MockEntry) ((Response) result).getEntity()).getContentLength());
+        }
+        // the headers are committed, then the connection is dropped before the promised body
+        StreamingOutput connectionReset = output -> {
+            output.flush();
+            throw new IOException("Injected connection reset");
+        };
+        return Response.ok(connectionReset).header(HttpHeaders.CONTENT_LENGTH, contentLength).build();
+    }
+
+    private static long transferMillis(Object outcome, long bandwidth) {
+        if (bandwidth <= 0 || !(outcome instanceof Response) || !(((Response) outcome).getEntity() instanceof MockEntry)) {
+            return 0;
+        }
+        return ((MockEntry) ((Response) outcome).getEntity()).getContentLength() * 1000L / bandwidth;
+    }
+}
@@ -0,0 +1,137 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.fault;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Simulated response latency. Parsed from text like:
+ * <ul>
+ * <li>{@code fixed:200} - always 200 ms</li>
+ * <li>{@code uniform:100,300} - uniformly distributed between 100 and 300 ms</li>
+ * <li>{@code normal:200,50} - normally distributed with 200 ms mean and 50 ms standard deviation, negative samples are
+ * 0</li>
+ * <li>{@code percentiles:50=100,90=300,99=1200} - linear interpolation between the latency percentiles, e.g. measured
+ * on the real system</li>
+ * </ul>
+ *
+ * @author speter555
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+
+    /**
+     * No latency
+     */
+    LatencyDistribution NONE = random -> 0;
+
+    /**
+     * Samples a latency
+     *
+     * @param random random source
+     * @return latency in milliseconds, not negative
+     */
+    long sampleMillis(Random random);
+
+    /**
+     * Parses the distribution
+     *
+     * @param text distribution like {@code normal:200,50}
+     * @return distribution
+     * @throws IllegalArgumentException if the text is invalid
+     */
+    static LatencyDistribution parse(String text) {
+        int colon = text.indexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("Latency distribution [" + text + "] has no type, e.g. fixed:200");
+        }
+        String type = text.substring(0, colon).trim();
+        String[] arguments = text.substring(colon + 1).split(",");
+        switch (type) {
+            case "fixed":
+                long fixed = parseMillis(arguments, 1)[0];
+                return random -> fixed;
+            case "uniform":
+                long[] range = parseMillis(arguments, 2);
+                if (range[1] < range[0]) {
+                    throw new IllegalArgumentException("Uniform latency [" + text + "] has larger minimum than maximum");
+                }
+                return random -> range[0] + (long) (random.nextDouble() * (range[1] - range[0]));
+            case "normal":
+                long[] normal = parseMillis(arguments, 2);
+                return random -> Math.max(0, Math.round(normal[0] + random.nextGaussian() * normal[1]));
+            case "percentiles":
+                return percentiles(text, arguments);
+            default:
+                throw new IllegalArgumentException("Unknown latency distribution type [" + type + "]");
+        }
+    }
+
+    private static LatencyDistribution percentiles(String text, String[] arguments) {
+        TreeMap<Double, Long> points = new TreeMap<>();
+        for (String argument : arguments) {
+            String[] point = argument.split("=");
+            if (point.length != 2) {
+                throw new IllegalArgumentException("Latency percentile [" + argument + "] is not like 99=1200");
+            }
+            double percentile = Double.parseDouble(point[0].trim());
+            if (percentile <= 0 || percentile > 100) {
+                throw new IllegalArgumentException("Latency percentile [" + argument + "] is not between 0 and 100");
+            }
+            points.put(percentile, parseMillis(new String[] { point[1] }, 1)[0]);
+        }
+        if (points.isEmpty()) {
+            throw new IllegalArgumentException("Latency percentiles [" + text + "] are empty");
+        }
+        double[] percentiles = points.keySet().stream().mapToDouble(Double::doubleValue).toArray();
+        long[] values = points.values().stream().mapToLong(Long::longValue).toArray();
+        return random -> {
+            double sample = random.nextDouble() * 100;
+            int index = Arrays.binarySearch(percentiles, sample);
+            if (index >= 0) {
+                return values[index];
+            }
+            int upper = -index - 1;
+            if (upper == 0) {
+                return values[0];
+            } else if (upper == percentiles.length) {
+                return values[values.length - 1];
+            }
+            double ratio = (sample - percentiles[upper - 1]) / (percentiles[upper] - percentiles[upper - 1]);
+            return values[upper - 1] + Math.round(ratio * (values[upper] - values[upper - 1]));
+        };
+    }
+
+    private static long[] parseMillis(String[] arguments, int count) {
+        if (arguments.length != count) {
+            throw new IllegalArgumentException("Latency distribution needs [" + count + "] arguments: " + Arrays.toString(arguments));
+        }
+        long[] millis = new long[count];
+        for (int i = 0; i < count; i++) {
+            millis[i] = Long.parseLong(arguments[i].trim());
+            if (millis[i] < 0) {
+                throw new IllegalArgumentException("Latency [" + millis[i] + "] is negative");
+            }
+        }
+        return millis;
+    }
+}
@@ -0,0 +1,158 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.httpclient;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.enterprise.inject.Vetoed;
+
+/**
+ * Concurrency limit of an upstream, adapted by AIMD: every call answered in time while the limit is in use increases
+ * the limit by {@code 1 / limit}, so it grows by about one per round trip, and every slow or failed call multiplies it by
+ * {@value #BACKOFF_RATIO}. The calls above the limit wait in a bounded queue for a bounded time.
+ *
+ * @author speter555
+ */
+@Vetoed
+final class AdaptiveLimit {
+
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private static final int MIN_LIMIT = 1;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition available = lock.newCondition();
+
+    private final int maxLimit;
+
+    private final int maxQueue;
+
+    private final long latencyThresholdNanos;
+
+    private double limit;
+
+    private int inFlight;
+
+    private int waiting;
+
+    AdaptiveLimit(int initialLimit, int maxLimit, int maxQueue, long latencyThresholdNanos) {
+        this.maxLimit = Math.max(MIN_LIMIT, maxLimit);
+        this.limit = Math.max(MIN_LIMIT, Math.min(initialLimit, this.maxLimit));
+        this.maxQueue = maxQueue;
+        this.latencyThresholdNanos = latencyThresholdNanos;
+    }
+
+    /**
+     * Takes a slot of the limit, waits for a free slot if the queue is not full
+     *
+     * @param maxWaitNanos maximum time to wait, 0 does not wait
+     * @return true if the slot is taken, false if the call is rejected
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    boolean acquire(long maxWaitNanos) throws InterruptedException {
+        lock.lock();
+        try {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                return true;
+            }
+            if (maxWaitNanos <= 0 || waiting >= maxQueue) {
+                return false;
+            }
+            waiting++;
+            try {
+                long remaining = maxWaitNanos;
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    remaining = available.awaitNanos(remaining);
+                }
+                inFlight++;
+                return true;
+            } finally {
+                waiting--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases the slot and adapts the limit by the outcome of the call
+     *
+     * @param elapsedNanos duration of the call
+     * @param failed true if the upstream did not answer, or answered with overload (5xx)
+     */
+    void release(long elapsedNanos, boolean failed) {
+        lock.lock();
+        try {
+            // the limit is only raised if it is in use, an idle upstream does not earn a high limit
+            boolean saturated = inFlight * 2 >= (int) limit;
+            inFlight--;
+            int before = (int) limit;
+            if (failed || elapsedNanos > latencyThresholdNanos) {
+                limit = Math.max(MIN_LIMIT, limit * BACKOFF_RATIO);
+            } else if (saturated) {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+            if ((int) limit > before) {
+                available.signalAll();
+            } else {
+                available.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases the slot of a call which has not been executed, the limit is not adapted
+     */
+    void cancel() {
+        lock.lock();
+        try {
+            inFlight--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -20,33 +20,60 @@
 package hu.speter555.mockservice.httpclient;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 import javax.enterprise.context.Dependent;
+import javax.inject.Inject;
+import javax.ws.rs.HttpMethod;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
-import hu.icellmobilsoft.coffee.dto.exception.AccessDeniedException;
-import hu.icellmobilsoft.coffee.dto.exception.BONotFoundException;
 import hu.icellmobilsoft.coffee.dto.exception.BaseException;
 import hu.icellmobilsoft.coffee.dto.exception.TechnicalException;
 import hu.icellmobilsoft.coffee.dto.exception.enums.CoffeeFaultType;
 import hu.icellmobilsoft.coffee.rest.apache.BaseApacheHttpClient;
+import hu.speter555.mockservice.cache.Freshness;
+import hu.speter555.mockservice.cache.MockEntry;
+import hu.speter555.mockservice.exception.UpstreamStatusException;
+import hu.speter555.mockservice.exception.UpstreamUnavailableException;
+import hu.speter555.mockservice.logger.AccessLog;
+import hu.speter555.mockservice.metrics.MetricsRegistry;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpHead;
 import org.apache.http.client.methods.HttpOptions;
 import org.apache.http.client.methods.HttpPatch;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.HttpClientUtils;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
 
 /**
@@ -59,18 +86,35 @@ public class ApacheHttpClient extends BaseApacheHttpClient {
 
     private static final int HTTP_STATUS_I_AM_A_TEAPOT = 418;
 
+    @Inject
+    private HttpClientPool httpClientPool;
+
+    @Inject
+    private MetricsRegistry metricsRegistry;
+
+    @Inject
+    private AccessLog accessLog;
+
+    @Inject
+    private UpstreamBulkheads upstreamBulkheads;
+
+    @Inject
+    private UpstreamCircuitBreakers upstreamCircuitBreakers;
+
+    @Inject
+    private UpstreamHedging upstreamHedging;
+
     private Map<String, String> additionalHeader = new HashMap<>();
 
     /**
      * Send GET call to url
      *
      * @param url called url
-     * @return response in String
+     * @return pre-encoded response
      * @throws BaseException if error
      */
-    public String sendClientGet(String url) throws BaseException {
-        HttpResponse response = super.sendClientBaseGet(url);
-        return handleResponse(response);
+    public MockEntry sendClientGet(String url) throws BaseException {
+        return sendClientBaseCall(new HttpGet(url), null, null);
     }
 
     /**
@@ -79,12 +123,11 @@ public class ApacheHttpClient extends BaseApacheHttpClient {
      * @param url     called url
      * @param request sended object
      * @param mediaType MediaType of request
-     * @return response in String
+     * @return pre-encoded response
      * @throws BaseException if error
      */
-    public String sendClientPost(String url, String request, MediaType mediaType) throws BaseException {
-        HttpResponse response = sendClientBasePost(url, request, mediaType);
-        return handleResponse(response);
+    public MockEntry sendClientPost(String url, String request, MediaType mediaType) throws BaseException {
+        return sendClientBasePost(url, request, mediaType);
     }
 
     /**
@@ -93,48 +136,44 @@ public class ApacheHttpClient extends BaseApacheHttpClient {
      * @param url     called url
      * @param request sended object
      * @param mediaType MediaType of request
-     * @return response in String
+     * @return pre-encoded response
      * @throws BaseException if error
      */
-    public String sendClientPut(String url, String request, MediaType mediaType) throws BaseException {
-        HttpResponse response = sendClientBasePut(url, request, mediaType);
-        return handleResponse(response);
+    public MockEntry sendClientPut(String url, String request, MediaType mediaType) throws BaseException {
+        return sendClientBasePut(url, request, mediaType);
     }
 
     /**
      * Send DELETE call to url
      *
      * @param url called url
-     * @return response in String
+     * @return pre-encoded response
      * @throws BaseException if error
      */
-    public String sendClientDelete(String url) throws BaseException {
-        HttpResponse response = super.sendClientBaseDelete(url);
-        return handleResponse(response);
+    public MockEntry sendClientDelete(String url) throws BaseException {
+        return sendClientBaseCall(new HttpDelete(url), null, null);
     }
 
     /**
      * Send HEAD call to url
      *
      * @param url called url
-     * @return response in String
+     * @return pre-encoded response
      * @throws BaseException if error
      */
-    public String sendClientHead(String url) throws BaseException {
-        HttpResponse response = sendClientBaseHead(url);
-        return handleResponse(response);
+    public MockEntry sendClientHead(String url) throws BaseException {
+        return sendClientBaseHead(url);
     }
 
     /**
      * Send OPTIONS call to url
      *
      * @param url called url
-     * @return response in String
+     * @return pre-encoded response
      * @throws BaseException if error
      */
-    public String sendClientOptions(String url) throws BaseException {
-        HttpResponse response = sendClientBaseOptions(url);
-        return handleResponse(response);
+    public MockEntry sendClientOptions(String url) throws BaseException {
+        return sendClientBaseOptions(url);
     }
 
     /**
@@ -143,12 +182,67 @@ public class ApacheHttpClient extends BaseApacheHttpClient {
      * @param url     called url
      * @param request sended object
      * @param mediaType MediaType of request
-     * @return response in String
+     * @return pre-encoded response
      * @throws BaseException if error
      */
-    public String sendClientPatch(String url, String request, MediaType mediaType) throws BaseException {
-        HttpResponse response = sendClientBasePatch(url, request, mediaType);
-        return handleResponse(response);
+    public MockEntry sendClientPatch(String url, String request, MediaType mediaType) throws BaseException {
+        return sendClientBasePatch(url, request, mediaType);
+    }
+
+    /**
+     * Send call to url, and pass the request and response bodies through in chunks without buffering
+     *
+     * @param method http method
+     * @param url called url
+     * @param request request body stream, null if no body
+     * @param contentLength length of the request body, negative if unknown (chunked)
+     * @param contentType Content-Type of the request body
+     * @param recordMaxBytes maximum response body size to record
+     * @param recorder receives the response body if it is fully written and fits into the record limit
+     * @return response to stream to the client, its body has not been read yet
+     * @throws BaseException if error or the upstream response status is not 200
+     */
+    public StreamingResponse sendClientStream(String method, String url, InputStream request, long contentLength, String contentType,
+            int recordMaxBytes, Consumer<MockEntry> recorder) throws BaseException {
+        HttpRequestBase httpRequest = createRequest(method, url);
+        HttpEntity entity = null;
+        if (httpRequest instanceof HttpEntityEnclosingRequestBase && request != null) {
+            entity = new InputStreamEntity(request, contentLength, parseContentType(contentType));
+        }
+        String upstream = httpRequest.getURI().getHost();
+        CircuitBreaker.Permit circuit = upstreamCircuitBreakers.acquire(upstream);
+        AdaptiveLimit slot = acquireSlot(upstream, circuit, true);
+        UpstreamTiming timing = new UpstreamTiming(httpRequest);
+        HttpResponse response;
+        try {
+            response = execute(httpRequest, entity, timing);
+        } catch (BaseException e) {
+            release(slot, circuit, timing.getElapsedNanos(), true);
+            throw e;
+        }
+        // the slot is held until the response head, the body is streamed at the pace of the client
+        int status = response.getStatusLine().getStatusCode();
+        release(slot, circuit, timing.getElapsedNanos(), isOverloaded(status));
+        if (status != HttpStatus.SC_OK) {
+            // reads the error body and throws the mapped exception
+            handleResponse(response, timing);
+        }
+        return new StreamingResponse(response, recordMaxBytes, recorder);
+    }
+
+    /**
+     * Send call to url on the shared non-blocking client, the calling thread is not blocked while the upstream responds
+     *
+     * @param method http method
+     * @param url called url
+     * @param request request body, null if no body
+     * @param mediaType media type of the request body
+     * @return future of the response, completed on an I/O thread, exceptionally with {@link BaseException} if error or
+     *         the upstream response status is not 200. Cancelling it aborts the call.
+     * @throws BaseException if the call cannot be started
+     */
+    public CompletableFuture<MockEntry> sendClientAsync(String method, String url, String request, MediaType mediaType) throws BaseException {
+        return sendAsync(method, url, request, mediaType);
     }
 
     /**
@@ -167,73 +261,393 @@ public class ApacheHttpClient extends BaseApacheHttpClient {
         }
     }
 
-    private HttpResponse sendClientBaseHead(String url) throws BaseException {
+    private CompletableFuture<MockEntry> sendAsync(String method, String url, String request, MediaType mediaType) throws BaseException {
+        HttpRequestBase httpRequest = createRequest(method, url);
+        httpRequest.setConfig(createRequestConfig().build());
+        beforeAll(httpRequest);
+        if (httpRequest instanceof HttpEntityEnclosingRequestBase && request != null) {
+            ((HttpEntityEnclosingRequestBase) httpRequest).setEntity(createEntity(request, mediaType));
+        }
+
+        CompletableFuture<MockEntry> result = new CompletableFuture<>();
+        String upstream = httpRequest.getURI().getHost();
+        CircuitBreaker.Permit circuit = upstreamCircuitBreakers.acquire(upstream);
+        // an I/O thread must not wait, the calls above the limit are rejected at once
+        AdaptiveLimit slot = acquireSlot(upstream, circuit, false);
+        // the non-blocking client has no request executor, only the total time is measured
+        UpstreamTiming timing = new UpstreamTiming(httpRequest);
+        FutureCallback<HttpResponse> callback = new FutureCallback<HttpResponse>() {
+
+            @Override
+            public void completed(HttpResponse response) {
+                release(slot, circuit, timing.getElapsedNanos(), isOverloaded(response.getStatusLine().getStatusCode()));
+                try {
+                    byte[] body = readAsyncResponse(response);
+                    recordUpstream(timing, response.getStatusLine().getStatusCode(), body);
+                    result.complete(toMockEntry(response, body));
+                } catch (BaseException e) {
+                    result.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                release(slot, circuit, timing.getElapsedNanos(), true);
+                recordUpstream(timing, 0, null);
+                result.completeExceptionally(
+                        new TechnicalException(CoffeeFaultType.OPERATION_FAILED, "IOException in call: " + e.getLocalizedMessage(), e));
+            }
+
+            @Override
+            public void cancelled() {
+                // cancelled by the timeout of the caller, it says nothing about the upstream, the limit is not adjusted
+                upstreamBulkheads.cancel(slot);
+                upstreamCircuitBreakers.cancel(circuit);
+                result.cancel(false);
+            }
+        };
+        Future<HttpResponse> call;
+        try {
+            call = httpClientPool.executeAsync(httpRequest, callback);
+        } catch (BaseException | RuntimeException e) {
+            upstreamBulkheads.cancel(slot);
+            upstreamCircuitBreakers.cancel(circuit);
+            throw e;
+        }
+        result.whenComplete((response, e) -> {
+            if (result.isCancelled()) {
+                call.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private MockEntry sendClientBaseHead(String url) throws BaseException {
         return sendClientBaseCall(new HttpHead(url), null, null);
     }
 
-    private HttpResponse sendClientBaseOptions(String url) throws BaseException {
+    private MockEntry sendClientBaseOptions(String url) throws BaseException {
         return sendClientBaseCall(new HttpOptions(url), null, null);
     }
 
-    private HttpResponse sendClientBasePatch(String url, String request, MediaType mediaType) throws BaseException {
+    private MockEntry sendClientBasePatch(String url, String request, MediaType mediaType) throws BaseException {
         return sendClientBaseCall(new HttpPatch(url), request, mediaType);
     }
 
-    private HttpResponse sendClientBasePost(String url, String request, MediaType mediaType) throws BaseException {
+    private MockEntry sendClientBasePost(String url, String request, MediaType mediaType) throws BaseException {
         return sendClientBaseCall(new HttpPost(url), request, mediaType);
     }
-    private HttpResponse sendClientBasePut(String url, String request, MediaType mediaType) throws BaseException {
+    private MockEntry sendClientBasePut(String url, String request, MediaType mediaType) throws BaseException {
         return sendClientBaseCall(new HttpPut(url), request, mediaType);
     }
 
 
-    private HttpResponse sendClientBaseCall(HttpRequestBase httpRequest, String request, MediaType mediaType) throws BaseException {
+    private MockEntry sendClientBaseCall(HttpRequestBase httpRequest, String request, MediaType mediaType) throws BaseException {
+        HttpEntity entity = null;
+        if (httpRequest instanceof HttpEntityEnclosingRequestBase && request != null) {
+            entity = createEntity(request, mediaType);
+        }
+        if (upstreamHedging.isHedged(httpRequest.getMethod())) {
+            return sendHedged(httpRequest);
+        }
+        return send(httpRequest, entity);
+    }
+
+    private MockEntry send(HttpRequestBase httpRequest, HttpEntity entity) throws BaseException {
+        String upstream = httpRequest.getURI().getHost();
+        CircuitBreaker.Permit circuit = upstreamCircuitBreakers.acquire(upstream);
+        AdaptiveLimit slot = acquireSlot(upstream, circuit, true);
+        UpstreamTiming timing = new UpstreamTiming(httpRequest);
+        int status = 0;
+        try {
+            HttpResponse response = execute(httpRequest, entity, timing);
+            status = response.getStatusLine().getStatusCode();
+            return handleResponse(response, timing);
+        } finally {
+            release(slot, circuit, timing.getElapsedNanos(), status == 0 || isOverloaded(status));
+        }
+    }
+
+    /**
+     * Sends an idempotent call on a hedge thread. If it is not answered within the hedge delay of the upstream, a
+     * second call is sent, the first successful response is returned and the other call is aborted.
+     */
+    private MockEntry sendHedged(HttpRequestBase httpRequest) throws BaseException {
+        String method = httpRequest.getMethod();
+        String url = httpRequest.getURI().toString();
+        long delayNanos = upstreamHedging.nextDelayNanos(httpRequest.getURI().getHost());
+        CompletableFuture<MockEntry> primary = sendBlocking(httpRequest, true);
+        if (primary == null) {
+            // all hedge threads are busy, the call is not hedged
+            return send(httpRequest, null);
+        }
+        if (delayNanos < 0) {
+            return await(primary);
+        }
+        try {
+            return primary.get(delayNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // slower than usual, the hedge call races the original one
+        } catch (ExecutionException e) {
+            throw toBaseException(e.getCause());
+        } catch (InterruptedException e) {
+            primary.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new TechnicalException(CoffeeFaultType.OPERATION_FAILED, "Redirect call interrupted: [" + method + " " + url + "]", e);
+        }
+        CompletableFuture<MockEntry> hedge = null;
+        if (upstreamHedging.tryHedge()) {
+            try {
+                // null if all hedge threads are busy
+                hedge = sendBlocking(createRequest(method, url), false);
+            } catch (UpstreamUnavailableException e) {
+                // the upstream is at its limit or its circuit is open, a hedge call would not help
+                hedge = null;
+            }
+        }
+        if (hedge == null) {
+            return await(primary);
+        }
+        try {
+            MockEntry response = await(firstSuccessful(primary, hedge));
+            if (hedge.isDone() && !hedge.isCompletedExceptionally() && hedge.join() == response) {
+                upstreamHedging.hedgeWon();
+            }
+            return response;
+        } finally {
+            primary.cancel(false);
+            hedge.cancel(false);
+        }
+    }
+
+    /**
+     * Runs the blocking call on a hedge thread, cancelling the returned future aborts the call
+     *
+     * @return future of the response, null if all hedge threads are busy
+     */
+    private CompletableFuture<MockEntry> sendBlocking(HttpRequestBase httpRequest, boolean wait) throws BaseException {
+        String upstream = httpRequest.getURI().getHost();
+        CircuitBreaker.Permit circuit = upstreamCircuitBreakers.acquire(upstream);
+        AdaptiveLimit slot = acquireSlot(upstream, circuit, wait);
+        CompletableFuture<MockEntry> result = new CompletableFuture<>();
+        if (!upstreamHedging.execute(() -> call(httpRequest, slot, circuit, result))) {
+            upstreamBulkheads.cancel(slot);
+            upstreamCircuitBreakers.cancel(circuit);
+            return null;
+        }
+        result.whenComplete((response, e) -> {
+            if (result.isCancelled()) {
+                httpRequest.abort();
+            }
+        });
+        return result;
+    }
+
+    private void call(HttpRequestBase httpRequest, AdaptiveLimit slot, CircuitBreaker.Permit circuit, CompletableFuture<MockEntry> result) {
+        UpstreamTiming timing = new UpstreamTiming(httpRequest);
+        int status = 0;
+        try {
+            HttpResponse response = execute(httpRequest, null, timing);
+            status = response.getStatusLine().getStatusCode();
+            result.complete(handleResponse(response, timing));
+        } catch (BaseException | RuntimeException e) {
+            result.completeExceptionally(e);
+        } finally {
+            if (httpRequest.isAborted()) {
+                // the loser of a hedged request says nothing about the upstream
+                upstreamBulkheads.cancel(slot);
+                upstreamCircuitBreakers.cancel(circuit);
+            } else {
+                release(slot, circuit, timing.getElapsedNanos(), status == 0 || isOverloaded(status));
+            }
+        }
+    }
+
+    private AdaptiveLimit acquireSlot(String upstream, CircuitBreaker.Permit circuit, boolean wait) throws UpstreamUnavailableException {
+        try {
+            return wait ? upstreamBulkheads.acquire(upstream) : upstreamBulkheads.tryAcquire(upstream);
+        } catch (UpstreamUnavailableException e) {
+            upstreamCircuitBreakers.cancel(circuit);
+            throw e;
+        }
+    }
+
+    private void release(AdaptiveLimit slot, CircuitBreaker.Permit circuit, long elapsedNanos, boolean failed) {
+        upstreamBulkheads.release(slot, elapsedNanos, failed);
+        upstreamCircuitBreakers.release(circuit, failed);
+    }
+
+    private static CompletableFuture<MockEntry> firstSuccessful(CompletableFuture<MockEntry> primary, CompletableFuture<MockEntry> hedge) {
+        CompletableFuture<MockEntry> first = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        BiConsumer<MockEntry, Throwable> handler = (response, error) -> {
+            if (error == null) {
+                first.complete(response);
+            } else if (failures.incrementAndGet() == 2) {
+                // both calls failed, the error of the later one is reported
+                first.completeExceptionally(error);
+            }
+        };
+        primary.whenComplete(handler);
+        hedge.whenComplete(handler);
+        return first;
+    }
+
+    private static MockEntry await(CompletableFuture<MockEntry> future) throws BaseException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw toBaseException(e.getCause());
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new TechnicalException(CoffeeFaultType.OPERATION_FAILED, "Redirect call interrupted", e);
+        }
+    }
+
+    private static BaseException toBaseException(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof BaseException) {
+            return (BaseException) cause;
+        }
+        return new TechnicalException(CoffeeFaultType.OPERATION_FAILED, "Redirect call failed: " + cause.getLocalizedMessage(), cause);
+    }
+
+    private HttpResponse execute(HttpRequestBase httpRequest, HttpEntity entity, UpstreamTiming timing) throws BaseException {
         CloseableHttpClient client = getCloseableHttpClient(httpRequest);
 
         try {
             beforeAll(httpRequest);
-            if (httpRequest instanceof HttpEntityEnclosingRequestBase) {
-                StringEntity stringEntity = new StringEntity(request, mediaType.getType());
-                ((HttpEntityEnclosingRequestBase) httpRequest).setEntity(stringEntity);
+            if (entity != null) {
+                ((HttpEntityEnclosingRequestBase) httpRequest).setEntity(entity);
             }
-            logRequest(httpRequest, org.apache.commons.lang3.StringUtils.abbreviate(request, 80));
-            return client.execute(httpRequest);
+            HttpContext context = new BasicHttpContext();
+            context.setAttribute(UpstreamTiming.ATTRIBUTE, timing);
+            HttpResponse response = client.execute(httpRequest, context);
+            metricsRegistry.recordUpstreamConnect(timing.getUpstream(), timing.getConnectNanos());
+            metricsRegistry.recordUpstreamFirstByte(timing.getUpstream(), timing.getFirstByteNanos());
+            return response;
         } catch (ClientProtocolException e) {
+            recordUpstream(timing, 0, null);
             throw new TechnicalException(CoffeeFaultType.OPERATION_FAILED, "HTTP protocol exception: " + e.getLocalizedMessage(), e);
         } catch (IOException e) {
+            if (!httpRequest.isAborted()) {
+                recordUpstream(timing, 0, null);
+            }
             throw new TechnicalException(CoffeeFaultType.OPERATION_FAILED, "IOException in call: " + e.getLocalizedMessage(), e);
         }
     }
 
+    private static HttpRequestBase createRequest(String method, String url) throws BaseException {
+        switch (method) {
+            case HttpMethod.DELETE:
+                return new HttpDelete(url);
+            case HttpMethod.GET:
+                return new HttpGet(url);
+            case HttpMethod.HEAD:
+                return new HttpHead(url);
+            case HttpMethod.OPTIONS:
+                return new HttpOptions(url);
+            case HttpMethod.PATCH:
+                return new HttpPatch(url);
+            case HttpMethod.POST:
+                return new HttpPost(url);
+            case HttpMethod.PUT:
+                return new HttpPut(url);
+            default:
+                throw new TechnicalException(CoffeeFaultType.OPERATION_FAILED, "Unsupported redirect method: " + method);
+        }
+    }
+
     private CloseableHttpClient getCloseableHttpClient(HttpRequestBase httpRequestBase) throws BaseException {
         RequestConfig config = createRequestConfig().build();
-        CloseableHttpClient client = createHttpClientBuilder(config).build();
+        CloseableHttpClient client = httpClientPool.getClient(config.toString(), () -> createHttpClientBuilder(config));
         handleSSL(client, httpRequestBase.getURI());
         return client;
     }
 
-    private String handleResponse(HttpResponse response) throws BaseException {
+    private static HttpEntity createEntity(String request, MediaType mediaType) {
+        return new StringEntity(request, ContentType.create(mediaType.getType() + "/" + mediaType.getSubtype(), StandardCharsets.UTF_8));
+    }
+
+    private static ContentType parseContentType(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
         try {
-            byte[] byteEntity = EntityUtils.toByteArray(response.getEntity());
-            // loggoljuk a response-t
-            logResponse(response, byteEntity);
-            String entity = new String(byteEntity, StandardCharsets.UTF_8);
-            int responseCode = response.getStatusLine().getStatusCode();
-            if (responseCode == HttpStatus.SC_OK) {
-                return entity;
-            } else {
-                if (responseCode == HTTP_STATUS_I_AM_A_TEAPOT) {
-                    throw new BONotFoundException(entity);
-                } else if (responseCode == Response.Status.UNAUTHORIZED.getStatusCode()) {
-                    throw new AccessDeniedException(entity);
-                } else if (responseCode == Response.Status.INTERNAL_SERVER_ERROR.getStatusCode()) {
-                    throw new BaseException(entity);
-                }
-                throw new TechnicalException(CoffeeFaultType.OPERATION_FAILED,
-                        "HTTP error code[" + response.getStatusLine().getStatusCode() + "], content [" + entity + "]");
-            }
+            return ContentType.parse(contentType);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private MockEntry handleResponse(HttpResponse response, UpstreamTiming timing) throws BaseException {
+        byte[] byteEntity = null;
+        try {
+            HttpEntity httpEntity = response.getEntity();
+            byteEntity = httpEntity != null ? EntityUtils.toByteArray(httpEntity) : new byte[0];
+            return toMockEntry(response, byteEntity);
+        } catch (IOException e) {
+            throw new TechnicalException(CoffeeFaultType.OPERATION_FAILED, "IOException in call: " + e.getLocalizedMessage(), e);
+        } finally {
+            // returns the connection to the pool
+            HttpClientUtils.closeQuietly(response);
+            recordUpstream(timing, response.getStatusLine().getStatusCode(), byteEntity);
+        }
+    }
+
+    private static byte[] readAsyncResponse(HttpResponse response) throws BaseException {
+        try {
+            // the non-blocking client has already buffered the entity, reading it does not block
+            HttpEntity httpEntity = response.getEntity();
+            return httpEntity != null ? EntityUtils.toByteArray(httpEntity) : new byte[0];
         } catch (IOException e) {
             throw new TechnicalException(CoffeeFaultType.OPERATION_FAILED, "IOException in call: " + e.getLocalizedMessage(), e);
         }
     }
+
+    /**
+     * Records the metrics and the access log line of a finished upstream call, the access log replaces the synchronous
+     * request and response logging
+     */
+    private void recordUpstream(UpstreamTiming timing, int status, byte[] body) {
+        long elapsedNanos = timing.getElapsedNanos();
+        metricsRegistry.recordUpstream(timing.getUpstream(), status, elapsedNanos);
+        if (status == HttpStatus.SC_OK) {
+            upstreamHedging.record(timing.getUpstream(), elapsedNanos);
+        }
+        HttpRequestBase request = timing.getRequest();
+        accessLog.logUpstream(request.getMethod(), request.getURI(), timing.getUpstream(), status, elapsedNanos, body);
+    }
+
+    private static MockEntry toMockEntry(HttpResponse response, byte[] byteEntity) throws BaseException {
+        int responseCode = response.getStatusLine().getStatusCode();
+        if (responseCode == HttpStatus.SC_OK) {
+            HttpEntity httpEntity = response.getEntity();
+            Header contentType = httpEntity != null ? httpEntity.getContentType() : null;
+            Freshness freshness = Freshness.of(headerValue(response, HttpHeaders.CACHE_CONTROL), headerValue(response, HttpHeaders.EXPIRES),
+                    headerValue(response, HttpHeaders.DATE));
+            return MockEntry.of(byteEntity, contentType != null ? contentType.getValue() : null).withFreshness(freshness);
+        } else {
+            String entity = new String(byteEntity, StandardCharsets.UTF_8);
+            // an upstream error is answered to the client, it is not worth a stack trace
+            if (responseCode == HTTP_STATUS_I_AM_A_TEAPOT) {
+                throw new UpstreamStatusException(responseCode, UpstreamStatusException.NOT_FOUND_FAULT_TYPE, entity);
+            } else if (responseCode == Response.Status.UNAUTHORIZED.getStatusCode()) {
+                throw new UpstreamStatusException(responseCode, UpstreamStatusException.ACCESS_DENIED_FAULT_TYPE, entity);
+            } else if (responseCode == Response.Status.INTERNAL_SERVER_ERROR.getStatusCode()) {
+                throw new UpstreamStatusException(responseCode, UpstreamStatusException.FAILED_FAULT_TYPE, entity);
+            }
+            throw new UpstreamStatusException(responseCode, "HTTP error code[" + responseCode + "], content [" + entity + "]");
+        }
+    }
+
+    private static boolean isOverloaded(int status) {
+        return status >= HttpStatus.SC_INTERNAL_SERVER_ERROR;
+    }
+
+    private static String headerValue(HttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header != null ? header.getValue() : null;
+    }
 }
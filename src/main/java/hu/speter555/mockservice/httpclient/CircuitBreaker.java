@@ -0,0 +1,182 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.httpclient;
+
+import javax.enterprise.inject.Vetoed;
+
+/**
+ * Circuit breaker of an upstream. The circuit opens after the configured number of consecutive failed calls, and the
+ * calls are rejected while it is open. After the open time one trial call is let through (half-open state), its success
+ * closes the circuit, its failure opens it again. The closed state is checked without locking.
+ * <p>
+ * Every state change starts a new generation, and the permits carry the generation they were given in. The outcome of a
+ * call permitted before the last state change is ignored, so a slow call from the closed state can not close or reopen
+ * the circuit while its trial call is in flight.
+ *
+ * @author speter555
+ */
+@Vetoed
+final class CircuitBreaker {
+
+    private enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * Permission of a call, report its outcome with {@link CircuitBreaker#release(Permit, boolean)} or
+     * {@link CircuitBreaker#cancel(Permit)}
+     */
+    static final class Permit {
+
+        private final CircuitBreaker circuit;
+
+        private final long generation;
+
+        private Permit(CircuitBreaker circuit, long generation) {
+            this.circuit = circuit;
+            this.generation = generation;
+        }
+
+        CircuitBreaker getCircuit() {
+            return circuit;
+        }
+    }
+
+    private final int failureThreshold;
+
+    private final long openNanos;
+
+    private volatile State state = State.CLOSED;
+
+    private volatile int failures;
+
+    // shared by the calls of a closed generation, the closed state does not allocate
+    private volatile Permit closedPermit;
+
+    private long generation;
+
+    private long openedAt;
+
+    private boolean trialInFlight;
+
+    CircuitBreaker(int failureThreshold, long openNanos) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = openNanos;
+        this.closedPermit = new Permit(this, generation);
+    }
+
+    /**
+     * Asks permission for a call
+     *
+     * @return permit of the call, null if the circuit is open or its trial call is in flight
+     */
+    Permit tryAcquire() {
+        Permit permit = closedPermit;
+        if (state == State.CLOSED) {
+            // a permit read before a concurrent state change belongs to an old generation, its outcome is ignored
+            return permit;
+        }
+        synchronized (this) {
+            switch (state) {
+                case CLOSED:
+                    return closedPermit;
+                case OPEN:
+                    if (System.nanoTime() - openedAt < openNanos) {
+                        return null;
+                    }
+                    state = State.HALF_OPEN;
+                    return trial();
+                default:
+                    if (trialInFlight) {
+                        return null;
+                    }
+                    return trial();
+            }
+        }
+    }
+
+    /**
+     * Records the outcome of a permitted call
+     *
+     * @param permit permit returned by {@link #tryAcquire()}
+     * @param failed true if the upstream did not answer, or answered with 5xx
+     */
+    void release(Permit permit, boolean failed) {
+        if (!failed && state == State.CLOSED && failures == 0) {
+            return;
+        }
+        synchronized (this) {
+            if (permit.generation != generation) {
+                return;
+            }
+            if (state == State.HALF_OPEN) {
+                trialInFlight = false;
+                if (failed) {
+                    open();
+                } else {
+                    close();
+                }
+            } else if (!failed) {
+                failures = 0;
+            } else if (++failures >= failureThreshold) {
+                open();
+            }
+        }
+    }
+
+    /**
+     * Returns the permission of a call without outcome, e.g. a cancelled call. If it was the trial call, a trial call can
+     * be made again.
+     *
+     * @param permit permit returned by {@link #tryAcquire()}
+     */
+    synchronized void cancel(Permit permit) {
+        if (state == State.HALF_OPEN && permit.generation == generation) {
+            trialInFlight = false;
+        }
+    }
+
+    /**
+     * @return whether the calls are rejected, false in half-open state
+     */
+    boolean isOpen() {
+        return state == State.OPEN;
+    }
+
+    private Permit trial() {
+        generation++;
+        trialInFlight = true;
+        return new Permit(this, generation);
+    }
+
+    private void open() {
+        generation++;
+        failures = 0;
+        openedAt = System.nanoTime();
+        state = State.OPEN;
+    }
+
+    private void close() {
+        generation++;
+        failures = 0;
+        closedPermit = new Permit(this, generation);
+        state = State.CLOSED;
+    }
+}
@@ -0,0 +1,244 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.httpclient;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import hu.speter555.mockservice.config.ConfigKey;
+import hu.speter555.mockservice.exception.UpstreamUnavailableException;
+import hu.speter555.mockservice.util.NamedThreadFactory;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.IdleConnectionEvictor;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.pool.PoolStats;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Shared HTTP clients of the redirect calls. All clients use one pooling connection manager, so the connections (and
+ * TLS sessions) of an upstream are reused between the calls. Idle connections are evicted in the background. The
+ * asynchronous redirect calls share one non-blocking client with a limited number of in-flight requests.
+ *
+ * @author speter555
+ */
+@ApplicationScoped
+public class HttpClientPool {
+
+    private static final Logger LOG = Logger.getLogger(HttpClientPool.class.getName());
+
+    private static final int VALIDATE_AFTER_INACTIVITY_MILLIS = 2000;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.REDIRECT_POOL_MAX_TOTAL, defaultValue = "200")
+    private int maxTotal;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.REDIRECT_POOL_MAX_PER_ROUTE, defaultValue = "50")
+    private int maxPerRoute;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.REDIRECT_POOL_KEEP_ALIVE_MILLIS, defaultValue = "30000")
+    private long keepAliveMillis;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.REDIRECT_POOL_IDLE_TIMEOUT_MILLIS, defaultValue = "30000")
+    private long idleTimeoutMillis;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.REDIRECT_ASYNC_MAX_IN_FLIGHT, defaultValue = "1000")
+    private int maxInFlight;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.REDIRECT_ASYNC_IO_THREADS, defaultValue = "0")
+    private int ioThreads;
+
+    private final Map<String, CloseableHttpClient> clients = new ConcurrentHashMap<>();
+
+    private Semaphore inFlight;
+
+    private volatile CloseableHttpAsyncClient asyncClient;
+
+    private PoolingHttpClientConnectionManager connectionManager;
+
+    private IdleConnectionEvictor idleConnectionEvictor;
+
+    /**
+     * Creates the connection pool and starts the idle connection eviction
+     */
+    @PostConstruct
+    public void init() {
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MILLIS);
+        idleConnectionEvictor = new IdleConnectionEvictor(connectionManager, idleTimeoutMillis, TimeUnit.MILLISECONDS);
+        idleConnectionEvictor.start();
+        inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Returns the shared client of the upstream configuration, builds it on first use
+     *
+     * @param configurationKey key of the upstream configuration, the same key returns the same client
+     * @param builder creates the client builder of the configuration
+     * @return shared client, it must not be closed by the caller
+     */
+    public CloseableHttpClient getClient(String configurationKey, Supplier<HttpClientBuilder> builder) {
+        return clients.computeIfAbsent(configurationKey, key -> builder.get()
+                .setConnectionManager(connectionManager)
+                .setConnectionManagerShared(true)
+                .setKeepAliveStrategy(keepAliveStrategy())
+                .setRequestExecutor(new TimingRequestExecutor())
+                .build());
+    }
+
+    /**
+     * Executes the request on the shared non-blocking client, the client is started on first use. The request is
+     * rejected without execution if the number of in-flight requests reached the limit.
+     *
+     * @param request upstream request
+     * @param callback receives the buffered response or the failure on an I/O thread, it must not block
+     * @return future of the response, cancelling it aborts the request
+     * @throws UpstreamUnavailableException if the in-flight limit is reached
+     */
+    public Future<HttpResponse> executeAsync(HttpUriRequest request, FutureCallback<HttpResponse> callback) throws UpstreamUnavailableException {
+        if (!inFlight.tryAcquire()) {
+            throw UpstreamUnavailableException.rejected("Too many in-flight redirect calls, limit: [" + maxInFlight + "]");
+        }
+        try {
+            return getAsyncClient().execute(request, new FutureCallback<HttpResponse>() {
+
+                @Override
+                public void completed(HttpResponse response) {
+                    inFlight.release();
+                    callback.completed(response);
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    inFlight.release();
+                    callback.failed(e);
+                }
+
+                @Override
+                public void cancelled() {
+                    inFlight.release();
+                    callback.cancelled();
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of in-flight asynchronous requests
+     *
+     * @return in-flight request count
+     */
+    public int getInFlightCount() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    /**
+     * Returns the connection pool statistics
+     *
+     * @return leased, pending, available and maximum connection counts
+     */
+    public PoolStats getStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    /**
+     * Closes the clients and the connections
+     */
+    @PreDestroy
+    public void close() {
+        for (CloseableHttpClient client : clients.values()) {
+            try {
+                client.close();
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Unable to close HTTP client", e);
+            }
+        }
+        clients.clear();
+        if (asyncClient != null) {
+            try {
+                asyncClient.close();
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Unable to close asynchronous HTTP client", e);
+            }
+        }
+        idleConnectionEvictor.shutdown();
+        connectionManager.shutdown();
+    }
+
+    private CloseableHttpAsyncClient getAsyncClient() {
+        CloseableHttpAsyncClient client = asyncClient;
+        if (client == null) {
+            synchronized (this) {
+                client = asyncClient;
+                if (client == null) {
+                    int threads = ioThreads > 0 ? ioThreads : Runtime.getRuntime().availableProcessors();
+                    client = HttpAsyncClients.custom()
+                            .setMaxConnTotal(maxTotal)
+                            .setMaxConnPerRoute(maxPerRoute)
+                            .setKeepAliveStrategy(keepAliveStrategy())
+                            .setDefaultIOReactorConfig(IOReactorConfig.custom().setIoThreadCount(threads).setTcpNoDelay(true).build())
+                            .setThreadFactory(new NamedThreadFactory("redirect-io"))
+                            .build();
+                    client.start();
+                    asyncClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    private ConnectionKeepAliveStrategy keepAliveStrategy() {
+        return (response, context) -> {
+            long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            // the upstream did not limit the keep-alive
+            return duration > 0 ? duration : keepAliveMillis;
+        };
+    }
+}
@@ -0,0 +1,204 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.httpclient;
+
+import java.text.MessageFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import hu.speter555.mockservice.cache.Freshness;
+import hu.speter555.mockservice.cache.MockCache;
+import hu.speter555.mockservice.cache.MockEntry;
+import hu.speter555.mockservice.config.ConfigKey;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Cache of the redirect responses in cache-first proxy mode. A fresh response is served without calling the upstream.
+ * An expired response within its stale-while-revalidate window is still served, while a single background call
+ * refreshes it, so the upstream latency is not on the path of the client. The lifetimes come from the
+ * {@code Cache-Control} and {@code Expires} headers of the upstream, or from the configuration.
+ *
+ * @author speter555
+ */
+@ApplicationScoped
+public class ProxyCache {
+
+    private static final Logger LOG = Logger.getLogger(ProxyCache.class.getName());
+
+    private static final int ENTRY_OVERHEAD = 48;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.PROXY_CACHE_ENABLED, defaultValue = "false")
+    private boolean enabled;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.PROXY_CACHE_TTL_MILLIS, defaultValue = "60000")
+    private long ttlMillis;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.PROXY_CACHE_STALE_MILLIS, defaultValue = "0")
+    private long staleMillis;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.PROXY_CACHE_MAX_ENTRIES, defaultValue = "10000")
+    private long maxEntries;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.PROXY_CACHE_MAX_BYTES, defaultValue = "67108864")
+    private long maxBytes;
+
+    private MockCache<String, CachedResponse> cache;
+
+    private final LongAdder freshHitCount = new LongAdder();
+
+    private final LongAdder staleHitCount = new LongAdder();
+
+    private final LongAdder refreshCount = new LongAdder();
+
+    /**
+     * Creates the cache by the configured limits
+     */
+    @PostConstruct
+    public void init() {
+        cache = new MockCache<>(maxEntries, maxBytes, cached -> ENTRY_OVERHEAD + cached.entry.getHeapSize());
+    }
+
+    /**
+     * @return true if the redirect responses are served from the cache while they are fresh
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the cached response of the call. An expired response within its stale window is returned as well, and it
+     * is refreshed in the background, unless it is already being refreshed.
+     *
+     * @param key call key, see {@link RedirectCoalescer#key(String, String, java.util.Map, String)}
+     * @param refresh starts the asynchronous call of the refresh, it is called on the calling thread
+     * @return fresh or stale response, null if the call is not cached or its stale window has passed
+     */
+    public MockEntry get(String key, Supplier<CompletableFuture<MockEntry>> refresh) {
+        CachedResponse cached = cache.getIfPresent(key);
+        if (cached == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        if (now - cached.freshUntil < 0) {
+            freshHitCount.increment();
+            return cached.entry;
+        }
+        if (now - cached.staleUntil >= 0) {
+            return null;
+        }
+        staleHitCount.increment();
+        if (cached.refreshing.compareAndSet(false, true)) {
+            refreshCount.increment();
+            refresh.get().whenComplete((entry, error) -> {
+                if (error == null) {
+                    put(key, entry);
+                } else {
+                    // the stale response is served until its stale window passes, the next request retries
+                    cached.refreshing.set(false);
+                    LOG.fine(() -> MessageFormat.format("Refresh of [{0}] failed: [{1}]", key, error.getLocalizedMessage()));
+                }
+            });
+        }
+        return cached.entry;
+    }
+
+    /**
+     * Caches the upstream response by its freshness. Responses not storable by a shared cache, and responses which
+     * would be neither fresh nor stale are not cached. A response which must be revalidated (no-cache, must-revalidate)
+     * is never served stale.
+     *
+     * @param key call key, see {@link RedirectCoalescer#key(String, String, java.util.Map, String)}
+     * @param entry upstream response
+     */
+    public void put(String key, MockEntry entry) {
+        Freshness freshness = entry.getFreshness();
+        long maxAge = freshness.getMaxAgeMillis() != Freshness.UNSPECIFIED ? freshness.getMaxAgeMillis() : ttlMillis;
+        long stale = freshness.getStaleWhileRevalidateMillis() != Freshness.UNSPECIFIED ? freshness.getStaleWhileRevalidateMillis()
+                : staleMillis;
+        if (freshness.isMustRevalidate()) {
+            stale = 0;
+        }
+        if (!freshness.isStorable() || maxAge + stale <= 0) {
+            cache.invalidate(key);
+            return;
+        }
+        long now = System.nanoTime();
+        long freshUntil = now + TimeUnit.MILLISECONDS.toNanos(maxAge);
+        cache.put(key, new CachedResponse(entry, freshUntil, freshUntil + TimeUnit.MILLISECONDS.toNanos(stale)));
+    }
+
+    /**
+     * @return number of requests served by a fresh cached response
+     */
+    public long getFreshHitCount() {
+        return freshHitCount.sum();
+    }
+
+    /**
+     * @return number of requests served by a stale cached response
+     */
+    public long getStaleHitCount() {
+        return staleHitCount.sum();
+    }
+
+    /**
+     * @return number of started background refreshes
+     */
+    public long getRefreshCount() {
+        return refreshCount.sum();
+    }
+
+    /**
+     * @return number of cached responses
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    private static final class CachedResponse {
+
+        private final MockEntry entry;
+
+        private final long freshUntil;
+
+        private final long staleUntil;
+
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private CachedResponse(MockEntry entry, long freshUntil, long staleUntil) {
+            this.entry = entry;
+            this.freshUntil = freshUntil;
+            this.staleUntil = staleUntil;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.httpclient;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.ws.rs.HttpMethod;
+
+import hu.icellmobilsoft.coffee.dto.exception.BaseException;
+import hu.speter555.mockservice.cache.MockCache;
+import hu.speter555.mockservice.cache.MockEntry;
+import hu.speter555.mockservice.cache.SingleFlight;
+import hu.speter555.mockservice.util.DigestUtil;
+
+/**
+ * Coalesces the identical concurrent redirect calls, so a burst of the same call reaches the upstream once. Calls are
+ * identical if their method, url, forwarded headers and request body are the same. Only the safe methods (GET, HEAD,
+ * OPTIONS) are coalesced, two identical creates or deletes are two upstream calls.
+ *
+ * @author speter555
+ */
+@ApplicationScoped
+public class RedirectCoalescer {
+
+    private final SingleFlight<String, MockEntry> calls = new SingleFlight<>();
+
+    /**
+     * Creates the key of the redirect call
+     *
+     * @param method http method
+     * @param url called url
+     * @param headers forwarded headers
+     * @param request request body, null if no body
+     * @return call key
+     */
+    public static String key(String method, String url, Map<String, String> headers, String request) {
+        String content = new TreeMap<>(headers).toString() + '\n' + (request != null ? request : "");
+        return method + ' ' + url + ' ' + DigestUtil.sha256Hex(content);
+    }
+
+    /**
+     * Executes the call, or waits for the in-flight call with the same key if the method is safe
+     *
+     * @param method http method
+     * @param key call key, see {@link #key(String, String, Map, String)}
+     * @param call executed call
+     * @return upstream response
+     * @throws BaseException failure of the call
+     */
+    public MockEntry execute(String method, String key, MockCache.Loader<String, MockEntry> call) throws BaseException {
+        return isCoalesced(method) ? calls.execute(key, call) : call.load(key);
+    }
+
+    /**
+     * Starts the asynchronous call, or joins the in-flight call with the same key if the method is safe
+     *
+     * @param method http method
+     * @param key call key, see {@link #key(String, String, Map, String)}
+     * @param call starts the call
+     * @return future of the upstream response, cancelling it does not cancel the shared call
+     */
+    public CompletableFuture<MockEntry> executeAsync(String method, String key, Supplier<CompletableFuture<MockEntry>> call) {
+        return isCoalesced(method) ? calls.executeAsync(key, k -> call.get()) : call.get();
+    }
+
+    private static boolean isCoalesced(String method) {
+        return HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method) || HttpMethod.OPTIONS.equals(method);
+    }
+
+    /**
+     * @return number of calls which shared the upstream response of another call
+     */
+    public long getCoalescedCount() {
+        return calls.getSharedCount();
+    }
+}
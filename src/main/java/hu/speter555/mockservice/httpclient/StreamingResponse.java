@@ -0,0 +1,125 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.httpclient;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.function.Consumer;
+
+import javax.enterprise.inject.Vetoed;
+import javax.ws.rs.core.StreamingOutput;
+
+import hu.speter555.mockservice.cache.MockEntry;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.utils.HttpClientUtils;
+
+/**
+ * Upstream response passed through to the client in chunks. The body is copied into a size-capped buffer as well, and
+ * recorded when it fits into the cap, so the heap usage does not depend on the payload size.
+ *
+ * @author speter555
+ */
+@Vetoed
+public class StreamingResponse implements StreamingOutput {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private final HttpResponse response;
+
+    private final HttpEntity entity;
+
+    private final int recordMaxBytes;
+
+    private final Consumer<MockEntry> recorder;
+
+    /**
+     * Creates the pass-through response
+     *
+     * @param response upstream response, it is closed after the body is written
+     * @param recordMaxBytes maximum body size to record
+     * @param recorder receives the recorded body when the whole body has been written and fits into the cap
+     */
+    public StreamingResponse(HttpResponse response, int recordMaxBytes, Consumer<MockEntry> recorder) {
+        this.response = response;
+        this.entity = response.getEntity();
+        this.recordMaxBytes = recordMaxBytes;
+        this.recorder = recorder;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        if (entity == null) {
+            HttpClientUtils.closeQuietly(response);
+            recorder.accept(MockEntry.of(new byte[0], null));
+            return;
+        }
+        long contentLength = entity.getContentLength();
+        ByteArrayOutputStream tee = contentLength <= recordMaxBytes
+                ? new ByteArrayOutputStream(contentLength >= 0 ? (int) contentLength : CHUNK_SIZE)
+                : null;
+        try (InputStream input = entity.getContent()) {
+            byte[] chunk = new byte[CHUNK_SIZE];
+            int read;
+            while ((read = input.read(chunk)) != -1) {
+                output.write(chunk, 0, read);
+                if (tee != null) {
+                    if (tee.size() + read > recordMaxBytes) {
+                        // too large to record, stop copying
+                        tee = null;
+                    } else {
+                        tee.write(chunk, 0, read);
+                    }
+                }
+            }
+            output.flush();
+        } finally {
+            HttpClientUtils.closeQuietly(response);
+        }
+        if (tee != null) {
+            recorder.accept(MockEntry.of(tee.toByteArray(), getMediaType()));
+        }
+    }
+
+    /**
+     * Releases the upstream response without writing the body
+     */
+    public void close() {
+        HttpClientUtils.closeQuietly(response);
+    }
+
+    /**
+     * @return media type of the upstream body, null if unknown
+     */
+    public String getMediaType() {
+        Header contentType = entity != null ? entity.getContentType() : null;
+        return contentType != null ? contentType.getValue() : null;
+    }
+
+    /**
+     * @return length of the upstream body, negative if unknown (chunked)
+     */
+    public long getContentLength() {
+        return entity != null ? entity.getContentLength() : 0;
+    }
+}
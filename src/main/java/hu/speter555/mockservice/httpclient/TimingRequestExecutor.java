@@ -0,0 +1,62 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.httpclient;
+
+import java.io.IOException;
+
+import javax.enterprise.inject.Vetoed;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+
+/**
+ * Request executor of the shared blocking clients, marks the {@link UpstreamTiming} of the call. The executor is called
+ * with an open connection, so its start is the end of the pool lease and the connect, and the return of the response
+ * head reading is the first response byte.
+ *
+ * @author speter555
+ */
+@Vetoed
+class TimingRequestExecutor extends HttpRequestExecutor {
+
+    @Override
+    public HttpResponse execute(HttpRequest request, HttpClientConnection conn, HttpContext context) throws IOException, HttpException {
+        Object timing = context.getAttribute(UpstreamTiming.ATTRIBUTE);
+        if (timing instanceof UpstreamTiming) {
+            ((UpstreamTiming) timing).connected();
+        }
+        return super.execute(request, conn, context);
+    }
+
+    @Override
+    protected HttpResponse doReceiveResponse(HttpRequest request, HttpClientConnection conn, HttpContext context)
+            throws HttpException, IOException {
+        HttpResponse response = super.doReceiveResponse(request, conn, context);
+        Object timing = context.getAttribute(UpstreamTiming.ATTRIBUTE);
+        if (timing instanceof UpstreamTiming) {
+            ((UpstreamTiming) timing).firstByte();
+        }
+        return response;
+    }
+}
@@ -0,0 +1,210 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.httpclient;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import hu.speter555.mockservice.config.ConfigKey;
+import hu.speter555.mockservice.exception.UpstreamUnavailableException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Isolated bulkheads of the upstream hosts. Every upstream has its own adaptive concurrency limit and bounded wait
+ * queue, the calls above them are rejected with 503 at once, so a slow upstream holds only its own share of the request
+ * threads. The calls of all upstreams are also limited by a fixed total below the request threads, so the mock files are
+ * still served while every upstream is slow.
+ *
+ * @author speter555
+ */
+@ApplicationScoped
+public class UpstreamBulkheads {
+
+    /**
+     * Shared bulkhead of the upstreams above the limit of distinct upstreams
+     */
+    public static final String OTHER = "other";
+
+    private static final int MAX_UPSTREAMS = 1000;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.REDIRECT_BULKHEAD_ENABLED, defaultValue = "false")
+    private boolean enabled;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.REDIRECT_BULKHEAD_TOTAL_LIMIT, defaultValue = "64")
+    private int totalLimit;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.REDIRECT_BULKHEAD_INITIAL_LIMIT, defaultValue = "20")
+    private int initialLimit;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.REDIRECT_BULKHEAD_MAX_LIMIT, defaultValue = "200")
+    private int maxLimit;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.REDIRECT_BULKHEAD_QUEUE_SIZE, defaultValue = "20")
+    private int queueSize;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.REDIRECT_BULKHEAD_MAX_WAIT_MILLIS, defaultValue = "100")
+    private long maxWaitMillis;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.REDIRECT_BULKHEAD_LATENCY_THRESHOLD_MILLIS, defaultValue = "1000")
+    private long latencyThresholdMillis;
+
+    private final Map<String, AdaptiveLimit> limits = new ConcurrentHashMap<>();
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    private Semaphore total;
+
+    /**
+     * Creates the total limit of the upstreams
+     */
+    @PostConstruct
+    public void init() {
+        total = new Semaphore(Math.max(1, totalLimit));
+    }
+
+    /**
+     * Takes a slot of the upstream, waits for a free slot at most the configured time
+     *
+     * @param upstream upstream host
+     * @return taken slot, release it with {@link #release(AdaptiveLimit, long, boolean)}, null if the bulkheads are
+     *         disabled
+     * @throws UpstreamUnavailableException if the upstream is at its limit and its queue is full or the wait timed out
+     */
+    AdaptiveLimit acquire(String upstream) throws UpstreamUnavailableException {
+        return acquire(upstream, TimeUnit.MILLISECONDS.toNanos(maxWaitMillis));
+    }
+
+    /**
+     * Takes a slot of the upstream without waiting, for the calls which must not block
+     *
+     * @param upstream upstream host
+     * @return taken slot, release it with {@link #release(AdaptiveLimit, long, boolean)}, null if the bulkheads are
+     *         disabled
+     * @throws UpstreamUnavailableException if the upstream is at its limit
+     */
+    AdaptiveLimit tryAcquire(String upstream) throws UpstreamUnavailableException {
+        return acquire(upstream, 0);
+    }
+
+    /**
+     * Releases the slot and adapts the limit of the upstream by the outcome of the call
+     *
+     * @param limit slot taken by {@link #acquire(String)} or {@link #tryAcquire(String)}, null is ignored
+     * @param elapsedNanos duration of the call
+     * @param failed true if the upstream did not answer, or answered with 5xx
+     */
+    void release(AdaptiveLimit limit, long elapsedNanos, boolean failed) {
+        if (limit != null) {
+            limit.release(elapsedNanos, failed);
+            total.release();
+        }
+    }
+
+    /**
+     * Releases the slot of a call which has not been executed or has been cancelled, the limit is not adapted
+     *
+     * @param limit slot taken by {@link #acquire(String)} or {@link #tryAcquire(String)}, null is ignored
+     */
+    void cancel(AdaptiveLimit limit) {
+        if (limit != null) {
+            limit.cancel();
+            total.release();
+        }
+    }
+
+    /**
+     * @return snapshot of the current concurrency limits by upstream
+     */
+    public Map<String, Integer> getLimits() {
+        Map<String, Integer> snapshot = new TreeMap<>();
+        limits.forEach((upstream, limit) -> snapshot.put(upstream, limit.getLimit()));
+        return snapshot;
+    }
+
+    /**
+     * @return snapshot of the in-flight calls by upstream
+     */
+    public Map<String, Integer> getInFlight() {
+        Map<String, Integer> snapshot = new TreeMap<>();
+        limits.forEach((upstream, limit) -> snapshot.put(upstream, limit.getInFlight()));
+        return snapshot;
+    }
+
+    /**
+     * @return number of redirect calls rejected by the bulkheads
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    private AdaptiveLimit acquire(String upstream, long maxWaitNanos) throws UpstreamUnavailableException {
+        if (!enabled) {
+            return null;
+        }
+        AdaptiveLimit limit = limitOf(upstream);
+        boolean acquired;
+        try {
+            acquired = limit.acquire(maxWaitNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejectedCount.increment();
+            throw UpstreamUnavailableException.rejected(
+                    "Upstream [" + upstream + "] is at its concurrency limit: [" + limit.getLimit() + "]");
+        }
+        // the waiting is bounded by the upstream queue, the total limit only rejects
+        if (!total.tryAcquire()) {
+            limit.cancel();
+            rejectedCount.increment();
+            throw UpstreamUnavailableException.rejected("Redirect calls are at their total concurrency limit: [" + totalLimit + "]");
+        }
+        return limit;
+    }
+
+    private AdaptiveLimit limitOf(String upstream) {
+        String key = upstream != null ? upstream : OTHER;
+        AdaptiveLimit limit = limits.get(key);
+        if (limit == null) {
+            if (limits.size() >= MAX_UPSTREAMS) {
+                key = OTHER;
+            }
+            limit = limits.computeIfAbsent(key, k -> new AdaptiveLimit(initialLimit, maxLimit, queueSize,
+                    TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis)));
+        }
+        return limit;
+    }
+}
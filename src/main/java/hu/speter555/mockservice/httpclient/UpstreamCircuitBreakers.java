@@ -0,0 +1,138 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.httpclient;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import hu.speter555.mockservice.config.ConfigKey;
+import hu.speter555.mockservice.exception.UpstreamUnavailableException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Circuit breakers of the upstream hosts. A failing upstream is not called while its circuit is open, the calls are
+ * rejected at once with {@link UpstreamUnavailableException#isCircuitOpen()}, so the caller can fall back to the last
+ * recorded response.
+ *
+ * @author speter555
+ */
+@ApplicationScoped
+public class UpstreamCircuitBreakers {
+
+    /**
+     * Shared circuit of the upstreams above the limit of distinct upstreams
+     */
+    public static final String OTHER = "other";
+
+    private static final int MAX_UPSTREAMS = 1000;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.REDIRECT_CIRCUIT_ENABLED, defaultValue = "false")
+    private boolean enabled;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.REDIRECT_CIRCUIT_FAILURE_THRESHOLD, defaultValue = "5")
+    private int failureThreshold;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.REDIRECT_CIRCUIT_OPEN_MILLIS, defaultValue = "10000")
+    private long openMillis;
+
+    private final Map<String, CircuitBreaker> circuits = new ConcurrentHashMap<>();
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    /**
+     * Asks permission for a call of the upstream
+     *
+     * @param upstream upstream host
+     * @return permit of the call, report the outcome with {@link #release(CircuitBreaker.Permit, boolean)}, null if the
+     *         circuit breakers are disabled
+     * @throws UpstreamUnavailableException if the circuit of the upstream is open
+     */
+    CircuitBreaker.Permit acquire(String upstream) throws UpstreamUnavailableException {
+        if (!enabled) {
+            return null;
+        }
+        CircuitBreaker.Permit permit = circuitOf(upstream).tryAcquire();
+        if (permit == null) {
+            rejectedCount.increment();
+            throw UpstreamUnavailableException.circuitOpen("Circuit of upstream [" + upstream + "] is open");
+        }
+        return permit;
+    }
+
+    /**
+     * Records the outcome of the call
+     *
+     * @param permit permit returned by {@link #acquire(String)}, null is ignored
+     * @param failed true if the upstream did not answer, or answered with 5xx
+     */
+    void release(CircuitBreaker.Permit permit, boolean failed) {
+        if (permit != null) {
+            permit.getCircuit().release(permit, failed);
+        }
+    }
+
+    /**
+     * Returns the permission of a call which has not been executed or has been cancelled
+     *
+     * @param permit permit returned by {@link #acquire(String)}, null is ignored
+     */
+    void cancel(CircuitBreaker.Permit permit) {
+        if (permit != null) {
+            permit.getCircuit().cancel(permit);
+        }
+    }
+
+    /**
+     * @return snapshot of the circuit states by upstream, true if open
+     */
+    public Map<String, Boolean> getOpen() {
+        Map<String, Boolean> snapshot = new TreeMap<>();
+        circuits.forEach((upstream, circuit) -> snapshot.put(upstream, circuit.isOpen()));
+        return snapshot;
+    }
+
+    /**
+     * @return number of redirect calls rejected by open circuits
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    private CircuitBreaker circuitOf(String upstream) {
+        String key = upstream != null ? upstream : OTHER;
+        CircuitBreaker circuit = circuits.get(key);
+        if (circuit == null) {
+            if (circuits.size() >= MAX_UPSTREAMS) {
+                key = OTHER;
+            }
+            circuit = circuits.computeIfAbsent(key, k -> new CircuitBreaker(failureThreshold, TimeUnit.MILLISECONDS.toNanos(openMillis)));
+        }
+        return circuit;
+    }
+}
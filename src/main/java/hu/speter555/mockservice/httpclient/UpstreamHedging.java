@@ -0,0 +1,261 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.httpclient;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.ws.rs.HttpMethod;
+
+import hu.speter555.mockservice.config.ConfigKey;
+import hu.speter555.mockservice.metrics.Histogram;
+import hu.speter555.mockservice.util.NamedThreadFactory;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Hedging policy of the idempotent redirect calls. A call not answered within the configured latency quantile of its
+ * upstream (p95 by default) is sent again, and the first response is taken. The quantile is measured on the successful
+ * calls of the last window of every upstream. The hedge calls are limited by a token budget, every hedgeable call earns
+ * the configured ratio of a token, so a slow upstream receives at most that ratio of extra calls.<br>
+ * The calls of a hedged request run on the hedge threads with the blocking pooled client, so they have the same SSL
+ * setup and connection timing as the other blocking redirect calls. The hedge threads are bounded, a request finding
+ * them all busy is not hedged.
+ *
+ * @author speter555
+ */
+@ApplicationScoped
+public class UpstreamHedging {
+
+    private static final int MAX_UPSTREAMS = 1000;
+
+    private static final int WINDOW_SIZE = 1000;
+
+    private static final int MIN_SAMPLES = 20;
+
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private static final long TOKEN = 1000;
+
+    private static final long MAX_TOKENS = 10 * TOKEN;
+
+    private static final long THREAD_KEEP_ALIVE_SECONDS = 60;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.REDIRECT_HEDGE_ENABLED, defaultValue = "false")
+    private boolean enabled;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.REDIRECT_HEDGE_QUANTILE, defaultValue = "0.95")
+    private double quantile;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.REDIRECT_HEDGE_MIN_DELAY_MILLIS, defaultValue = "10")
+    private long minDelayMillis;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.REDIRECT_HEDGE_MAX_RATIO, defaultValue = "0.1")
+    private double maxRatio;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.REDIRECT_HEDGE_MAX_THREADS, defaultValue = "64")
+    private int maxThreads;
+
+    private final Map<String, LatencyWindow> windows = new ConcurrentHashMap<>();
+
+    private final AtomicLong tokens = new AtomicLong(MAX_TOKENS);
+
+    private final LongAdder hedgedCount = new LongAdder();
+
+    private final LongAdder hedgeWinCount = new LongAdder();
+
+    private ExecutorService executor;
+
+    /**
+     * Starts the hedge threads, if hedging is enabled
+     */
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            // no queue, a call above the thread limit is rejected at once instead of waiting for a thread
+            executor = new ThreadPoolExecutor(0, Math.max(1, maxThreads), THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new SynchronousQueue<>(), new NamedThreadFactory("redirect-hedge"));
+        }
+    }
+
+    /**
+     * Stops the hedge threads
+     */
+    @PreDestroy
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs a call of a hedged request on a hedge thread
+     *
+     * @param call blocking upstream call
+     * @return false if all hedge threads are busy or they are stopped, the call is not started
+     */
+    boolean execute(Runnable call) {
+        try {
+            executor.execute(call);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns whether the calls of the method are hedged, only the idempotent methods without request body are
+     *
+     * @param method http method
+     * @return true if hedging is enabled and the method is GET, HEAD or OPTIONS
+     */
+    boolean isHedged(String method) {
+        return enabled && (HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method) || HttpMethod.OPTIONS.equals(method));
+    }
+
+    /**
+     * Counts a hedgeable call into the hedge budget, and returns after how long it is hedged
+     *
+     * @param upstream upstream host
+     * @return hedge delay in nanoseconds, negative if the upstream has no latency baseline yet
+     */
+    long nextDelayNanos(String upstream) {
+        long earned = (long) (maxRatio * TOKEN);
+        tokens.accumulateAndGet(earned, (current, added) -> Math.min(MAX_TOKENS, current + added));
+        LatencyWindow window = windows.get(upstream);
+        long delayNanos = window != null ? window.getDelayNanos() : -1;
+        return delayNanos < 0 ? -1 : Math.max(delayNanos, TimeUnit.MILLISECONDS.toNanos(minDelayMillis));
+    }
+
+    /**
+     * Takes a token of the hedge budget
+     *
+     * @return true if the call may be hedged
+     */
+    boolean tryHedge() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current < TOKEN) {
+                return false;
+            }
+        } while (!tokens.compareAndSet(current, current - TOKEN));
+        hedgedCount.increment();
+        return true;
+    }
+
+    /**
+     * Counts a hedge call which answered before the original call
+     */
+    void hedgeWon() {
+        hedgeWinCount.increment();
+    }
+
+    /**
+     * Records the duration of a successful call into the latency window of its upstream
+     *
+     * @param upstream upstream host
+     * @param nanos duration of the call in nanoseconds
+     */
+    void record(String upstream, long nanos) {
+        if (!enabled || upstream == null) {
+            return;
+        }
+        LatencyWindow window = windows.get(upstream);
+        if (window == null) {
+            // the window count is limited, the upstreams above it are not hedged
+            if (windows.size() >= MAX_UPSTREAMS) {
+                return;
+            }
+            window = windows.computeIfAbsent(upstream, k -> new LatencyWindow(quantile));
+        }
+        window.record(nanos);
+    }
+
+    /**
+     * @return number of hedge calls sent
+     */
+    public long getHedgedCount() {
+        return hedgedCount.sum();
+    }
+
+    /**
+     * @return number of hedge calls which answered before the original call
+     */
+    public long getHedgeWinCount() {
+        return hedgeWinCount.sum();
+    }
+
+    /**
+     * Latency histogram of the current window, and the quantile of the previous one. A window is closed after
+     * {@value #WINDOW_SIZE} calls, or after 10 seconds if it has at least {@value #MIN_SAMPLES} calls.
+     */
+    private static final class LatencyWindow {
+
+        private final double quantile;
+
+        private volatile Histogram current = new Histogram();
+
+        private volatile long started = System.nanoTime();
+
+        private volatile long delayNanos = -1;
+
+        private LatencyWindow(double quantile) {
+            this.quantile = quantile;
+        }
+
+        private void record(long nanos) {
+            Histogram histogram = current;
+            histogram.record(nanos);
+            long count = histogram.getCount();
+            if (count >= WINDOW_SIZE || (count >= MIN_SAMPLES && System.nanoTime() - started >= WINDOW_NANOS)) {
+                close(histogram);
+            }
+        }
+
+        private synchronized void close(Histogram histogram) {
+            if (current != histogram) {
+                return;
+            }
+            current = new Histogram();
+            started = System.nanoTime();
+            delayNanos = histogram.getValueAtQuantile(quantile);
+        }
+
+        private long getDelayNanos() {
+            return delayNanos;
+        }
+    }
+}
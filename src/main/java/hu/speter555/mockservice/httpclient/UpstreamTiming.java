@@ -0,0 +1,91 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.httpclient;
+
+import javax.enterprise.inject.Vetoed;
+
+import org.apache.http.client.methods.HttpRequestBase;
+
+/**
+ * Timestamps of one upstream call. It travels in the HTTP context of the call, so the request executor of the shared
+ * client can mark the protocol phases of the call.
+ *
+ * @author speter555
+ */
+@Vetoed
+final class UpstreamTiming {
+
+    /**
+     * HTTP context attribute of the timing
+     */
+    static final String ATTRIBUTE = UpstreamTiming.class.getName();
+
+    private final HttpRequestBase request;
+
+    private final String upstream;
+
+    private final long start = System.nanoTime();
+
+    private long connected;
+
+    private long firstByte;
+
+    UpstreamTiming(HttpRequestBase request) {
+        this.request = request;
+        this.upstream = request.getURI().getHost();
+    }
+
+    /**
+     * Marks that the connection is leased (and connected if it was new), the request is about to be sent
+     */
+    void connected() {
+        // a retried call keeps its first connection time
+        if (connected == 0) {
+            connected = System.nanoTime();
+        }
+    }
+
+    /**
+     * Marks that the response head is received
+     */
+    void firstByte() {
+        firstByte = System.nanoTime();
+    }
+
+    HttpRequestBase getRequest() {
+        return request;
+    }
+
+    String getUpstream() {
+        return upstream;
+    }
+
+    long getConnectNanos() {
+        return connected == 0 ? -1 : connected - start;
+    }
+
+    long getFirstByteNanos() {
+        return firstByte == 0 ? -1 : firstByte - start;
+    }
+
+    long getElapsedNanos() {
+        return System.nanoTime() - start;
+    }
+}
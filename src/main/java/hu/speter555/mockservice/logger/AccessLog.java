@@ -0,0 +1,381 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.logger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.MessageFormat;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import hu.speter555.mockservice.cache.MockEntry;
+import hu.speter555.mockservice.config.ConfigKey;
+import hu.speter555.mockservice.util.JsonFields;
+import hu.speter555.mockservice.util.NamedThreadFactory;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Structured access log of the mock requests and the upstream calls. The request thread only decides the sampling and
+ * stores the references of the request into a preallocated slot of a lock-free ring, a background writer formats the
+ * JSON lines and writes them to the access log file, or to the {@value #LOGGER_NAME} logger. The lines not sampled cost
+ * no formatting at all, and a full ring drops the line instead of blocking the request.
+ *
+ * @author speter555
+ */
+@ApplicationScoped
+public class AccessLog {
+
+    /**
+     * Logger of the access log lines, if no access log file is configured
+     */
+    public static final String LOGGER_NAME = "hu.speter555.mockservice.access";
+
+    private static final Logger LOG = Logger.getLogger(AccessLog.class.getName());
+
+    private static final Logger ACCESS = Logger.getLogger(LOGGER_NAME);
+
+    private static final long DRAIN_INTERVAL_MILLIS = 10;
+
+    private static final long CLOSE_TIMEOUT_SECONDS = 5;
+
+    private static final int MAX_CACHED_ROUTES = 10000;
+
+    private static final int HTTP_STATUS_BAD_REQUEST = 400;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.ACCESS_LOG_ENABLED, defaultValue = "false")
+    private boolean enabled;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.ACCESS_LOG_SAMPLE_RATE, defaultValue = "1.0")
+    private double sampleRate;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.ACCESS_LOG_LEVELS)
+    private Optional<String> levels;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.ACCESS_LOG_BODY_MAX_BYTES, defaultValue = "256")
+    private int bodyMaxBytes;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.ACCESS_LOG_BUFFER_SIZE, defaultValue = "8192")
+    private int bufferSize;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.ACCESS_LOG_FILE)
+    private Optional<String> file;
+
+    private final Map<String, AccessLogLevel> routeLevels = new ConcurrentHashMap<>();
+
+    private final List<Map.Entry<String, AccessLogLevel>> prefixLevels = new ArrayList<>();
+
+    private AccessLogLevel defaultLevel = AccessLogLevel.SAMPLED;
+
+    private AccessLogRing ring;
+
+    private ScheduledExecutorService writer;
+
+    // written only by the writer thread
+    private BufferedWriter output;
+
+    private final StringBuilder line = new StringBuilder(512);
+
+    /**
+     * Parses the route levels and starts the writer
+     */
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        parseLevels(levels.orElse(""));
+        ring = new AccessLogRing(bufferSize);
+        if (file.isPresent() && !file.get().isBlank()) {
+            try {
+                output = Files.newBufferedWriter(Path.of(file.get()), StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                LOG.log(Level.SEVERE, "Unable to open access log file [" + file.get() + "], logging to [" + LOGGER_NAME + "]", e);
+            }
+        }
+        writer = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("access-log-writer"));
+        writer.scheduleWithFixedDelay(this::drain, DRAIN_INTERVAL_MILLIS, DRAIN_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return whether the access log is written
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns whether the response is logged, by the level of its route and the sampling. The sampling is decided before
+     * anything of the line is collected.
+     *
+     * @param route mock file path or upstream host
+     * @param status response status
+     * @return true if the line should be logged
+     */
+    public boolean isSampled(String route, int status) {
+        if (!enabled) {
+            return false;
+        }
+        switch (getLevel(route)) {
+            case ALL:
+                return true;
+            case SAMPLED:
+                return status >= HTTP_STATUS_BAD_REQUEST || sampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+            case ERROR:
+                return status >= HTTP_STATUS_BAD_REQUEST;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Logs a served mock request, if it is sampled
+     *
+     * @param method http method
+     * @param path request path
+     * @param query query string, null if none
+     * @param route served mock file
+     * @param status response status
+     * @param durationNanos serve time in nanoseconds
+     * @param body response entity, only {@link MockEntry}, byte array and String bodies are logged
+     */
+    public void logRequest(String method, String path, String query, String route, int status, long durationNanos, Object body) {
+        if (isSampled(route, status)) {
+            publish(false, method, path, query, route, status, durationNanos, body);
+        }
+    }
+
+    /**
+     * Logs an upstream call, if it is sampled
+     *
+     * @param method http method
+     * @param url called url
+     * @param upstream upstream host, the route of the level
+     * @param status upstream response status, 0 if the call failed without response
+     * @param durationNanos call time in nanoseconds
+     * @param body upstream response body, null if none
+     */
+    public void logUpstream(String method, URI url, String upstream, int status, long durationNanos, byte[] body) {
+        if (isSampled(upstream, status)) {
+            publish(true, method, url.toString(), null, upstream, status, durationNanos, body);
+        }
+    }
+
+    /**
+     * @return number of lines dropped because the writer could not keep up
+     */
+    public long getDroppedCount() {
+        return ring != null ? ring.getDroppedCount() : 0;
+    }
+
+    /**
+     * Writes the pending lines and stops the writer
+     */
+    @PreDestroy
+    public void close() {
+        if (writer == null) {
+            return;
+        }
+        writer.shutdown();
+        try {
+            // the ring has one consumer, the remaining lines are drained only after the writer stopped
+            if (writer.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                drain();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (output != null) {
+            try {
+                output.close();
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Unable to close access log file", e);
+            }
+        }
+    }
+
+    private void publish(boolean upstream, String method, String path, String query, String route, int status, long durationNanos,
+            Object body) {
+        AccessLogRecord record = ring.claim();
+        if (record == null) {
+            return;
+        }
+        record.epochMillis = System.currentTimeMillis();
+        record.upstream = upstream;
+        record.method = method;
+        record.path = path;
+        record.query = query;
+        record.route = route;
+        record.status = status;
+        record.durationNanos = durationNanos;
+        record.bodyBytes = -1;
+        if (bodyMaxBytes <= 0) {
+            record.body = null;
+        } else if (body instanceof byte[] && ((byte[]) body).length > bodyMaxBytes) {
+            // the ring slots must not keep whole upstream responses alive until the writer gets to them
+            byte[] bytes = (byte[]) body;
+            record.body = Arrays.copyOf(bytes, bodyMaxBytes);
+            record.bodyBytes = bytes.length;
+        } else {
+            record.body = body;
+        }
+        ring.publish(record);
+    }
+
+    private AccessLogLevel getLevel(String route) {
+        if (prefixLevels.isEmpty() || route == null) {
+            return defaultLevel;
+        }
+        AccessLogLevel level = routeLevels.get(route);
+        if (level == null) {
+            level = defaultLevel;
+            for (Map.Entry<String, AccessLogLevel> prefixLevel : prefixLevels) {
+                if (route.startsWith(prefixLevel.getKey())) {
+                    level = prefixLevel.getValue();
+                    break;
+                }
+            }
+            if (routeLevels.size() < MAX_CACHED_ROUTES) {
+                routeLevels.put(route, level);
+            }
+        }
+        return level;
+    }
+
+    private void parseLevels(String value) {
+        for (String item : value.split(",")) {
+            if (item.isBlank()) {
+                continue;
+            }
+            int separator = item.lastIndexOf('=');
+            try {
+                if (separator < 0) {
+                    defaultLevel = AccessLogLevel.valueOf(item.trim());
+                } else {
+                    String prefix = item.substring(0, separator).trim();
+                    AccessLogLevel level = AccessLogLevel.valueOf(item.substring(separator + 1).trim());
+                    if (prefix.isEmpty() || "*".equals(prefix)) {
+                        defaultLevel = level;
+                    } else {
+                        prefixLevels.add(Map.entry(prefix, level));
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                LOG.warning(() -> MessageFormat.format("Invalid access log level [{0}], it is ignored", item));
+            }
+        }
+        // the longest prefix wins
+        prefixLevels.sort(Comparator.comparingInt((Map.Entry<String, AccessLogLevel> entry) -> entry.getKey().length()).reversed());
+    }
+
+    private void drain() {
+        try {
+            int drained = ring.drain(this::write);
+            if (drained > 0 && output != null) {
+                output.flush();
+            }
+        } catch (IOException | RuntimeException e) {
+            // the writer must survive, a failed line is lost
+            LOG.log(Level.WARNING, "Unable to write access log", e);
+        }
+    }
+
+    private void write(AccessLogRecord record) {
+        line.setLength(0);
+        line.append("{\"time\":\"").append(Instant.ofEpochMilli(record.epochMillis)).append('"');
+        line.append(",\"type\":\"").append(record.upstream ? "upstream" : "request").append('"');
+        appendField("method", record.method);
+        appendField(record.upstream ? "url" : "path", record.path);
+        appendField("query", record.query);
+        appendField(record.upstream ? "upstream" : "route", record.route);
+        line.append(",\"status\":").append(record.status);
+        line.append(",\"durationMicros\":").append(TimeUnit.NANOSECONDS.toMicros(record.durationNanos));
+        appendBody(record.body, record.bodyBytes);
+        line.append('}');
+        if (output != null) {
+            try {
+                output.append(line).append('\n');
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to write access log file", e);
+            }
+        } else {
+            ACCESS.info(line.toString());
+        }
+    }
+
+    private void appendBody(Object body, int bodyBytes) {
+        byte[] bytes;
+        int length;
+        if (body instanceof MockEntry) {
+            ByteBuffer buffer = ((MockEntry) body).getBody();
+            length = buffer.remaining();
+            bytes = new byte[Math.min(length, bodyMaxBytes)];
+            buffer.get(bytes);
+        } else if (body instanceof byte[]) {
+            bytes = (byte[]) body;
+            length = bytes.length;
+        } else if (body instanceof String) {
+            bytes = ((String) body).getBytes(StandardCharsets.UTF_8);
+            length = bytes.length;
+        } else {
+            return;
+        }
+        // a multi-byte character cut by the limit is decoded as a replacement character
+        appendField("body", new String(bytes, 0, Math.min(bytes.length, bodyMaxBytes), StandardCharsets.UTF_8));
+        line.append(",\"bodyBytes\":").append(bodyBytes >= 0 ? bodyBytes : length);
+    }
+
+    private void appendField(String name, String value) {
+        if (value == null) {
+            return;
+        }
+        line.append(",\"").append(name).append("\":");
+        JsonFields.appendString(line, value);
+    }
+}
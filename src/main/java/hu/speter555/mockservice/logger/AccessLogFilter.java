@@ -0,0 +1,67 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.logger;
+
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.ext.Provider;
+
+import hu.speter555.mockservice.metrics.MetricsFilter;
+
+/**
+ * Passes the served mock requests to the {@link AccessLog}. Like the metrics, only the requests labeled by the mock
+ * endpoints are logged, and a suspended response is logged when it is resumed.
+ *
+ * @author speter555
+ */
+@Provider
+public class AccessLogFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    @Inject
+    private AccessLog accessLog;
+
+    @Context
+    private HttpServletRequest httpServletRequest;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        if (accessLog.isEnabled()) {
+            MetricsFilter.markStart(requestContext);
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        Object start = requestContext.getProperty(MetricsFilter.START_PROPERTY);
+        Object route = requestContext.getProperty(MetricsFilter.ROUTE_PROPERTY);
+        if (start instanceof Long && route instanceof String) {
+            // compressed bodies are not readable in the log
+            Object body = responseContext.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING) ? null : responseContext.getEntity();
+            accessLog.logRequest(requestContext.getMethod(), httpServletRequest.getRequestURI(), httpServletRequest.getQueryString(),
+                    (String) route, responseContext.getStatus(), System.nanoTime() - (Long) start, body);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.logger;
+
+/**
+ * Access log level of a route
+ *
+ * @author speter555
+ */
+public enum AccessLogLevel {
+
+    /**
+     * Nothing is logged
+     */
+    OFF,
+
+    /**
+     * Only the error responses (status 400 and above) are logged
+     */
+    ERROR,
+
+    /**
+     * The error responses are logged, the others are sampled by the configured rate
+     */
+    SAMPLED,
+
+    /**
+     * Every response is logged
+     */
+    ALL
+}
@@ -0,0 +1,68 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.logger;
+
+import javax.enterprise.inject.Vetoed;
+
+/**
+ * Preallocated slot of the access log ring. The request thread stores references only, the formatting is done by the
+ * writer thread.
+ *
+ * @author speter555
+ */
+@Vetoed
+final class AccessLogRecord {
+
+    long sequence;
+
+    long epochMillis;
+
+    boolean upstream;
+
+    String method;
+
+    String path;
+
+    String query;
+
+    String route;
+
+    int status;
+
+    long durationNanos;
+
+    /**
+     * Immutable body: {@link hu.speter555.mockservice.cache.MockEntry}, byte array or String, null if not logged
+     */
+    Object body;
+
+    /**
+     * Length of the original body if {@link #body} holds its truncated copy, -1 otherwise
+     */
+    int bodyBytes;
+
+    void clear() {
+        method = null;
+        path = null;
+        query = null;
+        route = null;
+        body = null;
+    }
+}
@@ -0,0 +1,125 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.logger;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import javax.enterprise.inject.Vetoed;
+
+/**
+ * Bounded lock-free ring of preallocated access log records, with many producers and one consumer. A producer claims a
+ * slot by a CAS on the tail, fills it, and publishes it by its sequence number. The consumer reads the published slots
+ * in order. When the ring is full the record is dropped instead of blocking the request.
+ *
+ * @author speter555
+ */
+@Vetoed
+final class AccessLogRing {
+
+    private final AccessLogRecord[] slots;
+
+    private final AtomicLongArray published;
+
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();
+
+    private final LongAdder droppedCount = new LongAdder();
+
+    // written only by the consumer
+    private volatile long head;
+
+    /**
+     * Creates the ring
+     *
+     * @param capacity minimum number of slots, rounded up to a power of two
+     */
+    AccessLogRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        slots = new AccessLogRecord[size];
+        published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new AccessLogRecord();
+            published.set(i, -1);
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Claims the next slot, it must be published
+     *
+     * @return empty record, null if the ring is full
+     */
+    AccessLogRecord claim() {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head >= slots.length) {
+                droppedCount.increment();
+                return null;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+        AccessLogRecord record = slots[(int) sequence & mask];
+        record.sequence = sequence;
+        return record;
+    }
+
+    /**
+     * Publishes a filled record to the consumer
+     *
+     * @param record claimed record
+     */
+    void publish(AccessLogRecord record) {
+        published.set((int) record.sequence & mask, record.sequence);
+    }
+
+    /**
+     * Passes the published records to the consumer in order and releases their slots. Only one thread may drain.
+     *
+     * @param consumer receives the records, it must not keep them
+     * @return number of drained records
+     */
+    int drain(Consumer<AccessLogRecord> consumer) {
+        long sequence = head;
+        int drained = 0;
+        while (published.get((int) sequence & mask) == sequence) {
+            AccessLogRecord record = slots[(int) sequence & mask];
+            try {
+                consumer.accept(record);
+            } finally {
+                record.clear();
+                sequence++;
+                head = sequence;
+                drained++;
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * @return number of records dropped because the ring was full
+     */
+    long getDroppedCount() {
+        return droppedCount.sum();
+    }
+}
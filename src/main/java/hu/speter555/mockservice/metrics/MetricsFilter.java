@@ -0,0 +1,79 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.metrics;
+
+import javax.inject.Inject;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Measures the serve time of the mock requests, from the request filter until the response filter. The response filter
+ * runs when a suspended response is resumed, so asynchronous and delayed responses are measured until their resume.
+ * Only the requests labeled by {@link #ROUTE_PROPERTY} are recorded.
+ *
+ * @author speter555
+ */
+@Provider
+public class MetricsFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    /**
+     * Request property of the route label, in a servlet container it is a request attribute as well
+     */
+    public static final String ROUTE_PROPERTY = "hu.speter555.mockservice.metrics.route";
+
+    /**
+     * Request property of the arrival time in {@link System#nanoTime()}, shared by the filters measuring the request
+     */
+    public static final String START_PROPERTY = "hu.speter555.mockservice.metrics.start";
+
+    @Inject
+    private MetricsRegistry metricsRegistry;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        if (metricsRegistry.isEnabled()) {
+            markStart(requestContext);
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        Object start = requestContext.getProperty(START_PROPERTY);
+        Object route = requestContext.getProperty(ROUTE_PROPERTY);
+        if (start instanceof Long && route instanceof String) {
+            metricsRegistry.recordRequest((String) route, responseContext.getStatus(), System.nanoTime() - (Long) start);
+        }
+    }
+
+    /**
+     * Sets the arrival time of the request, if it has not been set by another filter. The time is boxed once per
+     * request, not by every filter measuring it.
+     *
+     * @param requestContext request context
+     */
+    public static void markStart(ContainerRequestContext requestContext) {
+        if (requestContext.getProperty(START_PROPERTY) == null) {
+            requestContext.setProperty(START_PROPERTY, System.nanoTime());
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import hu.speter555.mockservice.config.ConfigKey;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Latency histograms of the mock service: served requests by route and status, mock file loads and upstream calls by
+ * upstream host, and the cache counters by route. The recording methods do not lock and do not allocate once the
+ * histogram or counter of the label exists. The number of distinct routes and upstreams is limited, the labels above
+ * the limit are merged into {@value #OTHER}.
+ *
+ * @author speter555
+ */
+@ApplicationScoped
+public class MetricsRegistry {
+
+    /**
+     * Route label of the requests without mock file
+     */
+    public static final String UNMATCHED = "unmatched";
+
+    /**
+     * Label of the routes and upstreams above the limit
+     */
+    public static final String OTHER = "other";
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.METRICS_ENABLED, defaultValue = "true")
+    private boolean enabled;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.METRICS_MAX_LABELS, defaultValue = "1000")
+    private int maxLabels;
+
+    private final ConcurrentMap<String, StatusHistograms> requests = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, StatusHistograms> upstreamCalls = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Histogram> upstreamConnects = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Histogram> upstreamFirstBytes = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, CacheCounters> cacheCounters = new ConcurrentHashMap<>();
+
+    private final Histogram fileLoads = new Histogram();
+
+    /**
+     * @return whether the metrics are recorded
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Records the serve time of a request
+     *
+     * @param route mock file of the request, {@link #UNMATCHED} if there is none
+     * @param status response status
+     * @param nanos duration from the request arrival to the response in nanoseconds
+     */
+    public void recordRequest(String route, int status, long nanos) {
+        if (enabled) {
+            get(requests, route, StatusHistograms::new).record(status, nanos);
+        }
+    }
+
+    /**
+     * Counts a mock file served from the cache or the preloaded index
+     *
+     * @param route mock file path
+     */
+    public void recordCacheHit(String route) {
+        if (enabled) {
+            get(cacheCounters, route, CacheCounters::new).hit();
+        }
+    }
+
+    /**
+     * Counts a mock file lookup missing from the cache
+     *
+     * @param route mock file path
+     */
+    public void recordCacheMiss(String route) {
+        if (enabled) {
+            get(cacheCounters, route, CacheCounters::new).miss();
+        }
+    }
+
+    /**
+     * Counts a mock file evicted from the cache by the cache limits
+     *
+     * @param route mock file path
+     */
+    public void recordCacheEviction(String route) {
+        if (enabled) {
+            get(cacheCounters, route, CacheCounters::new).evicted();
+        }
+    }
+
+    /**
+     * Records the load time of a mock file cache miss
+     *
+     * @param nanos duration of reading the file in nanoseconds
+     */
+    public void recordFileLoad(long nanos) {
+        if (enabled) {
+            fileLoads.record(nanos);
+        }
+    }
+
+    /**
+     * Records the total time of an upstream call
+     *
+     * @param upstream upstream host
+     * @param status upstream response status, 0 if the call failed without response
+     * @param nanos duration from the call start until the response body is read in nanoseconds
+     */
+    public void recordUpstream(String upstream, int status, long nanos) {
+        if (enabled) {
+            get(upstreamCalls, upstream, StatusHistograms::new).record(status, nanos);
+        }
+    }
+
+    /**
+     * Records the connection time of an upstream call, including the pool lease and the connect of a new connection
+     *
+     * @param upstream upstream host
+     * @param nanos duration from the call start until the request is sent in nanoseconds, negative if unknown
+     */
+    public void recordUpstreamConnect(String upstream, long nanos) {
+        if (enabled && nanos >= 0) {
+            get(upstreamConnects, upstream, Histogram::new).record(nanos);
+        }
+    }
+
+    /**
+     * Records the time to the first response byte of an upstream call
+     *
+     * @param upstream upstream host
+     * @param nanos duration from the call start until the response head is received in nanoseconds, negative if unknown
+     */
+    public void recordUpstreamFirstByte(String upstream, long nanos) {
+        if (enabled && nanos >= 0) {
+            get(upstreamFirstBytes, upstream, Histogram::new).record(nanos);
+        }
+    }
+
+    /**
+     * Writes the histograms
+     *
+     * @param writer Prometheus writer
+     */
+    public void writeTo(PrometheusWriter writer) {
+        writeByStatus(writer, "mockservice_request_duration_seconds", "Serve time of the mock requests", "route", requests);
+        writer.family("mockservice_file_load_duration_seconds", "summary", "Load time of the mock files missing from the cache");
+        writer.summary("mockservice_file_load_duration_seconds", null, fileLoads);
+        writeCounters(writer, "mockservice_route_cache_hits_total", "Mock file cache hits by route", CacheCounters::getHits);
+        writeCounters(writer, "mockservice_route_cache_misses_total", "Mock file cache misses by route", CacheCounters::getMisses);
+        writeCounters(writer, "mockservice_route_cache_evictions_total", "Mock files evicted by the cache limits by route",
+                CacheCounters::getEvictions);
+        writeByStatus(writer, "mockservice_upstream_duration_seconds", "Total time of the upstream calls", "upstream", upstreamCalls);
+        write(writer, "mockservice_upstream_connect_duration_seconds", "Connection lease and connect time of the upstream calls",
+                upstreamConnects);
+        write(writer, "mockservice_upstream_first_byte_duration_seconds", "Time to the first response byte of the upstream calls",
+                upstreamFirstBytes);
+    }
+
+    private <V> V get(ConcurrentMap<String, V> histograms, String label, Supplier<V> factory) {
+        String key = label != null ? label : UNMATCHED;
+        V histogram = histograms.get(key);
+        if (histogram != null) {
+            return histogram;
+        }
+        // the label count is limited, so unbounded paths or hosts do not exhaust the heap
+        if (histograms.size() >= maxLabels) {
+            key = OTHER;
+        }
+        return histograms.computeIfAbsent(key, k -> factory.get());
+    }
+
+    private static void writeByStatus(PrometheusWriter writer, String name, String help, String labelName,
+            Map<String, StatusHistograms> histograms) {
+        writer.family(name, "summary", help);
+        new TreeMap<>(histograms).forEach((label, byStatus) -> byStatus.forEach((histogram, status) -> writer.summary(name,
+                PrometheusWriter.label(labelName, label) + ","
+                        + PrometheusWriter.label("status", status == StatusHistograms.NO_STATUS ? "error" : String.valueOf(status)),
+                histogram)));
+    }
+
+    private void writeCounters(PrometheusWriter writer, String name, String help, ToLongFunction<CacheCounters> counter) {
+        writer.family(name, "counter", help);
+        new TreeMap<>(cacheCounters).forEach((route, counters) -> writer.sample(name, PrometheusWriter.label("route", route),
+                counter.applyAsLong(counters)));
+    }
+
+    private static void write(PrometheusWriter writer, String name, String help, Map<String, Histogram> histograms) {
+        writer.family(name, "summary", help);
+        new TreeMap<>(histograms).forEach((label, histogram) -> writer.summary(name, PrometheusWriter.label("upstream", label), histogram));
+    }
+}
@@ -0,0 +1,138 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.metrics;
+
+import javax.enterprise.inject.Vetoed;
+
+/**
+ * Writes metrics in the Prometheus text exposition format (version 0.0.4). The histograms are written as summaries
+ * with the usual latency quantiles, in seconds.
+ *
+ * @author speter555
+ */
+@Vetoed
+public final class PrometheusWriter {
+
+    /**
+     * Content type of the exposition format
+     */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final StringBuilder out = new StringBuilder(4096);
+
+    /**
+     * Writes the HELP and TYPE lines of a metric family, they must precede its samples
+     *
+     * @param name metric name
+     * @param type {@code counter}, {@code gauge} or {@code summary}
+     * @param help description of the metric
+     */
+    public void family(String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Writes a counter or gauge family with one unlabeled sample
+     *
+     * @param name metric name
+     * @param type {@code counter} or {@code gauge}
+     * @param help description of the metric
+     * @param value sample value
+     */
+    public void single(String name, String type, String help, double value) {
+        family(name, type, help);
+        sample(name, null, value);
+    }
+
+    /**
+     * Writes a sample
+     *
+     * @param name metric name
+     * @param labels label pairs like {@code route="a.json",status="200"}, null if no labels
+     * @param value sample value
+     */
+    public void sample(String name, String labels, double value) {
+        out.append(name);
+        if (labels != null && !labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    /**
+     * Writes the quantile, sum and count samples of a histogram
+     *
+     * @param name metric name
+     * @param labels label pairs, null if no labels
+     * @param histogram recorded nanosecond durations
+     */
+    public void summary(String name, String labels, Histogram histogram) {
+        String prefix = labels == null || labels.isEmpty() ? "" : labels + ",";
+        for (double quantile : QUANTILES) {
+            sample(name, prefix + "quantile=\"" + quantile + "\"", histogram.getValueAtQuantile(quantile) / NANOS_PER_SECOND);
+        }
+        sample(name + "_sum", labels, histogram.getSum() / NANOS_PER_SECOND);
+        sample(name + "_count", labels, histogram.getCount());
+    }
+
+    /**
+     * Formats a label pair, the value is escaped
+     *
+     * @param name label name
+     * @param value label value
+     * @return label pair like {@code name="value"}
+     */
+    public static String label(String name, String value) {
+        StringBuilder label = new StringBuilder(name.length() + value.length() + 3).append(name).append("=\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    label.append("\\\\");
+                    break;
+                case '"':
+                    label.append("\\\"");
+                    break;
+                case '\n':
+                    label.append("\\n");
+                    break;
+                default:
+                    label.append(c);
+            }
+        }
+        return label.append('"').toString();
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+}
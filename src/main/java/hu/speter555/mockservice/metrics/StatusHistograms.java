@@ -0,0 +1,63 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.metrics;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.ObjIntConsumer;
+
+import javax.enterprise.inject.Vetoed;
+
+/**
+ * Latency histograms of one route by HTTP status. The histogram of a status is created on its first recording, the
+ * later recordings are a plain array read.
+ *
+ * @author speter555
+ */
+@Vetoed
+final class StatusHistograms {
+
+    /**
+     * Status of the calls failed without response
+     */
+    static final int NO_STATUS = 0;
+
+    private static final int MAX_STATUS = 599;
+
+    private final AtomicReferenceArray<Histogram> histograms = new AtomicReferenceArray<>(MAX_STATUS + 1);
+
+    void record(int status, long nanos) {
+        int index = status > 0 && status <= MAX_STATUS ? status : NO_STATUS;
+        Histogram histogram = histograms.get(index);
+        if (histogram == null) {
+            histograms.compareAndSet(index, null, new Histogram());
+            histogram = histograms.get(index);
+        }
+        histogram.record(nanos);
+    }
+
+    void forEach(ObjIntConsumer<Histogram> action) {
+        for (int status = 0; status <= MAX_STATUS; status++) {
+            Histogram histogram = histograms.get(status);
+            if (histogram != null) {
+                action.accept(histogram, status);
+            }
+        }
+    }
+}
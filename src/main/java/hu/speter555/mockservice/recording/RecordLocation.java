@@ -0,0 +1,69 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.recording;
+
+import javax.enterprise.inject.Vetoed;
+
+/**
+ * Position of a record in a segment file, the entry of the in-memory index
+ *
+ * @author speter555
+ */
+@Vetoed
+final class RecordLocation {
+
+    private final long segmentId;
+
+    private final long bodyOffset;
+
+    private final int bodyLength;
+
+    private final int recordSize;
+
+    private final String mediaType;
+
+    RecordLocation(long segmentId, long bodyOffset, int bodyLength, int recordSize, String mediaType) {
+        this.segmentId = segmentId;
+        this.bodyOffset = bodyOffset;
+        this.bodyLength = bodyLength;
+        this.recordSize = recordSize;
+        this.mediaType = mediaType;
+    }
+
+    long getSegmentId() {
+        return segmentId;
+    }
+
+    long getBodyOffset() {
+        return bodyOffset;
+    }
+
+    int getBodyLength() {
+        return bodyLength;
+    }
+
+    int getRecordSize() {
+        return recordSize;
+    }
+
+    String getMediaType() {
+        return mediaType;
+    }
+}
@@ -0,0 +1,43 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.recording;
+
+/**
+ * Operating mode of the {@link RecordingStore}
+ *
+ * @author speter555
+ */
+public enum RecordingMode {
+
+    /**
+     * Redirect responses are not persisted and not replayed
+     */
+    OFF,
+
+    /**
+     * Redirect responses are appended to the recording store
+     */
+    RECORD,
+
+    /**
+     * Responses are served from the recording store, redirect calls are not executed
+     */
+    REPLAY
+}
@@ -0,0 +1,362 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.recording;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.Initialized;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+
+import hu.icellmobilsoft.coffee.dto.exception.BaseException;
+import hu.icellmobilsoft.coffee.dto.exception.TechnicalException;
+import hu.icellmobilsoft.coffee.dto.exception.enums.CoffeeFaultType;
+import hu.speter555.mockservice.cache.MockEntry;
+import hu.speter555.mockservice.config.ConfigKey;
+import hu.speter555.mockservice.util.NamedThreadFactory;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Durable store of the recorded redirect responses. The records are appended to segment files by a single writer
+ * thread, the key to record location index is kept in memory and rebuilt from the segments at startup. Replaced records
+ * are garbage, the live records of the old segments are re-appended and the old segments are deleted when the garbage
+ * ratio exceeds the configured limit.
+ * <p>
+ * The records are keyed by method, path, query and request body hash, see {@link #key(String, String, String, String)}.
+ *
+ * @author speter555
+ */
+@ApplicationScoped
+public class RecordingStore {
+
+    private static final Logger LOG = Logger.getLogger(RecordingStore.class.getName());
+
+    private static final int MAX_PENDING_RECORDS = 10000;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.RECORDING_MODE, defaultValue = "OFF")
+    private RecordingMode mode;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.RECORDING_DIRECTORY, defaultValue = "recordings")
+    private String directory;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.RECORDING_SEGMENT_MAX_BYTES, defaultValue = "67108864")
+    private long segmentMaxBytes;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.RECORDING_FSYNC_INTERVAL_MILLIS, defaultValue = "1000")
+    private long fsyncIntervalMillis;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.RECORDING_COMPACTION_RATIO, defaultValue = "0.5")
+    private double compactionRatio;
+
+    private final Map<String, RecordLocation> index = new ConcurrentHashMap<>();
+
+    private final NavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+    private final AtomicInteger pendingRecords = new AtomicInteger();
+
+    private final LongAdder droppedCount = new LongAdder();
+
+    private volatile boolean open;
+
+    private ScheduledExecutorService writer;
+
+    // written only by the writer thread
+    private Segment active;
+
+    private long totalBytes;
+
+    private long liveBytes;
+
+    private boolean compacting;
+
+    /**
+     * Opens the store and rebuilds the index on application startup, if recording or replay is enabled
+     *
+     * @param init application scope initialization event
+     */
+    public void onStartup(@Observes @Initialized(ApplicationScoped.class) Object init) {
+        if (mode == RecordingMode.OFF) {
+            return;
+        }
+        try {
+            open();
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "Unable to open recording store [" + directory + "], recording and replay are disabled", e);
+            close();
+        }
+    }
+
+    /**
+     * Creates the record key
+     *
+     * @param method http method
+     * @param path request path
+     * @param query query string, null if none
+     * @param bodyHash hash of the request body
+     * @return record key
+     */
+    public static String key(String method, String path, String query, String bodyHash) {
+        return method + ' ' + path + (query != null ? '?' + query : "") + ' ' + bodyHash;
+    }
+
+    /**
+     * @return true if the redirect responses are recorded
+     */
+    public boolean isRecording() {
+        return open && mode == RecordingMode.RECORD;
+    }
+
+    /**
+     * @return true if the responses are replayed from the store
+     */
+    public boolean isReplaying() {
+        return open && mode == RecordingMode.REPLAY;
+    }
+
+    /**
+     * Appends the response to the store asynchronously, a later record of the same key replaces it. If the writer is
+     * behind by too many records, the record is dropped.
+     *
+     * @param key record key, see {@link #key(String, String, String, String)}, null is ignored
+     * @param entry recorded response
+     */
+    public void record(String key, MockEntry entry) {
+        if (key == null || entry == null || !isRecording()) {
+            return;
+        }
+        if (pendingRecords.incrementAndGet() > MAX_PENDING_RECORDS) {
+            pendingRecords.decrementAndGet();
+            droppedCount.increment();
+            LOG.fine(() -> MessageFormat.format("Recording writer is behind, record dropped: [{0}]", key));
+            return;
+        }
+        writer.execute(() -> {
+            try {
+                append(key, entry);
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Unable to record [" + key + "]", e);
+            } finally {
+                pendingRecords.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Returns the recorded response
+     *
+     * @param key record key, see {@link #key(String, String, String, String)}
+     * @return recorded response or null if the key is not recorded
+     * @throws BaseException if the record is unreadable
+     */
+    public MockEntry get(String key) throws BaseException {
+        try {
+            return read(key);
+        } catch (IOException e) {
+            // the segment may have been compacted and closed since the index lookup
+            try {
+                return read(key);
+            } catch (IOException retry) {
+                throw new TechnicalException(CoffeeFaultType.OPERATION_FAILED, "Unable to read record [" + key + "]", retry);
+            }
+        }
+    }
+
+    /**
+     * @return number of recorded keys
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * @return number of records dropped because the writer was behind
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * Writes the pending records, flushes and closes the segments
+     */
+    @PreDestroy
+    public void close() {
+        open = false;
+        if (writer != null) {
+            writer.shutdown();
+            try {
+                writer.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (Segment segment : segments.values()) {
+            try {
+                segment.force();
+                segment.close();
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Unable to close recording segment [" + segment.getPath() + "]", e);
+            }
+        }
+        segments.clear();
+        index.clear();
+    }
+
+    private void open() throws IOException {
+        long start = System.nanoTime();
+        Path root = Path.of(directory).toAbsolutePath().normalize();
+        Files.createDirectories(root);
+        List<Long> ids = new ArrayList<>();
+        try (Stream<Path> files = Files.list(root)) {
+            files.map(file -> Segment.parseId(file.getFileName().toString())).filter(id -> id >= 0).sorted().forEach(ids::add);
+        }
+        for (Long id : ids) {
+            Segment segment = Segment.open(root, id);
+            segments.put(id, segment);
+            // only the last segment can end with a torn write
+            boolean last = id.equals(ids.get(ids.size() - 1));
+            long end = segment.scan(this::indexed, last);
+            if (end < segment.getSize()) {
+                LOG.warning(MessageFormat.format("Recording segment [{0}] has a torn record at [{1}], it is truncated", segment.getPath(),
+                        String.valueOf(end)));
+                segment.truncate(end);
+            }
+            totalBytes += segment.getSize();
+        }
+        active = segments.isEmpty() ? openSegment(root, 1) : segments.lastEntry().getValue();
+
+        writer = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("recording-writer"));
+        if (fsyncIntervalMillis > 0) {
+            writer.scheduleWithFixedDelay(this::force, fsyncIntervalMillis, fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        open = true;
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        LOG.info(MessageFormat.format("Recording store [{0}] opened in [{1}] mode in [{2}] ms: [{3}] records, [{4}] segments, [{5}] bytes",
+                root, mode, String.valueOf(duration), String.valueOf(index.size()), String.valueOf(segments.size()),
+                String.valueOf(totalBytes)));
+    }
+
+    private void indexed(String key, RecordLocation location) {
+        RecordLocation replaced = index.put(key, location);
+        liveBytes += location.getRecordSize();
+        if (replaced != null) {
+            liveBytes -= replaced.getRecordSize();
+        }
+    }
+
+    private MockEntry read(String key) throws IOException {
+        RecordLocation location = index.get(key);
+        if (location == null) {
+            return null;
+        }
+        Segment segment = segments.get(location.getSegmentId());
+        if (segment == null) {
+            throw new IOException("Segment [" + location.getSegmentId() + "] is already compacted");
+        }
+        return MockEntry.of(segment.read(location), location.getMediaType());
+    }
+
+    private void append(String key, MockEntry entry) throws IOException {
+        if (active.getSize() >= segmentMaxBytes) {
+            active = openSegment(active.getPath().getParent(), active.getId() + 1);
+        }
+        RecordLocation location = active.append(key, entry.getMediaType(), entry.getBody());
+        totalBytes += location.getRecordSize();
+        indexed(key, location);
+        if (fsyncIntervalMillis == 0) {
+            active.force();
+        }
+        if (!compacting && totalBytes > segmentMaxBytes && totalBytes - liveBytes > compactionRatio * totalBytes) {
+            compact();
+        }
+    }
+
+    private void compact() throws IOException {
+        long start = System.nanoTime();
+        long before = totalBytes;
+        List<Segment> sealed = new ArrayList<>(segments.headMap(active.getId()).values());
+        if (sealed.isEmpty()) {
+            return;
+        }
+        long lastSealedId = sealed.get(sealed.size() - 1).getId();
+        compacting = true;
+        try {
+            // the live records of the sealed segments are re-appended, the replaced ones are dropped with their segment
+            for (Map.Entry<String, RecordLocation> record : index.entrySet()) {
+                RecordLocation location = record.getValue();
+                if (location.getSegmentId() <= lastSealedId) {
+                    Segment segment = segments.get(location.getSegmentId());
+                    append(record.getKey(), MockEntry.of(segment.read(location), location.getMediaType()));
+                }
+            }
+            active.force();
+        } finally {
+            compacting = false;
+        }
+        for (Segment segment : sealed) {
+            segments.remove(segment.getId());
+            totalBytes -= segment.getSize();
+            segment.delete();
+        }
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        LOG.info(MessageFormat.format("Recording store compacted in [{0}] ms: [{1}] segments deleted, [{2}] bytes reclaimed",
+                String.valueOf(duration), String.valueOf(sealed.size()), String.valueOf(before - totalBytes)));
+    }
+
+    private Segment openSegment(Path root, long id) throws IOException {
+        if (active != null) {
+            active.force();
+        }
+        Segment segment = Segment.open(root, id);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private void force() {
+        try {
+            active.force();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Unable to flush recording segment [" + active.getPath() + "]", e);
+        }
+    }
+}
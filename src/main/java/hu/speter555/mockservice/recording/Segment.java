@@ -0,0 +1,269 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.recording;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32C;
+
+import javax.enterprise.inject.Vetoed;
+
+/**
+ * Append-only segment file of the {@link RecordingStore}. A record is a fixed header (magic, CRC32C, key, media type
+ * and body lengths) followed by the UTF-8 key, the UTF-8 media type and the body. The CRC covers everything after
+ * itself, so a torn write at the end of the file is detected on recovery.
+ * <p>
+ * Appends are not synchronized, they are done by the single writer of the store. Reads are positional, so they are
+ * safe concurrently with the appends.
+ *
+ * @author speter555
+ */
+@Vetoed
+final class Segment implements Closeable {
+
+    private static final String PREFIX = "segment-";
+
+    private static final String SUFFIX = ".rec";
+
+    private static final int MAGIC = 0x4d4b5231;
+
+    private static final int HEADER_SIZE = 20;
+
+    private static final int CRC_OFFSET = 4;
+
+    private static final int LENGTHS_OFFSET = 8;
+
+    private final long id;
+
+    private final Path path;
+
+    private final FileChannel channel;
+
+    private volatile long size;
+
+    private Segment(long id, Path path, FileChannel channel, long size) {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.size = size;
+    }
+
+    /**
+     * Opens or creates the segment file
+     *
+     * @param directory directory of the segment files
+     * @param id segment id, the order of the segments
+     * @return opened segment
+     * @throws IOException if the file cannot be opened
+     */
+    static Segment open(Path directory, long id) throws IOException {
+        Path path = directory.resolve(String.format("%s%016d%s", PREFIX, id, SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new Segment(id, path, channel, channel.size());
+    }
+
+    /**
+     * Parses the segment id from the file name
+     *
+     * @param fileName file name
+     * @return segment id or -1 if the file is not a segment file
+     */
+    static long parseId(String fileName) {
+        if (!fileName.startsWith(PREFIX) || !fileName.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(fileName.substring(PREFIX.length(), fileName.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Appends a record to the end of the segment
+     *
+     * @param key record key
+     * @param mediaType media type of the body
+     * @param body body, it is not modified
+     * @return location of the record
+     * @throws IOException if the write failed
+     */
+    RecordLocation append(String key, String mediaType, ByteBuffer body) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] mediaTypeBytes = mediaType.getBytes(StandardCharsets.UTF_8);
+        long recordSize = (long) HEADER_SIZE + keyBytes.length + mediaTypeBytes.length + body.remaining();
+        if (recordSize > Integer.MAX_VALUE) {
+            throw new IOException("Record is too large: [" + recordSize + "] bytes");
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(0).putInt(keyBytes.length).putInt(mediaTypeBytes.length).putInt(body.remaining()).flip();
+        CRC32C crc = new CRC32C();
+        crc.update(header.array(), LENGTHS_OFFSET, HEADER_SIZE - LENGTHS_OFFSET);
+        crc.update(keyBytes);
+        crc.update(mediaTypeBytes);
+        crc.update(body.duplicate());
+        header.putInt(CRC_OFFSET, (int) crc.getValue());
+
+        long start = size;
+        ByteBuffer[] buffers = { header, ByteBuffer.wrap(keyBytes), ByteBuffer.wrap(mediaTypeBytes), body.duplicate() };
+        channel.position(start);
+        long written = 0;
+        while (written < recordSize) {
+            written += channel.write(buffers);
+        }
+        size = start + recordSize;
+        return new RecordLocation(id, start + HEADER_SIZE + keyBytes.length + mediaTypeBytes.length, body.remaining(), (int) recordSize,
+                mediaType);
+    }
+
+    /**
+     * Reads the body of the record
+     *
+     * @param location location of the record in this segment
+     * @return body in a heap buffer
+     * @throws IOException if the read failed
+     */
+    ByteBuffer read(RecordLocation location) throws IOException {
+        ByteBuffer body = ByteBuffer.allocate(location.getBodyLength());
+        readFully(body, location.getBodyOffset());
+        body.flip();
+        return body;
+    }
+
+    /**
+     * Reads the record headers from the beginning of the segment. Only the headers, keys and media types are read, the
+     * bodies are skipped, unless verification is requested.
+     *
+     * @param consumer receives the key and location of the valid records in file order
+     * @param verify whether to verify the CRC of the records, needed for the segment which was written last
+     * @return end of the last valid record, the rest of the file is a torn write
+     * @throws IOException if the read failed
+     */
+    long scan(BiConsumer<String, RecordLocation> consumer, boolean verify) throws IOException {
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (position + HEADER_SIZE <= size) {
+            header.clear();
+            readFully(header, position);
+            int keyLength = header.getInt(LENGTHS_OFFSET);
+            int mediaTypeLength = header.getInt(LENGTHS_OFFSET + 4);
+            int bodyLength = header.getInt(LENGTHS_OFFSET + 8);
+            if (header.getInt(0) != MAGIC || keyLength < 0 || mediaTypeLength < 0 || bodyLength < 0) {
+                break;
+            }
+            long recordSize = (long) HEADER_SIZE + keyLength + mediaTypeLength + bodyLength;
+            if (position + recordSize > size) {
+                break;
+            }
+            ByteBuffer names = ByteBuffer.allocate(keyLength + mediaTypeLength);
+            readFully(names, position + HEADER_SIZE);
+            long bodyOffset = position + HEADER_SIZE + keyLength + mediaTypeLength;
+            if (verify) {
+                CRC32C crc = new CRC32C();
+                crc.update(header.array(), LENGTHS_OFFSET, HEADER_SIZE - LENGTHS_OFFSET);
+                crc.update(names.array());
+                ByteBuffer body = ByteBuffer.allocate(bodyLength);
+                readFully(body, bodyOffset);
+                body.flip();
+                crc.update(body);
+                if ((int) crc.getValue() != header.getInt(CRC_OFFSET)) {
+                    break;
+                }
+            }
+            String key = new String(names.array(), 0, keyLength, StandardCharsets.UTF_8);
+            String mediaType = new String(names.array(), keyLength, mediaTypeLength, StandardCharsets.UTF_8).intern();
+            consumer.accept(key, new RecordLocation(id, bodyOffset, bodyLength, (int) recordSize, mediaType));
+            position += recordSize;
+        }
+        return position;
+    }
+
+    /**
+     * Cuts the end of the segment, e.g. a torn write
+     *
+     * @param newSize new size of the segment
+     * @throws IOException if the truncate failed
+     */
+    void truncate(long newSize) throws IOException {
+        channel.truncate(newSize);
+        size = newSize;
+    }
+
+    /**
+     * Flushes the appended records to the storage device
+     *
+     * @throws IOException if the flush failed
+     */
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * @return segment id
+     */
+    long getId() {
+        return id;
+    }
+
+    /**
+     * @return size of the segment in bytes
+     */
+    long getSize() {
+        return size;
+    }
+
+    /**
+     * @return segment file
+     */
+    Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Closes and deletes the segment file
+     *
+     * @throws IOException if the delete failed
+     */
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of segment [" + path + "]");
+            }
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.resource;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.text.MessageFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.Initialized;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+
+import hu.icellmobilsoft.coffee.dto.exception.BaseException;
+import hu.speter555.mockservice.cache.MockEntry;
+import hu.speter555.mockservice.config.ConfigKey;
+import hu.speter555.mockservice.util.CacheFileHelper;
+import hu.speter555.mockservice.util.FileUtil;
+import hu.speter555.mockservice.util.NamedThreadFactory;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * External mock directory. The files of the directory override the classpath mock files with the same relative path,
+ * they are read through FileChannel (large files are memory-mapped if it is enabled). A WatchService invalidates the
+ * cached entries of the changed files, so fixtures can be edited without restart.
+ *
+ * @author speter555
+ */
+@ApplicationScoped
+public class MockDirectory {
+
+    private static final Logger LOG = Logger.getLogger(MockDirectory.class.getName());
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.MOCK_DIRECTORY)
+    private Optional<String> directory;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.MOCK_DIRECTORY_MAP_ENABLED, defaultValue = "false")
+    private boolean mapEnabled;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.MOCK_DIRECTORY_MAP_THRESHOLD, defaultValue = "65536")
+    private long mapThreshold;
+
+    @Inject
+    private CacheFileHelper cacheFileHelper;
+
+    private final Set<String> files = ConcurrentHashMap.newKeySet();
+
+    private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private volatile Path root;
+
+    private WatchService watchService;
+
+    private ExecutorService watcher;
+
+    /**
+     * Scans and starts to watch the mock directory on application startup, if it is configured
+     *
+     * @param init application scope initialization event
+     */
+    public void onStartup(@Observes @Initialized(ApplicationScoped.class) Object init) {
+        if (directory.isEmpty() || directory.get().isBlank()) {
+            return;
+        }
+        Path path = Path.of(directory.get()).toAbsolutePath().normalize();
+        if (!Files.isDirectory(path)) {
+            LOG.warning(() -> MessageFormat.format("Mock directory [{0}] does not exist, it is ignored", path));
+            return;
+        }
+        try {
+            watchService = path.getFileSystem().newWatchService();
+            register(path, path);
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "Unable to watch mock directory [" + path + "], it is ignored", e);
+            close();
+            return;
+        }
+        root = path;
+        generation.incrementAndGet();
+        watcher = Executors.newSingleThreadExecutor(new NamedThreadFactory("mock-directory-watcher"));
+        watcher.execute(this::watch);
+        LOG.info(() -> MessageFormat.format("Mock directory [{0}] watched, [{1}] files found", path, String.valueOf(files.size())));
+    }
+
+    /**
+     * Returns whether the file exists in the mock directory
+     *
+     * @param filePath relative file path like {@code rest/userService/0.json}
+     * @return true if the mock directory is configured and contains the file
+     */
+    public boolean contains(String filePath) {
+        return root != null && files.contains(filePath);
+    }
+
+    /**
+     * @return snapshot of the relative file paths of the mock directory
+     */
+    public Set<String> getFiles() {
+        return root != null ? Set.copyOf(files) : Set.of();
+    }
+
+    /**
+     * @return counter of the mock directory changes, it is increased on every create, modify and delete
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Reads the file from the mock directory
+     *
+     * @param filePath relative file path like {@code rest/userService/0.json}
+     * @return pre-encoded file content or null if the file is not in the mock directory
+     * @throws BaseException if the file is unreadable
+     */
+    public MockEntry load(String filePath) throws BaseException {
+        Path path = contains(filePath) ? resolve(filePath) : null;
+        if (path == null || !Files.isRegularFile(path)) {
+            return null;
+        }
+        // files edited in place must be read to the heap, a truncated mapping fails the requests served from it. Without
+        // mapping a file heavier than the cache weight limit is not cached, so it is read by every request.
+        long threshold = mapEnabled ? mapThreshold : Long.MAX_VALUE;
+        return MockEntry.of(FileUtil.readFileContent(path, threshold), FileUtil.getMediaType(filePath), lastModified(path));
+    }
+
+    /**
+     * Stops the watcher
+     */
+    @PreDestroy
+    public void close() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Unable to close mock directory watch service", e);
+            }
+        }
+        if (watcher != null) {
+            watcher.shutdownNow();
+        }
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            // the file has been read, the load time is a valid modification time
+            return System.currentTimeMillis();
+        }
+    }
+
+    private Path resolve(String filePath) {
+        Path base = root;
+        if (base == null) {
+            return null;
+        }
+        Path path = base.resolve(filePath).normalize();
+        // paths like ../../etc must not leave the mock directory
+        return path.startsWith(base) ? path : null;
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path watched = watchedDirectories.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        rescan();
+                    } else if (watched != null) {
+                        changed(watched.resolve((Path) event.context()), event.kind());
+                    }
+                }
+                if (!key.reset()) {
+                    watchedDirectories.remove(key);
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            LOG.fine("Mock directory watcher stopped");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void changed(Path path, WatchEvent.Kind<?> kind) {
+        String filePath = toFilePath(path);
+        if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+            // a deleted directory takes its files with it
+            Set<String> deleted = files.stream()
+                    .filter(file -> file.equals(filePath) || file.startsWith(filePath + "/"))
+                    .collect(Collectors.toSet());
+            files.removeAll(deleted);
+            deleted.forEach(cacheFileHelper::invalidate);
+            generation.incrementAndGet();
+            return;
+        }
+        if (Files.isDirectory(path)) {
+            if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
+                try {
+                    register(path, root);
+                    files.stream().filter(file -> file.startsWith(filePath + "/")).forEach(cacheFileHelper::invalidate);
+                    generation.incrementAndGet();
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "Unable to watch mock directory [" + path + "]", e);
+                }
+            }
+            return;
+        }
+        files.add(filePath);
+        cacheFileHelper.invalidate(filePath);
+        generation.incrementAndGet();
+        LOG.fine(() -> MessageFormat.format("Mock file [{0}] changed: [{1}]", filePath, kind.name()));
+    }
+
+    private void rescan() {
+        LOG.warning("Mock directory events overflowed, rescanning the directory");
+        try {
+            register(root, root);
+            files.forEach(cacheFileHelper::invalidate);
+            files.removeIf(file -> !Files.isRegularFile(root.resolve(file)));
+            generation.incrementAndGet();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Unable to rescan mock directory [" + root + "]", e);
+        }
+    }
+
+    private void register(Path start, Path base) throws IOException {
+        try (Stream<Path> paths = Files.walk(start)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (Files.isDirectory(path)) {
+                    WatchKey key = path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                    watchedDirectories.put(key, path);
+                } else if (Files.isRegularFile(path)) {
+                    files.add(toFilePath(base, path));
+                }
+            }
+        }
+    }
+
+    private String toFilePath(Path path) {
+        return toFilePath(root, path);
+    }
+
+    private static String toFilePath(Path base, Path path) {
+        StringBuilder filePath = new StringBuilder();
+        for (Path element : base.relativize(path)) {
+            if (filePath.length() > 0) {
+                filePath.append('/');
+            }
+            filePath.append(element.toString());
+        }
+        return filePath.toString();
+    }
+}
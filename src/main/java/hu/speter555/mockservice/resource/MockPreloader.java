@@ -0,0 +1,153 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.resource;
+
+import java.text.MessageFormat;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.Initialized;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.ws.rs.core.MediaType;
+
+import hu.icellmobilsoft.coffee.dto.exception.BaseException;
+import hu.speter555.mockservice.cache.MockEntry;
+import hu.speter555.mockservice.config.ConfigKey;
+import hu.speter555.mockservice.template.ResponseTemplate;
+import hu.speter555.mockservice.util.CacheFileHelper;
+import hu.speter555.mockservice.util.FileUtil;
+import hu.speter555.mockservice.util.JsonValidator;
+import hu.speter555.mockservice.util.NamedThreadFactory;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Loads all mock files of the configured classpath roots in parallel at startup (validating the JSON files without
+ * placeholders), and publishes them as an immutable index in the {@link CacheFileHelper}. The first request of a path
+ * does not need any resource lookup afterwards.
+ *
+ * @author speter555
+ */
+@ApplicationScoped
+public class MockPreloader {
+
+    private static final Logger LOG = Logger.getLogger(MockPreloader.class.getName());
+
+    private static final String JSON_EXTENSION = ".json";
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.PRELOAD_ENABLED, defaultValue = "false")
+    private boolean enabled;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.PRELOAD_ROOTS, defaultValue = ".")
+    private String roots;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.PRELOAD_PARALLELISM, defaultValue = "0")
+    private int parallelism;
+
+    @Inject
+    private CacheFileHelper cacheFileHelper;
+
+    /**
+     * Preloads the mock files on application startup, before the requests are served, if preload is enabled
+     *
+     * @param init application scope initialization event
+     */
+    public void onStartup(@Observes @Initialized(ApplicationScoped.class) Object init) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            preload();
+        } catch (BaseException e) {
+            LOG.log(Level.SEVERE, "Mock preload failed, files are loaded on first request", e);
+        }
+    }
+
+    /**
+     * Scans, loads and validates the mock files, and replaces the index of the {@link CacheFileHelper}
+     *
+     * @throws BaseException if a resource root is unreadable
+     */
+    public void preload() throws BaseException {
+        long start = System.nanoTime();
+        Set<String> files = new TreeSet<>();
+        for (String root : roots.split(",")) {
+            files.addAll(MockResourceScanner.scan(root, name -> name.endsWith(JSON_EXTENSION)));
+        }
+
+        Map<String, MockEntry> index = new ConcurrentHashMap<>();
+        Queue<String> failures = new ConcurrentLinkedQueue<>();
+        LongAdder bytes = new LongAdder();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount(files.size()), new NamedThreadFactory("mock-preload"));
+        try {
+            CompletableFuture.allOf(files.stream()
+                    .map(file -> CompletableFuture.runAsync(() -> load(file, index, failures, bytes), executor))
+                    .toArray(CompletableFuture[]::new))
+                    .join();
+        } finally {
+            executor.shutdown();
+        }
+        cacheFileHelper.setIndex(index);
+
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        LOG.info(MessageFormat.format("Mock preload finished in [{0}] ms: [{1}] files indexed, [{2}] bytes, [{3}] files skipped",
+                String.valueOf(duration), String.valueOf(index.size()), String.valueOf(bytes.sum()),
+                String.valueOf(failures.size())));
+        failures.forEach(LOG::warning);
+    }
+
+    private void load(String file, Map<String, MockEntry> index, Queue<String> failures, LongAdder bytes) {
+        try {
+            byte[] content = FileUtil.readBytesFromResource(file);
+            String mediaType = FileUtil.getMediaType(file);
+            // binary and text mocks of path extensions, and templates with unquoted placeholders are not JSON
+            if (MediaType.APPLICATION_JSON.equals(mediaType) && !ResponseTemplate.hasPlaceholder(content)) {
+                JsonValidator.validate(file, content);
+            }
+            MockEntry entry = MockEntry.of(content, mediaType);
+            // the entity tag is computed by the preloader threads, not by the first request
+            entry.getETag();
+            index.put(file, entry);
+            bytes.add(content.length);
+        } catch (BaseException e) {
+            failures.add(e.getLocalizedMessage());
+        }
+    }
+
+    private int threadCount(int fileCount) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(threads, fileCount));
+    }
+}
@@ -0,0 +1,137 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.resource;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.MessageFormat;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import javax.enterprise.inject.Vetoed;
+
+import hu.icellmobilsoft.coffee.dto.exception.BaseException;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Lists the mock resource files of classpath roots. Both directory and jar classpath entries are supported.
+ *
+ * @author speter555
+ */
+@Vetoed
+public final class MockResourceScanner {
+
+    private static final Logger LOG = Logger.getLogger(MockResourceScanner.class.getName());
+
+    private MockResourceScanner() {
+    }
+
+    /**
+     * Lists the resource files under the classpath root
+     *
+     * @param root classpath root directory like {@code rest}, blank for the classpath root
+     * @param filter filter of the resource names
+     * @return sorted resource names like {@code rest/userService/0.json}, loadable by the
+     *         {@code ClassLoader.getSystemResourceAsStream}
+     * @throws BaseException if the classpath is unreadable
+     */
+    public static Set<String> scan(String root, Predicate<String> filter) throws BaseException {
+        String normalizedRoot = normalize(root);
+        Set<String> resources = new TreeSet<>();
+        try {
+            Enumeration<URL> urls = ClassLoader.getSystemResources(normalizedRoot);
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                if ("file".equals(url.getProtocol())) {
+                    collect(Path.of(url.toURI()), normalizedRoot, filter, resources);
+                } else if ("jar".equals(url.getProtocol())) {
+                    scanJar(url.toURI(), normalizedRoot, filter, resources);
+                } else {
+                    LOG.warning(() -> MessageFormat.format("Unsupported classpath entry [{0}] skipped", url));
+                }
+            }
+        } catch (IOException | URISyntaxException e) {
+            throw new BaseException(MessageFormat.format("Unable to scan resource root [{0}]", root), e);
+        }
+        return resources;
+    }
+
+    /**
+     * Normalizes a classpath root directory: removes the leading and trailing slashes, {@code .} means the classpath root
+     *
+     * @param root classpath root directory
+     * @return normalized root
+     */
+    public static String normalize(String root) {
+        String normalized = StringUtils.removeEnd(StringUtils.removeStart(StringUtils.trim(root), "/"), "/");
+        return ".".equals(normalized) ? StringUtils.EMPTY : StringUtils.defaultString(normalized);
+    }
+
+    private static void scanJar(URI uri, String root, Predicate<String> filter, Set<String> resources) throws IOException {
+        FileSystem fileSystem;
+        boolean created = false;
+        try {
+            fileSystem = FileSystems.newFileSystem(uri, Collections.emptyMap());
+            created = true;
+        } catch (FileSystemAlreadyExistsException e) {
+            fileSystem = FileSystems.getFileSystem(uri);
+        }
+        try {
+            collect(fileSystem.getPath(StringUtils.isEmpty(root) ? "/" : "/" + root), root, filter, resources);
+        } finally {
+            if (created) {
+                fileSystem.close();
+            }
+        }
+    }
+
+    private static void collect(Path directory, String root, Predicate<String> filter, Set<String> resources) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.filter(Files::isRegularFile).forEach(path -> {
+                StringBuilder name = new StringBuilder(root);
+                for (Path element : directory.relativize(path)) {
+                    if (name.length() > 0) {
+                        name.append('/');
+                    }
+                    name.append(element.toString());
+                }
+                String resource = name.toString();
+                if (filter.test(resource)) {
+                    resources.add(resource);
+                }
+            });
+        }
+    }
+}
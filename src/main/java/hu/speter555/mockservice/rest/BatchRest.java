@@ -0,0 +1,90 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.rest;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import javax.enterprise.inject.Model;
+import javax.inject.Inject;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import hu.icellmobilsoft.coffee.dto.exception.BaseException;
+import hu.icellmobilsoft.coffee.rest.rest.BaseRestService;
+import hu.speter555.mockservice.batch.BatchKey;
+import hu.speter555.mockservice.batch.BatchResolver;
+import hu.speter555.mockservice.batch.BatchResult;
+import hu.speter555.mockservice.batch.BatchWriter;
+import hu.speter555.mockservice.config.ConfigKey;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Batch endpoint implementation. The keys are resolved before the response is started, the cache misses are loaded in
+ * parallel while the completed results are streamed.
+ *
+ * @author speter555
+ */
+@Model
+public class BatchRest extends BaseRestService implements IBatchRest {
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.BATCH_MAX_KEYS, defaultValue = "1000")
+    private int maxKeys;
+
+    @Inject
+    private BatchResolver batchResolver;
+
+    @Context
+    private HttpHeaders httpHeaders;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Response batch(String request) throws BaseException {
+        List<BatchKey> keys = BatchKey.parseRequest(request, isPlainText(), maxKeys);
+        boolean ndjson = isNdjson();
+        List<CompletableFuture<BatchResult>> results = batchResolver.resolve(keys);
+        StreamingOutput output = stream -> BatchWriter.write(stream, results, ndjson);
+        return Response.ok(output, ndjson ? APPLICATION_NDJSON : MediaType.APPLICATION_JSON).build();
+    }
+
+    private boolean isPlainText() {
+        MediaType mediaType = httpHeaders.getMediaType();
+        return mediaType != null && mediaType.isCompatible(MediaType.TEXT_PLAIN_TYPE);
+    }
+
+    private boolean isNdjson() {
+        for (MediaType accepted : httpHeaders.getAcceptableMediaTypes()) {
+            // the first explicitly accepted of the two types wins, wildcards select the JSON array
+            if (APPLICATION_NDJSON.equalsIgnoreCase(accepted.getType() + '/' + accepted.getSubtype())) {
+                return true;
+            }
+            if (accepted.isCompatible(MediaType.APPLICATION_JSON_TYPE)) {
+                return false;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,57 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.rest;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import hu.icellmobilsoft.coffee.dto.exception.BaseException;
+
+/**
+ * Batch endpoint, it answers many mock requests in one round trip. The literal path takes precedence over the mock
+ * endpoints.
+ *
+ * @author speter555
+ */
+@Path("_mockservice/batch")
+public interface IBatchRest {
+
+    /**
+     * Newline delimited JSON media type, one result per line
+     */
+    String APPLICATION_NDJSON = "application/x-ndjson";
+
+    /**
+     * Resolves the mock files of the keys
+     *
+     * @param request JSON array of keys like {@code ["GET /rest/users/1", "/rest/users/2"]}, or one key per line as
+     *            plain text
+     * @return streamed results in the order of the keys, as JSON array or as newline delimited JSON by the Accept header
+     * @throws BaseException if the request is malformed
+     */
+    @POST
+    @Consumes({ MediaType.APPLICATION_JSON, MediaType.TEXT_PLAIN })
+    @Produces({ MediaType.APPLICATION_JSON, APPLICATION_NDJSON })
+    Response batch(String request) throws BaseException;
+}
@@ -0,0 +1,45 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.rest;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+
+import hu.speter555.mockservice.metrics.PrometheusWriter;
+
+/**
+ * Operational endpoints of the mock service. The literal path takes precedence over the mock endpoints.
+ *
+ * @author speter555
+ */
+@Path("_mockservice")
+public interface IMetricsRest {
+
+    /**
+     * Prometheus scrape endpoint
+     *
+     * @return latency histograms, counters and gauges in the Prometheus text format
+     */
+    @GET
+    @Path("metrics")
+    @Produces(PrometheusWriter.CONTENT_TYPE)
+    String metrics();
+}
@@ -29,12 +29,12 @@ import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
-import javax.ws.rs.core.Response;
-
-import hu.icellmobilsoft.coffee.dto.exception.BaseException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 
 /**
- * Rest endpoints
+ * Rest endpoints. The responses are suspended, so the redirect calls do not hold a request thread while the upstream
+ * responds.
  *
  * @author speter555
  */
@@ -44,89 +44,82 @@ public interface IMockRest {
     /**
      * All Get endpoints
      *
-     * @return mock response
-     * @throws BaseException if error
+     * @param asyncResponse suspended response, resumed with the mock response
      */
     @GET
     @Path("{any: .*}")
     @Consumes
     @Produces
-    Response get() throws BaseException;
+    void get(@Suspended AsyncResponse asyncResponse);
 
     /**
      * All Delete endpoints
      *
-     * @return mock response
-     * @throws BaseException if error
+     * @param asyncResponse suspended response, resumed with the mock response
      */
     @DELETE
     @Path("{any: .*}")
     @Consumes
     @Produces
-    Response delete() throws BaseException;
+    void delete(@Suspended AsyncResponse asyncResponse);
 
     /**
      * All Options endpoints
      * endpoint
      *
-     * @return mock response
-     * @throws BaseException if error
+     * @param asyncResponse suspended response, resumed with the mock response
      */
     @OPTIONS
     @Path("{any: .*}")
     @Consumes
     @Produces
-    Response options() throws BaseException;
+    void options(@Suspended AsyncResponse asyncResponse);
 
     /**
      * All Post endpoints
      * endpoint
      *
-     * @return mock response
-     * @throws BaseException if error
+     * @param asyncResponse suspended response, resumed with the mock response
      */
     @POST
     @Path("{any: .*}")
     @Consumes
     @Produces
-    Response post() throws BaseException;
+    void post(@Suspended AsyncResponse asyncResponse);
 
     /**
      * All Put endpoints
      * endpoint
      *
-     * @return mock response
-     * @throws BaseException if error
+     * @param asyncResponse suspended response, resumed with the mock response
      */
     @PUT
     @Path("{any: .*}")
     @Consumes
     @Produces
-    Response put() throws BaseException;
+    void put(@Suspended AsyncResponse asyncResponse);
 
     /**
      * All Head endpoints
      * endpoint
      *
-     * @return mock response
-     * @throws BaseException if error
+     * @param asyncResponse suspended response, resumed with the mock response
      */
     @HEAD
     @Path("{any: .*}")
     @Consumes
     @Produces
-    Response head() throws BaseException;
+    void head(@Suspended AsyncResponse asyncResponse);
 
     /**
      * All Patch endpoints
      * endpoint
      *
-     * @return mock response
-     * @throws BaseException if error
+     * @param asyncResponse suspended response, resumed with the mock response
      */
     @PATCH
     @Path("{any: .*}")
     @Consumes
     @Produces
-    Response patch() throws BaseException;
+    void patch(@Suspended AsyncResponse asyncResponse);
 }
@@ -0,0 +1,165 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.rest;
+
+import javax.enterprise.inject.Model;
+import javax.inject.Inject;
+
+import hu.icellmobilsoft.coffee.rest.rest.BaseRestService;
+import hu.speter555.mockservice.cache.CacheStats;
+import hu.speter555.mockservice.exception.ErrorLogLimiter;
+import hu.speter555.mockservice.fault.FaultInjector;
+import hu.speter555.mockservice.httpclient.HttpClientPool;
+import hu.speter555.mockservice.httpclient.ProxyCache;
+import hu.speter555.mockservice.httpclient.RedirectCoalescer;
+import hu.speter555.mockservice.httpclient.UpstreamBulkheads;
+import hu.speter555.mockservice.httpclient.UpstreamCircuitBreakers;
+import hu.speter555.mockservice.httpclient.UpstreamHedging;
+import hu.speter555.mockservice.logger.AccessLog;
+import hu.speter555.mockservice.metrics.MetricsRegistry;
+import hu.speter555.mockservice.metrics.PrometheusWriter;
+import hu.speter555.mockservice.recording.RecordingStore;
+import hu.speter555.mockservice.route.RouteTable;
+import hu.speter555.mockservice.util.CacheFileHelper;
+import org.apache.http.pool.PoolStats;
+
+/**
+ * Operational endpoints implementations. The counters and gauges are read from their components at scrape time, the
+ * request path only increments them.
+ *
+ * @author speter555
+ */
+@Model
+public class MetricsRest extends BaseRestService implements IMetricsRest {
+
+    private static final String COUNTER = "counter";
+
+    private static final String GAUGE = "gauge";
+
+    @Inject
+    private MetricsRegistry metricsRegistry;
+
+    @Inject
+    private CacheFileHelper cacheFileHelper;
+
+    @Inject
+    private HttpClientPool httpClientPool;
+
+    @Inject
+    private RedirectCoalescer redirectCoalescer;
+
+    @Inject
+    private ProxyCache proxyCache;
+
+    @Inject
+    private UpstreamBulkheads upstreamBulkheads;
+
+    @Inject
+    private UpstreamCircuitBreakers upstreamCircuitBreakers;
+
+    @Inject
+    private UpstreamHedging upstreamHedging;
+
+    @Inject
+    private RecordingStore recordingStore;
+
+    @Inject
+    private FaultInjector faultInjector;
+
+    @Inject
+    private RouteTable routeTable;
+
+    @Inject
+    private AccessLog accessLog;
+
+    @Inject
+    private ErrorLogLimiter errorLogLimiter;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String metrics() {
+        PrometheusWriter writer = new PrometheusWriter();
+        metricsRegistry.writeTo(writer);
+
+        CacheStats cacheStats = cacheFileHelper.getStats();
+        writer.single("mockservice_cache_hits_total", COUNTER, "Mock file cache hits", cacheStats.getHitCount());
+        writer.single("mockservice_cache_misses_total", COUNTER, "Mock file cache misses", cacheStats.getMissCount());
+        writer.single("mockservice_cache_loads_total", COUNTER, "Mock file loads", cacheStats.getLoadCount());
+        writer.single("mockservice_cache_evictions_total", COUNTER, "Mock files evicted by the cache limits", cacheStats.getEvictionCount());
+        writer.single("mockservice_cache_entries", GAUGE, "Cached mock files", cacheStats.getSize());
+        writer.single("mockservice_cache_bytes", GAUGE, "Summarized size of the cached mock files", cacheStats.getWeight());
+        writer.single("mockservice_cache_index_entries", GAUGE, "Preloaded mock files", cacheFileHelper.getIndexSize());
+        writer.single("mockservice_lookups_total", COUNTER, "Mock file lookups", cacheFileHelper.getResourceLookupCount());
+        writer.single("mockservice_not_found_total", COUNTER, "Mock file lookups of missing files", cacheFileHelper.getNotFoundCount());
+        writer.single("mockservice_negative_cache_hits_total", COUNTER, "Missing file lookups answered by the negative cache",
+                cacheFileHelper.getNegativeCacheHitCount());
+        writer.single("mockservice_coalesced_loads_total", COUNTER, "Mock file loads shared by concurrent requests",
+                cacheFileHelper.getCoalescedLoadCount());
+
+        PoolStats poolStats = httpClientPool.getStats();
+        writer.single("mockservice_upstream_connections_leased", GAUGE, "Leased upstream connections", poolStats.getLeased());
+        writer.single("mockservice_upstream_connections_available", GAUGE, "Idle pooled upstream connections", poolStats.getAvailable());
+        writer.single("mockservice_upstream_connections_pending", GAUGE, "Requests waiting for an upstream connection", poolStats.getPending());
+        writer.single("mockservice_upstream_async_in_flight", GAUGE, "In-flight asynchronous upstream calls", httpClientPool.getInFlightCount());
+        writer.family("mockservice_upstream_concurrency_limit", GAUGE, "Adaptive concurrency limit of the upstream bulkheads");
+        upstreamBulkheads.getLimits().forEach((upstream, limit) -> writer.sample("mockservice_upstream_concurrency_limit",
+                PrometheusWriter.label("upstream", upstream), limit));
+        writer.family("mockservice_upstream_in_flight", GAUGE, "In-flight calls of the upstream bulkheads");
+        upstreamBulkheads.getInFlight().forEach((upstream, inFlight) -> writer.sample("mockservice_upstream_in_flight",
+                PrometheusWriter.label("upstream", upstream), inFlight));
+        writer.single("mockservice_upstream_rejected_total", COUNTER, "Redirect calls rejected by the upstream bulkheads",
+                upstreamBulkheads.getRejectedCount());
+        writer.family("mockservice_upstream_circuit_open", GAUGE, "Whether the circuit of the upstream is open");
+        upstreamCircuitBreakers.getOpen().forEach((upstream, open) -> writer.sample("mockservice_upstream_circuit_open",
+                PrometheusWriter.label("upstream", upstream), open ? 1 : 0));
+        writer.single("mockservice_upstream_circuit_rejected_total", COUNTER, "Redirect calls rejected by open upstream circuits",
+                upstreamCircuitBreakers.getRejectedCount());
+        writer.single("mockservice_upstream_hedged_total", COUNTER, "Hedge calls sent for slow idempotent redirect calls",
+                upstreamHedging.getHedgedCount());
+        writer.single("mockservice_upstream_hedge_wins_total", COUNTER, "Hedge calls answered before the original call",
+                upstreamHedging.getHedgeWinCount());
+        writer.single("mockservice_upstream_coalesced_total", COUNTER, "Redirect calls shared by identical concurrent requests",
+                redirectCoalescer.getCoalescedCount());
+
+        writer.single("mockservice_proxy_cache_entries", GAUGE, "Cached redirect responses", proxyCache.size());
+        writer.single("mockservice_proxy_cache_fresh_hits_total", COUNTER, "Redirect calls served by a fresh cached response",
+                proxyCache.getFreshHitCount());
+        writer.single("mockservice_proxy_cache_stale_hits_total", COUNTER, "Redirect calls served by a stale cached response",
+                proxyCache.getStaleHitCount());
+        writer.single("mockservice_proxy_cache_refreshes_total", COUNTER, "Background refreshes of stale cached responses",
+                proxyCache.getRefreshCount());
+
+        writer.single("mockservice_recordings", GAUGE, "Responses in the recording store", recordingStore.size());
+        writer.single("mockservice_recordings_dropped_total", COUNTER, "Recordings dropped because of the full write queue",
+                recordingStore.getDroppedCount());
+        writer.single("mockservice_routes", GAUGE, "Routes in the route table", routeTable.size());
+        writer.single("mockservice_behavior_delayed_total", COUNTER, "Responses delayed by a simulated behavior", faultInjector.getDelayedCount());
+        writer.single("mockservice_behavior_errors_total", COUNTER, "Simulated error responses", faultInjector.getErrorCount());
+        writer.single("mockservice_behavior_resets_total", COUNTER, "Simulated connection resets", faultInjector.getResetCount());
+        writer.single("mockservice_access_log_dropped_total", COUNTER, "Access log lines dropped because the writer could not keep up",
+                accessLog.getDroppedCount());
+        writer.family("mockservice_errors_total", COUNTER, "Mapped exceptions by type");
+        errorLogLimiter.getCounts()
+                .forEach((type, count) -> writer.sample("mockservice_errors_total", PrometheusWriter.label("type", type), count));
+        return writer.toString();
+    }
+}
@@ -20,27 +20,61 @@
 package hu.speter555.mockservice.rest;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
 
 import javax.enterprise.inject.Model;
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.HttpMethod;
+import javax.ws.rs.container.AsyncResponse;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
 import hu.icellmobilsoft.coffee.cdi.logger.AppLogger;
 import hu.icellmobilsoft.coffee.cdi.logger.ThisLogger;
 import hu.icellmobilsoft.coffee.dto.exception.BaseException;
 import hu.icellmobilsoft.coffee.rest.rest.BaseRestService;
+import hu.speter555.mockservice.cache.MockEntry;
+import hu.speter555.mockservice.config.CompressionConfig;
+import hu.speter555.mockservice.config.RedirectConfig;
+import hu.speter555.mockservice.exception.MockNotFoundException;
+import hu.speter555.mockservice.exception.UpstreamUnavailableException;
+import hu.speter555.mockservice.fault.Behavior;
+import hu.speter555.mockservice.fault.FaultInjector;
 import hu.speter555.mockservice.httpclient.ApacheHttpClient;
+import hu.speter555.mockservice.httpclient.ProxyCache;
+import hu.speter555.mockservice.httpclient.RedirectCoalescer;
+import hu.speter555.mockservice.httpclient.StreamingResponse;
+import hu.speter555.mockservice.metrics.MetricsFilter;
+import hu.speter555.mockservice.metrics.MetricsRegistry;
+import hu.speter555.mockservice.recording.RecordingStore;
+import hu.speter555.mockservice.route.RouteMatch;
+import hu.speter555.mockservice.route.RouteTable;
+import hu.speter555.mockservice.template.ResponseTemplate;
+import hu.speter555.mockservice.template.TemplateContext;
+import hu.speter555.mockservice.util.ByteRange;
 import hu.speter555.mockservice.util.CacheFileHelper;
-import hu.speter555.mockservice.util.FileUtil;
+import hu.speter555.mockservice.util.DigestUtil;
 import org.apache.commons.lang3.StringUtils;
 
 /**
@@ -53,6 +87,16 @@ public class MockRest extends BaseRestService implements IMockRest {
 
     private static final String REDIRECT_HEADER_URL = "MOCKSERVICE-REDIRECT-URL";
     private static final String REDIRECT_HEADER_HEADERS = "MOCKSERVICE-REDIRECT-HEADERS";
+    private static final String JSON_EXTENSION = ".json";
+    private static final String GZIP = "gzip";
+    private static final String GZIP_ETAG_SUFFIX = "-gzip";
+    private static final String RANGE = "Range";
+    private static final String IF_RANGE = "If-Range";
+    private static final String CONTENT_RANGE = "Content-Range";
+    private static final String ACCEPT_RANGES = "Accept-Ranges";
+    private static final String BYTES = "bytes";
+    private static final String NO_STORE = "no-store";
+    private static final Pattern ZERO_QUALITY = Pattern.compile("q\\s*=\\s*0(\\.0*)?\\s*(;|$)");
     
     /**
      * For logging...
@@ -74,6 +118,60 @@ public class MockRest extends BaseRestService implements IMockRest {
     @Inject
     private ApacheHttpClient apacheHttpClient;
 
+    /**
+     * Coalesces the identical concurrent redirect calls
+     */
+    @Inject
+    private RedirectCoalescer redirectCoalescer;
+
+    /**
+     * Cache of the redirect responses in cache-first proxy mode
+     */
+    @Inject
+    private ProxyCache proxyCache;
+
+    /**
+     * Durable recording of the redirect responses
+     */
+    @Inject
+    private RecordingStore recordingStore;
+
+    /**
+     * Route table of the mock files
+     */
+    @Inject
+    private RouteTable routeTable;
+
+    /**
+     * Simulated latency and faults
+     */
+    @Inject
+    private FaultInjector faultInjector;
+
+    /**
+     * Redirect call settings
+     */
+    @Inject
+    private RedirectConfig redirectConfig;
+
+    /**
+     * Response compression config
+     */
+    @Inject
+    private CompressionConfig compressionConfig;
+
+    /**
+     * Routed mock file of the request, null if the request is not routed
+     */
+    private String mockFile;
+
+    /**
+     * Request body, the input stream of the request can be read once
+     */
+    private String requestBody;
+
+    private boolean requestBodyRead;
+
     /**
      * Request
      */
@@ -86,60 +184,105 @@ public class MockRest extends BaseRestService implements IMockRest {
     @Context
     private HttpHeaders httpHeaders;
 
+    /**
+     * Request of the conditional header evaluation
+     */
+    @Context
+    private Request restRequest;
+
     /**
      * {@inheritDoc}
      */
     @Override
-    public Response get() throws BaseException {
-        return getFile();
+    public void get(AsyncResponse asyncResponse) {
+        handle(asyncResponse);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public Response delete() throws BaseException {
-        return getFile();
+    public void delete(AsyncResponse asyncResponse) {
+        handle(asyncResponse);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public Response options() throws BaseException {
-        return getFile();
+    public void options(AsyncResponse asyncResponse) {
+        handle(asyncResponse);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public Response post() throws BaseException {
-        return getFile();
+    public void post(AsyncResponse asyncResponse) {
+        handle(asyncResponse);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public Response put() throws BaseException {
-        return getFile();
+    public void put(AsyncResponse asyncResponse) {
+        handle(asyncResponse);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public Response head() throws BaseException {
-        return getFile();
+    public void head(AsyncResponse asyncResponse) {
+        handle(asyncResponse);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public Response patch() throws BaseException {
-        return getFile();
+    public void patch(AsyncResponse asyncResponse) {
+        handle(asyncResponse);
+    }
+
+    /**
+     * Resumes the suspended response with the mock response. Asynchronous redirect calls resume it from the I/O thread of
+     * the non-blocking client, responses delayed by a simulated behavior from a timer thread, everything else on the
+     * request thread. The simulated behavior of the mock file applies to the asynchronous redirect responses as well.
+     *
+     * @param asyncResponse suspended response
+     */
+    public void handle(AsyncResponse asyncResponse) {
+        Object result;
+        String filePath = null;
+        try {
+            filePath = getFilePath();
+            if (recordingStore.isReplaying()) {
+                result = replay(filePath);
+            } else if (redirectConfig.isAsyncEnabled() && !redirectConfig.isStreamingEnabled()
+                    && StringUtils.isNotBlank(httpHeaders.getHeaderString(REDIRECT_HEADER_URL))) {
+                httpServletRequest.setAttribute(MetricsFilter.ROUTE_PROPERTY, filePath);
+                redirectAsync(filePath, asyncResponse);
+                return;
+            } else {
+                result = getFile(filePath);
+            }
+        } catch (BaseException e) {
+            result = e;
+        }
+        // the served mock file labels the serve time metrics
+        httpServletRequest.setAttribute(MetricsFilter.ROUTE_PROPERTY,
+                result instanceof MockNotFoundException ? MetricsRegistry.UNMATCHED : mockFile != null ? mockFile : filePath);
+        resume(asyncResponse, faultInjector.getBehavior(mockFile != null ? mockFile : filePath), result);
+    }
+
+    private void resume(AsyncResponse asyncResponse, Behavior behavior, Object result) {
+        if (behavior == null) {
+            FaultInjector.resume(asyncResponse, result);
+        } else {
+            faultInjector.apply(asyncResponse, behavior, result);
+        }
     }
 
     /**
@@ -149,83 +292,482 @@ public class MockRest extends BaseRestService implements IMockRest {
      * @throws BaseException if error is created
      */
     public Response getFile() throws BaseException {
+        return getFile(getFilePath());
+    }
+
+    private String getFilePath() {
         String path = httpServletRequest.getPathInfo().replaceFirst("/", StringUtils.EMPTY);
-        logger.info("path: " + path);
+        logger.debug("path: {0}", path);
         if (StringUtils.isBlank(path)) {
             path = "root";
         }
-        String filePath = path + ".json";
-        logger.info("fileName: " + filePath);
-        String response = validateRedirect();
+        String filePath = path + JSON_EXTENSION;
+        logger.debug("fileName: {0}", filePath);
+        return filePath;
+    }
+
+    private Response getFile(String filePath) throws BaseException {
+        MockEntry response;
+        try {
+            if (redirectConfig.isStreamingEnabled() && StringUtils.isNotBlank(httpHeaders.getHeaderString(REDIRECT_HEADER_URL))) {
+                return streamRedirect(filePath);
+            }
+            response = validateRedirect(filePath);
+        } catch (UpstreamUnavailableException e) {
+            return toResponse(fallback(filePath, e));
+        }
 
         if (Objects.isNull(response)) {
-            if (cacheFileHelper.containsKey(filePath)) {
-                response = cacheFileHelper.get(filePath);
-            } else {
-                response = FileUtil.readFileFromResource(filePath);
-                cacheFileHelper.put(filePath, response);
+            response = loadMock(filePath);
+        }
+        return toResponse(response);
+    }
+
+    /**
+     * Returns the recorded response of the request from the recording store, the redirect header is ignored. Requests
+     * without recording are answered from the mock files.
+     *
+     * @param filePath mock file path
+     * @return recorded or mock response
+     * @throws BaseException if error is created
+     */
+    private Response replay(String filePath) throws BaseException {
+        String method = httpServletRequest.getMethod();
+        MockEntry response = recordingStore.get(recordingKey(method, DigestUtil.sha256Hex(readRequest(method))));
+        if (Objects.isNull(response)) {
+            response = loadMock(filePath);
+        }
+        return toResponse(response);
+    }
+
+    /**
+     * Returns the mock response of the file path. The last redirect response of the path takes precedence, otherwise the
+     * file of the path is served, or the file of the most specific route if routing is enabled.
+     *
+     * @param filePath mock file path of the request path
+     * @return mock response
+     * @throws BaseException if no mock file matches or the file is unreadable
+     */
+    private MockEntry loadMock(String filePath) throws BaseException {
+        MockEntry redirectResponse = cacheFileHelper.getRedirectResponse(filePath);
+        if (redirectResponse != null) {
+            return redirectResponse;
+        }
+        if (!routeTable.isEnabled()) {
+            return render(cacheFileHelper.getOrLoadResource(filePath), Map.of());
+        }
+        String path = StringUtils.removeEnd(filePath, JSON_EXTENSION);
+        RouteMatch match = routeTable.match(httpServletRequest.getMethod(), path, httpServletRequest.getQueryString());
+        if (match == null) {
+            throw new MockNotFoundException(filePath);
+        }
+        logger.debug("route: {0}", match.getFilePath());
+        mockFile = match.getFilePath();
+        return render(cacheFileHelper.getOrLoadResource(mockFile), match.getParameters());
+    }
+
+    /**
+     * Renders the template of the mock file by the request
+     *
+     * @param entry mock file
+     * @param pathParameters path parameters of the matched route
+     * @return rendered response, or the entry itself if it has no template
+     * @throws BaseException if the request body is unreadable
+     */
+    private MockEntry render(MockEntry entry, Map<String, String> pathParameters) throws BaseException {
+        ResponseTemplate template = entry.getTemplate();
+        if (template == null) {
+            return entry;
+        }
+        String body = readRequest(httpServletRequest.getMethod());
+        TemplateContext context = new TemplateContext() {
+
+            private Map<String, String> query;
+
+            @Override
+            public String getPathParameter(String name) {
+                return pathParameters.get(name);
             }
-        } else {
-            cacheFileHelper.put(filePath, response);
+
+            @Override
+            public String getQueryParameter(String name) {
+                if (query == null) {
+                    query = RouteTable.parseQuery(httpServletRequest.getQueryString());
+                }
+                return query.get(name);
+            }
+
+            @Override
+            public String getHeader(String name) {
+                return httpHeaders.getHeaderString(name);
+            }
+
+            @Override
+            public String getBody() {
+                return body;
+            }
+        };
+        return MockEntry.rendered(template.render(context), entry.getMediaType());
+    }
+
+    private String recordingKey(String method, String bodyHash) {
+        return RecordingStore.key(method, httpServletRequest.getPathInfo(), httpServletRequest.getQueryString(), bodyHash);
+    }
+
+    private Response toResponse(MockEntry response) {
+        String method = httpServletRequest.getMethod();
+        boolean conditional = HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method);
+        return toResponse(response, httpHeaders.getHeaderString(HttpHeaders.ACCEPT_ENCODING),
+                conditional ? httpHeaders.getHeaderString(RANGE) : null, conditional);
+    }
+
+    /**
+     * Creates the response of the entry, the compressed variant is sent if the client accepts it. The response carries
+     * the validators of the entry, and a conditional request of an unchanged entry is answered with 304 without body. A
+     * single byte range of the uncompressed body is answered with 206, the part is not copied.
+     *
+     * @param response mock response
+     * @param acceptEncoding Accept-Encoding header of the request
+     * @param range Range header of the request
+     * @param conditional whether to evaluate the conditional headers of the request
+     * @return response with 200, 206, 304 or 416 status
+     */
+    private Response toResponse(MockEntry response, String acceptEncoding, String range, boolean conditional) {
+        if (response.isRendered()) {
+            // a rendered body differs by request, hashing and compressing it per request is not worth it, and its
+            // render time is not a modification time
+            return Response.ok(response, response.getMediaType())
+                    .header(HttpHeaders.CONTENT_LENGTH, response.getContentLength())
+                    .header(HttpHeaders.CACHE_CONTROL, NO_STORE)
+                    .build();
+        }
+        boolean compressible = compressionConfig.isEnabled() && response.getContentLength() >= compressionConfig.getMinBytes();
+        // the ranges are the ranges of the uncompressed body
+        boolean ranged = range != null && matchesIfRange(response);
+        MockEntry gzip = compressible && !ranged && acceptsGzip(acceptEncoding) ? response.getGzipVariant(compressionConfig.getMinBytes())
+                : null;
+        // the compressed variant is a different representation, with its own entity tag
+        EntityTag entityTag = new EntityTag(gzip != null ? response.getETag() + GZIP_ETAG_SUFFIX : response.getETag());
+        Date lastModified = new Date(response.getLastModified());
+        Response.ResponseBuilder builder = conditional ? restRequest.evaluatePreconditions(lastModified, entityTag) : null;
+        if (builder == null && ranged) {
+            builder = toRangeResponse(response, range);
         }
-        return Response.ok().entity(response).build();
+        if (builder == null) {
+            MockEntry entity = gzip != null ? gzip : response;
+            builder = Response.ok(entity, entity.getMediaType())
+                    .header(HttpHeaders.CONTENT_LENGTH, entity.getContentLength())
+                    .header(ACCEPT_RANGES, BYTES);
+            if (gzip != null) {
+                builder.header(HttpHeaders.CONTENT_ENCODING, GZIP);
+            }
+        }
+        builder.tag(entityTag).lastModified(lastModified);
+        if (compressible) {
+            builder.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        return builder.build();
+    }
+
+    private static Response.ResponseBuilder toRangeResponse(MockEntry response, String range) {
+        int length = response.getContentLength();
+        ByteRange byteRange = ByteRange.parse(range, length);
+        if (byteRange == null) {
+            // invalid and multiple ranges are ignored, the whole body is sent
+            return null;
+        }
+        if (byteRange == ByteRange.UNSATISFIABLE) {
+            return Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(CONTENT_RANGE, byteRange.toContentRange(length));
+        }
+        MockEntry part = response.getRange((int) byteRange.getFirst(), (int) byteRange.getLength());
+        return Response.status(Response.Status.PARTIAL_CONTENT)
+                .entity(part)
+                .type(part.getMediaType())
+                .header(HttpHeaders.CONTENT_LENGTH, part.getContentLength())
+                .header(CONTENT_RANGE, byteRange.toContentRange(length))
+                .header(ACCEPT_RANGES, BYTES);
     }
 
     /**
-     * If header contains MOCKSERVICE-REDIRECT-URL header, method call the url what is in MOCKSERVICE-REDIRECT-URL header, and return this response in String.
+     * Returns whether the If-Range header of the request matches the entry, a range of a changed entry is not sent
+     *
+     * @param response mock response
+     * @return true if the header is missing, or it is the entity tag or the modification time of the entry
+     */
+    private boolean matchesIfRange(MockEntry response) {
+        String ifRange = httpHeaders.getHeaderString(IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // weak entity tags never match
+            return ifRange.equals('"' + response.getETag() + '"');
+        }
+        try {
+            long date = ZonedDateTime.parse(ifRange.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return date == response.getLastModified();
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns whether the Accept-Encoding header accepts gzip, explicitly or by wildcard, with non-zero quality
+     *
+     * @param acceptEncoding Accept-Encoding header
+     * @return true if gzip is accepted
+     */
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        boolean wildcard = false;
+        for (String coding : acceptEncoding.split(",")) {
+            int parameters = coding.indexOf(';');
+            String name = (parameters < 0 ? coding : coding.substring(0, parameters)).trim();
+            boolean accepted = parameters < 0 || !ZERO_QUALITY.matcher(coding.substring(parameters + 1).trim()).lookingAt();
+            if (GZIP.equalsIgnoreCase(name)) {
+                return accepted;
+            }
+            if ("*".equals(name)) {
+                wildcard = accepted;
+            }
+        }
+        return wildcard;
+    }
+
+    /**
+     * Calls the url what is in MOCKSERVICE-REDIRECT-URL header on the non-blocking client. The request thread is released,
+     * the response is recorded into the cache and resumed when the upstream responds, or resumed with 504 on timeout.
+     * The callbacks use only application scoped beans, the request scope is not active on the I/O thread.
+     *
+     * @param filePath cache key of the recorded response
+     * @param asyncResponse suspended response
+     * @throws BaseException if the call cannot be started
+     */
+    private void redirectAsync(String filePath, AsyncResponse asyncResponse) throws BaseException {
+        String redirectUrl = httpHeaders.getHeaderString(REDIRECT_HEADER_URL);
+        String method = httpServletRequest.getMethod();
+        MediaType mediaType = MediaType.valueOf(httpServletRequest.getHeader(HttpHeaders.ACCEPT));
+        String acceptEncoding = httpHeaders.getHeaderString(HttpHeaders.ACCEPT_ENCODING);
+        String request = readRequest(method);
+        Map<String, String> headers = setRedirectHeaders();
+
+        // identical concurrent calls share one upstream call, the timeout of a caller does not abort the shared call
+        String key = RedirectCoalescer.key(method, redirectUrl, headers, request);
+        String recordingKey = recordingStore.isRecording() ? recordingKey(method, DigestUtil.sha256Hex(request)) : null;
+        boolean proxyCached = isProxyCached(method);
+        Behavior behavior = faultInjector.getBehavior(filePath);
+        if (proxyCached) {
+            MockEntry cached = proxyCache.get(key, () -> callAsync(key, method, redirectUrl, request, mediaType, recordingKey));
+            if (cached != null) {
+                resume(asyncResponse, behavior, toResponse(cached));
+                return;
+            }
+        }
+        CompletableFuture<MockEntry> call = callAsync(key, method, redirectUrl, request, mediaType, recordingKey);
+        asyncResponse.setTimeoutHandler(timedOut -> {
+            call.cancel(false);
+            timedOut.resume(UpstreamUnavailableException.timeout("Redirect call timed out: [" + method + " " + redirectUrl + "]"));
+        });
+        asyncResponse.setTimeout(redirectConfig.getAsyncTimeoutMillis(), TimeUnit.MILLISECONDS);
+        call.whenComplete((response, error) -> {
+            if (error == null) {
+                cacheFileHelper.putRedirectResponse(filePath, response);
+                if (proxyCached) {
+                    proxyCache.put(key, response);
+                }
+                // the request is not available on the I/O thread, a fresh upstream response is not conditional
+                resume(asyncResponse, behavior, toResponse(response, acceptEncoding, null, false));
+            } else if (!call.isCancelled()) {
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                MockEntry recorded = getRecorded(filePath, cause);
+                resume(asyncResponse, behavior, recorded != null ? toResponse(recorded, acceptEncoding, null, false) : cause);
+            }
+        });
+    }
+
+    /**
+     * Returns the last recorded response of the mock file instead of calling an upstream with open circuit
+     *
+     * @param filePath cache key of the recorded response
+     * @param e rejection of the redirect call
+     * @return last recorded response
+     * @throws UpstreamUnavailableException if the circuit is not open, or there is no recorded response
+     */
+    private MockEntry fallback(String filePath, UpstreamUnavailableException e) throws UpstreamUnavailableException {
+        MockEntry recorded = getRecorded(filePath, e);
+        if (recorded == null) {
+            throw e;
+        }
+        logger.debug("Upstream circuit is open, last recorded response served: [{0}]", filePath);
+        return recorded;
+    }
+
+    private MockEntry getRecorded(String filePath, Throwable error) {
+        boolean circuitOpen = error instanceof UpstreamUnavailableException && ((UpstreamUnavailableException) error).isCircuitOpen();
+        return circuitOpen ? cacheFileHelper.getRedirectResponse(filePath) : null;
+    }
+
+    private CompletableFuture<MockEntry> callAsync(String key, String method, String redirectUrl, String request, MediaType mediaType,
+            String recordingKey) {
+        return redirectCoalescer.executeAsync(method, key, () -> {
+            try {
+                return apacheHttpClient.sendClientAsync(method, redirectUrl, request, mediaType).thenApply(response -> {
+                    recordingStore.record(recordingKey, response);
+                    return response;
+                });
+            } catch (BaseException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        });
+    }
+
+    /**
+     * Returns whether the redirect responses of the method are served from the proxy cache, only the safe methods are
+     *
+     * @param method http method
+     * @return true if the proxy cache is enabled and the method is GET or HEAD
+     */
+    private boolean isProxyCached(String method) {
+        return proxyCache.isEnabled() && (HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method));
+    }
+
+    /**
+     * If header contains MOCKSERVICE-REDIRECT-URL header, method call the url what is in MOCKSERVICE-REDIRECT-URL header, and return this response.
      * If header not contains MOCKSERVICE-REDIRECT-URL, return null!
      *
-     * @return null if no redirect, otherwise redirect call response in String
+     * @param filePath cache key of the recorded response, it is updated when the upstream answered
+     * @return null if no redirect, otherwise redirect call response
      * @throws BaseException if error is created
      */
-    private String validateRedirect() throws BaseException {
+    private MockEntry validateRedirect(String filePath) throws BaseException {
         String redirectUrl = httpHeaders.getHeaderString(REDIRECT_HEADER_URL);
-        String response = null;
+        MockEntry response = null;
         if (StringUtils.isNotBlank(redirectUrl)) {
             String method = httpServletRequest.getMethod();
             MediaType mediaType = MediaType.valueOf(httpServletRequest.getHeader(HttpHeaders.ACCEPT));
-            String request = null;
-            if (StringUtils.containsAny(method, HttpMethod.PUT, HttpMethod.PATCH, HttpMethod.POST)) {
-                try {
-                    request = new String(httpServletRequest.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
-                } catch (IOException e) {
-                    throw new BaseException("Error during read request body...", e);
+            String request = readRequest(method);
+            Map<String, String> headers = setRedirectHeaders();
+            String recordingKey = recordingStore.isRecording() ? recordingKey(method, DigestUtil.sha256Hex(request)) : null;
+            String callKey = RedirectCoalescer.key(method, redirectUrl, headers, request);
+            boolean proxyCached = isProxyCached(method);
+            if (proxyCached) {
+                // a stale response is refreshed on the non-blocking client, the request is not waiting for it
+                response = proxyCache.get(callKey, () -> callAsync(callKey, method, redirectUrl, request, mediaType, recordingKey));
+                if (response != null) {
+                    return response;
                 }
             }
-            HashMap<String, String> map = new HashMap<>();
-
-            String redirectHeaders = httpHeaders.getHeaderString(REDIRECT_HEADER_HEADERS);
-            if (StringUtils.isNotBlank(redirectHeaders)) {
-                String[] headers = redirectHeaders.split(",");
-                Arrays.stream(headers).forEach(header -> map.put(header, httpHeaders.getHeaderString(header)));
-            }
-            apacheHttpClient.setAdditionalHeader(map);
-            switch (method) {
-                case HttpMethod.DELETE:
-                    response = apacheHttpClient.sendClientDelete(redirectUrl);
-                    break;
-                case HttpMethod.GET:
-                    response = apacheHttpClient.sendClientGet(redirectUrl);
-                    break;
-                case HttpMethod.HEAD:
-                    response = apacheHttpClient.sendClientHead(redirectUrl);
-                    break;
-                case HttpMethod.OPTIONS:
-                    response = apacheHttpClient.sendClientOptions(redirectUrl);
-                    break;
-                case HttpMethod.PATCH:
-                    response = apacheHttpClient.sendClientPatch(redirectUrl, request, mediaType);
-                    break;
-                case HttpMethod.POST:
-                    response = apacheHttpClient.sendClientPost(redirectUrl, request, mediaType);
-                    break;
-                case HttpMethod.PUT:
-                    response = apacheHttpClient.sendClientPut(redirectUrl, request, mediaType);
-                    break;
-                default:
-                    break;
+            // identical concurrent safe calls share one upstream call, and it is recorded once
+            response = redirectCoalescer.execute(method, callKey, key -> {
+                MockEntry redirectResponse = sendRedirect(method, redirectUrl, request, mediaType);
+                recordingStore.record(recordingKey, redirectResponse);
+                if (proxyCached) {
+                    proxyCache.put(key, redirectResponse);
+                }
+                return redirectResponse;
+            });
+            if (response != null) {
+                cacheFileHelper.putRedirectResponse(filePath, response);
             }
         }
         return response;
     }
+
+    private MockEntry sendRedirect(String method, String redirectUrl, String request, MediaType mediaType) throws BaseException {
+        switch (method) {
+            case HttpMethod.DELETE:
+                return apacheHttpClient.sendClientDelete(redirectUrl);
+            case HttpMethod.GET:
+                return apacheHttpClient.sendClientGet(redirectUrl);
+            case HttpMethod.HEAD:
+                return apacheHttpClient.sendClientHead(redirectUrl);
+            case HttpMethod.OPTIONS:
+                return apacheHttpClient.sendClientOptions(redirectUrl);
+            case HttpMethod.PATCH:
+                return apacheHttpClient.sendClientPatch(redirectUrl, request, mediaType);
+            case HttpMethod.POST:
+                return apacheHttpClient.sendClientPost(redirectUrl, request, mediaType);
+            case HttpMethod.PUT:
+                return apacheHttpClient.sendClientPut(redirectUrl, request, mediaType);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Calls the url what is in MOCKSERVICE-REDIRECT-URL header, the request and response bodies are passed through in
+     * chunks. The response is recorded into the cache when it is not larger than the record limit.
+     *
+     * @param filePath cache key of the recorded response
+     * @return streamed redirect call response
+     * @throws BaseException if error is created
+     */
+    private Response streamRedirect(String filePath) throws BaseException {
+        String redirectUrl = httpHeaders.getHeaderString(REDIRECT_HEADER_URL);
+        String method = httpServletRequest.getMethod();
+        InputStream request = null;
+        // the request body is hashed while it is streamed, the recording key is complete when the response is written
+        MessageDigest bodyDigest = DigestUtil.newSha256();
+        if (StringUtils.containsAny(method, HttpMethod.PUT, HttpMethod.PATCH, HttpMethod.POST)) {
+            try {
+                request = new DigestInputStream(httpServletRequest.getInputStream(), bodyDigest);
+            } catch (IOException e) {
+                throw new BaseException("Error during read request body...", e);
+            }
+        }
+        String path = httpServletRequest.getPathInfo();
+        String query = httpServletRequest.getQueryString();
+        setRedirectHeaders();
+        StreamingResponse response = apacheHttpClient.sendClientStream(method, redirectUrl, request,
+                httpServletRequest.getContentLengthLong(), httpServletRequest.getContentType(), redirectConfig.getRecordMaxBytes(),
+                entry -> {
+                    cacheFileHelper.putRedirectResponse(filePath, entry);
+                    recordingStore.record(RecordingStore.key(method, path, query, DigestUtil.toHex(bodyDigest.digest())), entry);
+                });
+        Response.ResponseBuilder builder = Response.ok(response, response.getMediaType());
+        if (response.getContentLength() >= 0) {
+            builder.header(HttpHeaders.CONTENT_LENGTH, response.getContentLength());
+        }
+        return builder.build();
+    }
+
+    private String readRequest(String method) throws BaseException {
+        if (requestBodyRead) {
+            return requestBody;
+        }
+        if (StringUtils.containsAny(method, HttpMethod.PUT, HttpMethod.PATCH, HttpMethod.POST)) {
+            try {
+                requestBody = new String(httpServletRequest.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new BaseException("Error during read request body...", e);
+            }
+        }
+        requestBodyRead = true;
+        return requestBody;
+    }
+
+    private Map<String, String> setRedirectHeaders() {
+        Map<String, String> map = parseRedirectHeaders(httpHeaders.getHeaderString(REDIRECT_HEADER_HEADERS), httpHeaders::getHeaderString);
+        apacheHttpClient.setAdditionalHeader(map);
+        return map;
+    }
+
+    /**
+     * Collects the headers listed in the MOCKSERVICE-REDIRECT-HEADERS header
+     *
+     * @param redirectHeaders value of the MOCKSERVICE-REDIRECT-HEADERS header, comma separated header names
+     * @param headerValue returns the value of a request header by name
+     * @return listed headers with their values, empty if no header is listed
+     */
+    public static Map<String, String> parseRedirectHeaders(String redirectHeaders, UnaryOperator<String> headerValue) {
+        HashMap<String, String> map = new HashMap<>();
+        if (StringUtils.isNotBlank(redirectHeaders)) {
+            String[] headers = redirectHeaders.split(",");
+            Arrays.stream(headers).forEach(header -> map.put(header, headerValue.apply(header)));
+        }
+        return map;
+    }
 }
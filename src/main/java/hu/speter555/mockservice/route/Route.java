@@ -0,0 +1,160 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.route;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.enterprise.inject.Vetoed;
+import javax.ws.rs.HttpMethod;
+
+/**
+ * Route of a mock file, parsed from the file name. Besides the path segments the file name may restrict the http
+ * method and the query parameters:
+ * <ul>
+ * <li>{@code rest/users/{id}.json} - {@code {id}} matches one path segment</li>
+ * <li>{@code rest/files/*.json} - a trailing {@code *} matches the rest of the path</li>
+ * <li>{@code rest/users.POST.json} - matches only POST requests</li>
+ * <li>{@code rest/search[type=user&page].json} - matches if the {@code type} query parameter is {@code user} and the
+ * {@code page} parameter is present</li>
+ * </ul>
+ *
+ * @author speter555
+ */
+@Vetoed
+final class Route {
+
+    private static final String EXTENSION = ".json";
+
+    private static final Set<String> METHODS = Set.of(HttpMethod.DELETE, HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS,
+            HttpMethod.PATCH, HttpMethod.POST, HttpMethod.PUT);
+
+    private final String filePath;
+
+    private final String[] segments;
+
+    private final String method;
+
+    private final Map<String, String> query;
+
+    private final boolean wildcard;
+
+    private Route(String filePath, String[] segments, String method, Map<String, String> query, boolean wildcard) {
+        this.filePath = filePath;
+        this.segments = segments;
+        this.method = method;
+        this.query = query;
+        this.wildcard = wildcard;
+    }
+
+    /**
+     * Parses the route of the mock file
+     *
+     * @param filePath mock file path like {@code rest/users/{id}.GET.json}
+     * @return route of the file
+     */
+    static Route parse(String filePath) {
+        String name = filePath.endsWith(EXTENSION) ? filePath.substring(0, filePath.length() - EXTENSION.length()) : filePath;
+        String method = null;
+        int dot = name.lastIndexOf('.');
+        if (dot > name.lastIndexOf('/') && METHODS.contains(name.substring(dot + 1))) {
+            method = name.substring(dot + 1);
+            name = name.substring(0, dot);
+        }
+        Map<String, String> query = Map.of();
+        int bracket = name.lastIndexOf('[');
+        if (name.endsWith("]") && bracket > name.lastIndexOf('/')) {
+            query = parseQuery(name.substring(bracket + 1, name.length() - 1));
+            name = name.substring(0, bracket);
+        }
+        String[] segments = name.split("/");
+        boolean wildcard = "*".equals(segments[segments.length - 1]);
+        return new Route(filePath, segments, method, query, wildcard);
+    }
+
+    /**
+     * Parses query parameters like {@code a=1&b}, a parameter without value is null
+     *
+     * @param query query string, not decoded
+     * @return parameters by name, the first value of repeated parameters
+     */
+    static Map<String, String> parseQuery(String query) {
+        if (query == null || query.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, String> parameters = new HashMap<>();
+        for (String parameter : query.split("&")) {
+            if (parameter.isEmpty()) {
+                continue;
+            }
+            int equals = parameter.indexOf('=');
+            String key = decode(equals < 0 ? parameter : parameter.substring(0, equals));
+            String value = equals < 0 ? null : decode(parameter.substring(equals + 1));
+            parameters.putIfAbsent(key, value);
+        }
+        return parameters;
+    }
+
+    /**
+     * @param requestMethod http method of the request
+     * @param requestQuery query parameters of the request
+     * @return true if the method and query predicates of the route hold
+     */
+    boolean accepts(String requestMethod, Map<String, String> requestQuery) {
+        if (method != null && !method.equals(requestMethod)) {
+            return false;
+        }
+        for (Map.Entry<String, String> predicate : query.entrySet()) {
+            if (!requestQuery.containsKey(predicate.getKey())) {
+                return false;
+            }
+            if (predicate.getValue() != null && !predicate.getValue().equals(requestQuery.get(predicate.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return specificity of the route among the routes of the same path, the more specific route is tried first
+     */
+    int specificity() {
+        return (method != null ? 1000 : 0) + query.size();
+    }
+
+    String getFilePath() {
+        return filePath;
+    }
+
+    String[] getSegments() {
+        return segments;
+    }
+
+    boolean isWildcard() {
+        return wildcard;
+    }
+
+    private static String decode(String value) {
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,61 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.route;
+
+import java.util.Map;
+
+import javax.enterprise.inject.Vetoed;
+
+/**
+ * Mock file of a request, resolved by the {@link RouteTable}
+ *
+ * @author speter555
+ */
+@Vetoed
+public final class RouteMatch {
+
+    /**
+     * Name of the parameter holding the path matched by a trailing {@code *}
+     */
+    public static final String WILDCARD = "*";
+
+    private final String filePath;
+
+    private final Map<String, String> parameters;
+
+    RouteMatch(String filePath, Map<String, String> parameters) {
+        this.filePath = filePath;
+        this.parameters = parameters;
+    }
+
+    /**
+     * @return mock file path like {@code rest/users/{id}.json}
+     */
+    public String getFilePath() {
+        return filePath;
+    }
+
+    /**
+     * @return path parameters by name, the rest of the path matched by a trailing {@code *} by {@link #WILDCARD}
+     */
+    public Map<String, String> getParameters() {
+        return parameters;
+    }
+}
@@ -0,0 +1,148 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.route;
+
+import java.text.MessageFormat;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.Initialized;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+
+import hu.icellmobilsoft.coffee.dto.exception.BaseException;
+import hu.speter555.mockservice.config.ConfigKey;
+import hu.speter555.mockservice.resource.MockDirectory;
+import hu.speter555.mockservice.resource.MockResourceScanner;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Route table of the mock files. The mock files of the configured classpath roots and of the mock directory are
+ * compiled into a {@link RouteTrie} once, so the mock file of a request is found without resource lookup. The table is
+ * recompiled when the mock directory changes.
+ *
+ * @author speter555
+ */
+@ApplicationScoped
+public class RouteTable {
+
+    private static final Logger LOG = Logger.getLogger(RouteTable.class.getName());
+
+    private static final String JSON_EXTENSION = ".json";
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.ROUTES_ENABLED, defaultValue = "false")
+    private boolean enabled;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.ROUTES_ROOTS, defaultValue = ".")
+    private String roots;
+
+    @Inject
+    private MockDirectory mockDirectory;
+
+    private volatile Set<String> resourceFiles = Set.of();
+
+    private volatile RouteTrie trie;
+
+    private volatile long directoryGeneration = -1;
+
+    /**
+     * Scans the mock files and compiles the route table on application startup, if routing is enabled
+     *
+     * @param init application scope initialization event
+     */
+    public void onStartup(@Observes @Initialized(ApplicationScoped.class) Object init) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Set<String> files = new HashSet<>();
+            for (String root : roots.split(",")) {
+                files.addAll(MockResourceScanner.scan(root, name -> name.endsWith(JSON_EXTENSION)));
+            }
+            resourceFiles = Set.copyOf(files);
+        } catch (BaseException e) {
+            LOG.log(Level.SEVERE, "Unable to scan the mock files, only the mock directory is routed", e);
+        }
+        current();
+    }
+
+    /**
+     * @return true if the mock files are resolved by the route table
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Finds the mock file of the request
+     *
+     * @param method http method of the request
+     * @param path request path without leading slash, like {@code rest/users/12}
+     * @param query query string of the request, null if none
+     * @return most specific matching route, null if no route matches
+     */
+    public RouteMatch match(String method, String path, String query) {
+        return current().match(method, path.split("/"), Route.parseQuery(query));
+    }
+
+    /**
+     * Parses the query string of a request
+     *
+     * @param query query string, not decoded, null if none
+     * @return decoded parameters by name, the first value of repeated parameters, null value of a parameter without value
+     */
+    public static Map<String, String> parseQuery(String query) {
+        return Route.parseQuery(query);
+    }
+
+    /**
+     * @return number of routes
+     */
+    public int size() {
+        return current().size();
+    }
+
+    private RouteTrie current() {
+        long generation = mockDirectory.getGeneration();
+        RouteTrie current = trie;
+        if (current != null && generation == directoryGeneration) {
+            return current;
+        }
+        synchronized (this) {
+            if (trie == null || generation != directoryGeneration) {
+                long start = System.nanoTime();
+                Set<String> files = new HashSet<>(resourceFiles);
+                mockDirectory.getFiles().stream().filter(name -> name.endsWith(JSON_EXTENSION)).forEach(files::add);
+                trie = RouteTrie.compile(files);
+                directoryGeneration = generation;
+                LOG.info(MessageFormat.format("Route table compiled in [{0}] ms: [{1}] routes",
+                        String.valueOf(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)), String.valueOf(files.size())));
+            }
+            return trie;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.route;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.enterprise.inject.Vetoed;
+
+/**
+ * Immutable trie of the mock file routes. The lookup walks the request path segment by segment, a literal segment is
+ * preferred to a {@code {param}} segment, which is preferred to a trailing {@code *}. The cost of a lookup depends on
+ * the path length, not on the number of routes.
+ *
+ * @author speter555
+ */
+@Vetoed
+final class RouteTrie {
+
+    private static final Comparator<Route> MOST_SPECIFIC_FIRST = Comparator.comparingInt(Route::specificity).reversed()
+            .thenComparing(Route::getFilePath);
+
+    private final Node root = new Node();
+
+    private final int size;
+
+    private RouteTrie(Collection<String> filePaths) {
+        for (String filePath : filePaths) {
+            add(Route.parse(filePath));
+        }
+        root.seal();
+        size = filePaths.size();
+    }
+
+    /**
+     * Compiles the routes of the mock files
+     *
+     * @param filePaths mock file paths
+     * @return compiled trie
+     */
+    static RouteTrie compile(Collection<String> filePaths) {
+        return new RouteTrie(filePaths);
+    }
+
+    /**
+     * Finds the most specific route of the request
+     *
+     * @param method http method of the request
+     * @param path request path segments
+     * @param query query parameters of the request
+     * @return matching route with the path parameters, null if no route matches
+     */
+    RouteMatch match(String method, String[] path, Map<String, String> query) {
+        return match(root, path, 0, method, query);
+    }
+
+    /**
+     * @return number of routes
+     */
+    int size() {
+        return size;
+    }
+
+    private void add(Route route) {
+        Node node = root;
+        String[] segments = route.getSegments();
+        int length = route.isWildcard() ? segments.length - 1 : segments.length;
+        for (int i = 0; i < length; i++) {
+            String segment = segments[i];
+            if (isParameter(segment)) {
+                if (node.parameter == null) {
+                    node.parameter = new Node();
+                }
+                node = node.parameter;
+            } else {
+                node = node.literals.computeIfAbsent(segment, key -> new Node());
+            }
+        }
+        (route.isWildcard() ? node.wildcardRoutes : node.routes).add(route);
+    }
+
+    private static RouteMatch match(Node node, String[] path, int index, String method, Map<String, String> query) {
+        if (index == path.length) {
+            Route route = select(node.routes, method, query);
+            if (route != null) {
+                return toMatch(route, path);
+            }
+        } else {
+            Node literal = node.literals.get(path[index]);
+            if (literal != null) {
+                RouteMatch match = match(literal, path, index + 1, method, query);
+                if (match != null) {
+                    return match;
+                }
+            }
+            if (node.parameter != null) {
+                RouteMatch match = match(node.parameter, path, index + 1, method, query);
+                if (match != null) {
+                    return match;
+                }
+            }
+            Route route = select(node.wildcardRoutes, method, query);
+            if (route != null) {
+                return toMatch(route, path);
+            }
+        }
+        return null;
+    }
+
+    private static Route select(List<Route> routes, String method, Map<String, String> query) {
+        for (Route route : routes) {
+            if (route.accepts(method, query)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    private static RouteMatch toMatch(Route route, String[] path) {
+        String[] segments = route.getSegments();
+        Map<String, String> parameters = new HashMap<>();
+        int length = route.isWildcard() ? segments.length - 1 : segments.length;
+        for (int i = 0; i < length; i++) {
+            if (isParameter(segments[i]) && segments[i].length() > 2) {
+                parameters.put(segments[i].substring(1, segments[i].length() - 1), path[i]);
+            }
+        }
+        if (route.isWildcard()) {
+            parameters.put(RouteMatch.WILDCARD, String.join("/", List.of(path).subList(length, path.length)));
+        }
+        return new RouteMatch(route.getFilePath(), parameters);
+    }
+
+    private static boolean isParameter(String segment) {
+        return segment.startsWith("{") && segment.endsWith("}") || "*".equals(segment);
+    }
+
+    private static final class Node {
+
+        private Map<String, Node> literals = new HashMap<>();
+
+        private Node parameter;
+
+        private List<Route> routes = new ArrayList<>();
+
+        private List<Route> wildcardRoutes = new ArrayList<>();
+
+        private void seal() {
+            routes.sort(MOST_SPECIFIC_FIRST);
+            wildcardRoutes.sort(MOST_SPECIFIC_FIRST);
+            routes = List.copyOf(routes);
+            wildcardRoutes = List.copyOf(wildcardRoutes);
+            literals.values().forEach(Node::seal);
+            literals = Map.copyOf(literals);
+            if (parameter != null) {
+                parameter.seal();
+            }
+        }
+    }
+}
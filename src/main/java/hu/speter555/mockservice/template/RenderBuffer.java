@@ -0,0 +1,170 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.template;
+
+import java.util.Arrays;
+
+import javax.enterprise.inject.Vetoed;
+
+import hu.speter555.mockservice.util.JsonFields;
+
+/**
+ * Growable UTF-8 byte buffer of the template rendering. The values are encoded and escaped directly into the buffer,
+ * without intermediate strings, and the buffer is reused by the renders of the same thread.
+ *
+ * @author speter555
+ */
+@Vetoed
+final class RenderBuffer {
+
+    private byte[] bytes = new byte[1024];
+
+    private int size;
+
+    void reset() {
+        size = 0;
+    }
+
+    int capacity() {
+        return bytes.length;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(bytes, size);
+    }
+
+    void append(byte[] literal) {
+        ensure(literal.length);
+        System.arraycopy(literal, 0, bytes, size, literal.length);
+        size += literal.length;
+    }
+
+    void append(long value) {
+        // a long has at most 20 characters
+        ensure(20);
+        if (value == Long.MIN_VALUE) {
+            append(Long.toString(value), Escaping.NONE);
+            return;
+        }
+        long remaining = value;
+        if (remaining < 0) {
+            bytes[size++] = '-';
+            remaining = -remaining;
+        }
+        int start = size;
+        do {
+            bytes[size++] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining > 0);
+        for (int i = start, j = size - 1; i < j; i++, j--) {
+            byte swapped = bytes[i];
+            bytes[i] = bytes[j];
+            bytes[j] = swapped;
+        }
+    }
+
+    void append(CharSequence value, Escaping escaping) {
+        if (value == null) {
+            return;
+        }
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                appendAscii(c, escaping);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                appendCodePoint(Character.toCodePoint(c, value.charAt(++i)));
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogate, like the String encoder does
+                appendAscii('?', escaping);
+            } else {
+                appendCodePoint(c);
+            }
+        }
+    }
+
+    private void appendAscii(char c, Escaping escaping) {
+        switch (escaping) {
+            case JSON:
+                String escaped = JsonFields.escape(c);
+                if (escaped != null) {
+                    append(escaped, Escaping.NONE);
+                    return;
+                }
+                break;
+            case XML:
+                String entity = xmlEntity(c);
+                if (entity != null) {
+                    append(entity, Escaping.NONE);
+                    return;
+                }
+                break;
+            default:
+                break;
+        }
+        ensure(1);
+        bytes[size++] = (byte) c;
+    }
+
+    private static String xmlEntity(char c) {
+        switch (c) {
+            case '&':
+                return "&amp;";
+            case '<':
+                return "&lt;";
+            case '>':
+                return "&gt;";
+            case '"':
+                return "&quot;";
+            case '\'':
+                return "&apos;";
+            default:
+                return null;
+        }
+    }
+
+    private void appendCodePoint(int codePoint) {
+        ensure(4);
+        if (codePoint < 0x800) {
+            bytes[size++] = (byte) (0xC0 | (codePoint >> 6));
+        } else if (codePoint < 0x10000) {
+            bytes[size++] = (byte) (0xE0 | (codePoint >> 12));
+            bytes[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        } else {
+            bytes[size++] = (byte) (0xF0 | (codePoint >> 18));
+            bytes[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+            bytes[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        }
+        bytes[size++] = (byte) (0x80 | (codePoint & 0x3F));
+    }
+
+    private void ensure(int additional) {
+        if (size + additional > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + additional));
+        }
+    }
+
+    /**
+     * Escaping of the placeholder values by the media type of the template
+     */
+    enum Escaping {
+        NONE, JSON, XML
+    }
+}
@@ -0,0 +1,281 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.template;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import javax.enterprise.inject.Vetoed;
+
+import hu.speter555.mockservice.util.JsonFields;
+
+/**
+ * Mock file with request-derived placeholders, compiled once into a segment list. Rendering appends the pre-encoded
+ * literals and the resolved values into a reused per-thread buffer, there is no parsing, regex or reflection per
+ * request. The placeholders are:
+ * <ul>
+ * <li>{@code {{path.id}}}: path parameter of the route</li>
+ * <li>{@code {{query.page}}}: query parameter</li>
+ * <li>{@code {{header.X-Request-Id}}}: request header</li>
+ * <li>{@code {{body.user.addresses.0.city}}}: field of the JSON request body</li>
+ * <li>{@code {{now()}}}, {@code {{now(millis)}}}, {@code {{now(yyyy-MM-dd)}}}: current time as ISO-8601 instant, epoch
+ * milliseconds or by the pattern in UTC</li>
+ * <li>{@code {{seq()}}}, {@code {{seq(orders)}}}: counter of the mock file, or named counter shared by the files. The
+ * counters are owned by the caller, they are not restarted when the file is compiled again</li>
+ * </ul>
+ * Missing values are rendered empty. The values are escaped by the media type: a placeholder between quotes of a JSON
+ * template is a JSON string, a body field elsewhere is inserted as JSON value (e.g. a whole object), the values of
+ * XML templates are escaped as XML text. Unknown expressions are kept as text.
+ *
+ * @author speter555
+ */
+@Vetoed
+public final class ResponseTemplate {
+
+    private static final String OPEN = "{{";
+
+    private static final String CLOSE = "}}";
+
+    private static final String PATH = "path.";
+
+    private static final String QUERY = "query.";
+
+    private static final String HEADER = "header.";
+
+    private static final String BODY = "body.";
+
+    private static final String NOW = "now";
+
+    private static final String SEQ = "seq";
+
+    private static final String MILLIS = "millis";
+
+    private static final int SEGMENT_OVERHEAD = 32;
+
+    // a buffer grown by a huge render is not kept by the thread
+    private static final int MAX_RETAINED_BYTES = 1 << 20;
+
+    private static final ThreadLocal<RenderBuffer> BUFFERS = ThreadLocal.withInitial(RenderBuffer::new);
+
+    private final Segment[] segments;
+
+    private final long heapSize;
+
+    private ResponseTemplate(List<Segment> segments, long heapSize) {
+        this.segments = segments.toArray(new Segment[0]);
+        this.heapSize = heapSize;
+    }
+
+    /**
+     * Returns whether the content may have placeholders, without compiling it
+     *
+     * @param content UTF-8 encoded content of the mock file
+     * @return true if the content contains the opening of a placeholder
+     */
+    public static boolean hasPlaceholder(byte[] content) {
+        for (int i = 1; i < content.length; i++) {
+            if (content[i] == '{' && content[i - 1] == '{') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compiles the mock file
+     *
+     * @param text content of the mock file
+     * @param mediaType media type of the mock file, it selects the escaping of the values
+     * @param sequences returns the counter by name, the empty name is the counter of the mock file
+     * @return compiled template, null if the text has no placeholder
+     */
+    public static ResponseTemplate compile(String text, String mediaType, Function<String, AtomicLong> sequences) {
+        RenderBuffer.Escaping escaping = escapingOf(mediaType);
+        List<Segment> segments = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        long[] literalBytes = new long[1];
+        boolean placeholders = false;
+        int pos = 0;
+        int open = text.indexOf(OPEN);
+        while (open >= 0) {
+            int close = text.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) {
+                break;
+            }
+            // a value between quotes of a JSON template is a string, otherwise it is inserted as JSON
+            boolean quoted = open > 0 && text.charAt(open - 1) == '"' && close + CLOSE.length() < text.length()
+                    && text.charAt(close + CLOSE.length()) == '"';
+            boolean json = escaping == RenderBuffer.Escaping.JSON && !quoted;
+            Segment placeholder = placeholder(text.substring(open + OPEN.length(), close).trim(),
+                    json ? RenderBuffer.Escaping.NONE : escaping, json, sequences);
+            if (placeholder == null) {
+                // the text of an unknown expression is kept, it may contain the opening of a placeholder
+                open = text.indexOf(OPEN, open + 1);
+                continue;
+            }
+            literal.append(text, pos, open);
+            addLiteral(segments, literal, literalBytes);
+            segments.add(placeholder);
+            placeholders = true;
+            pos = close + CLOSE.length();
+            open = text.indexOf(OPEN, pos);
+        }
+        if (!placeholders) {
+            return null;
+        }
+        literal.append(text, pos, text.length());
+        addLiteral(segments, literal, literalBytes);
+        return new ResponseTemplate(segments, literalBytes[0] + (long) SEGMENT_OVERHEAD * segments.size());
+    }
+
+    /**
+     * Renders the template
+     *
+     * @param context request values of the placeholders
+     * @return rendered body, encoded in UTF-8
+     */
+    public byte[] render(TemplateContext context) {
+        RenderBuffer buffer = BUFFERS.get();
+        buffer.reset();
+        for (Segment segment : segments) {
+            segment.appendTo(buffer, context);
+        }
+        byte[] rendered = buffer.toByteArray();
+        if (buffer.capacity() > MAX_RETAINED_BYTES) {
+            BUFFERS.remove();
+        }
+        return rendered;
+    }
+
+    /**
+     * @return approximate heap size of the compiled template in bytes
+     */
+    public long getHeapSize() {
+        return heapSize;
+    }
+
+    private static void addLiteral(List<Segment> segments, StringBuilder literal, long[] literalBytes) {
+        if (literal.length() == 0) {
+            return;
+        }
+        byte[] bytes = literal.toString().getBytes(StandardCharsets.UTF_8);
+        literal.setLength(0);
+        literalBytes[0] += bytes.length;
+        segments.add((buffer, context) -> buffer.append(bytes));
+    }
+
+    private static Segment placeholder(String expression, RenderBuffer.Escaping escaping, boolean json,
+            Function<String, AtomicLong> sequences) {
+        String pathParameter = afterPrefix(expression, PATH);
+        if (pathParameter != null) {
+            return (buffer, context) -> buffer.append(context.getPathParameter(pathParameter), escaping);
+        }
+        String queryParameter = afterPrefix(expression, QUERY);
+        if (queryParameter != null) {
+            return (buffer, context) -> buffer.append(context.getQueryParameter(queryParameter), escaping);
+        }
+        String header = afterPrefix(expression, HEADER);
+        if (header != null) {
+            return (buffer, context) -> buffer.append(context.getHeader(header), escaping);
+        }
+        String field = afterPrefix(expression, BODY);
+        if (field != null) {
+            String[] path = field.split("\\.");
+            if (json) {
+                return (buffer, context) -> buffer.append(JsonFields.find(context.getBody(), path), escaping);
+            }
+            return (buffer, context) -> buffer.append(JsonFields.unquote(JsonFields.find(context.getBody(), path)), escaping);
+        }
+        String argument = argumentOf(expression, NOW);
+        if (argument != null) {
+            return now(argument, escaping);
+        }
+        argument = argumentOf(expression, SEQ);
+        if (argument != null) {
+            AtomicLong counter = sequences.apply(argument);
+            return (buffer, context) -> buffer.append(counter.incrementAndGet());
+        }
+        return null;
+    }
+
+    private static Segment now(String pattern, RenderBuffer.Escaping escaping) {
+        if (pattern.isEmpty()) {
+            return (buffer, context) -> buffer.append(DateTimeFormatter.ISO_INSTANT.format(Instant.now()), escaping);
+        }
+        if (MILLIS.equals(pattern)) {
+            return (buffer, context) -> buffer.append(System.currentTimeMillis());
+        }
+        DateTimeFormatter formatter;
+        try {
+            formatter = DateTimeFormatter.ofPattern(pattern).withZone(ZoneOffset.UTC);
+        } catch (IllegalArgumentException e) {
+            // an invalid pattern is an unknown expression
+            return null;
+        }
+        return (buffer, context) -> buffer.append(formatter.format(Instant.now()), escaping);
+    }
+
+    /**
+     * @return the rest of the expression after the prefix, null if the expression does not start with it or the rest
+     *         is empty
+     */
+    private static String afterPrefix(String expression, String prefix) {
+        return expression.startsWith(prefix) && expression.length() > prefix.length() ? expression.substring(prefix.length()) : null;
+    }
+
+    /**
+     * @return trimmed argument of a function call like {@code now(millis)}, null if the expression is not a call of
+     *         the function
+     */
+    private static String argumentOf(String expression, String function) {
+        if (!expression.startsWith(function) || !expression.endsWith(")")) {
+            return null;
+        }
+        String call = expression.substring(function.length()).trim();
+        return call.startsWith("(") ? call.substring(1, call.length() - 1).trim() : null;
+    }
+
+    private static RenderBuffer.Escaping escapingOf(String mediaType) {
+        String type = mediaType != null ? mediaType.toLowerCase(Locale.ROOT) : "";
+        if (type.contains("json")) {
+            return RenderBuffer.Escaping.JSON;
+        }
+        if (type.contains("xml")) {
+            return RenderBuffer.Escaping.XML;
+        }
+        return RenderBuffer.Escaping.NONE;
+    }
+
+    /**
+     * Literal text or placeholder of the template
+     */
+    @FunctionalInterface
+    private interface Segment {
+
+        void appendTo(RenderBuffer buffer, TemplateContext context);
+    }
+}
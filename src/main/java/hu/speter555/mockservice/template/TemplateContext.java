@@ -0,0 +1,52 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.template;
+
+/**
+ * Request values of the template placeholders. The values are looked up only by the placeholders of the rendered
+ * template, an implementation may resolve them lazily.
+ *
+ * @author speter555
+ */
+public interface TemplateContext {
+
+    /**
+     * @param name path parameter name of the route, like {@code id} of {@code rest/users/{id}.json}
+     * @return parameter value, null if missing
+     */
+    String getPathParameter(String name);
+
+    /**
+     * @param name query parameter name
+     * @return decoded first value of the parameter, null if missing
+     */
+    String getQueryParameter(String name);
+
+    /**
+     * @param name request header name
+     * @return header value, null if missing
+     */
+    String getHeader(String name);
+
+    /**
+     * @return request body, null if none
+     */
+    String getBody();
+}
@@ -0,0 +1,120 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.util;
+
+import javax.enterprise.inject.Vetoed;
+
+/**
+ * Single byte range of a {@code Range: bytes=...} request header. Multiple ranges are not supported, those requests
+ * are answered with the whole body, as the header may be ignored.
+ *
+ * @author speter555
+ */
+@Vetoed
+public final class ByteRange {
+
+    /**
+     * Range outside of the body, answered with 416
+     */
+    public static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+
+    private static final String BYTES_UNIT = "bytes=";
+
+    private final long first;
+
+    private final long last;
+
+    private ByteRange(long first, long last) {
+        this.first = first;
+        this.last = last;
+    }
+
+    /**
+     * Parses the range header
+     *
+     * @param range value of the Range header like {@code bytes=0-1023}, {@code bytes=1024-} or {@code bytes=-512}
+     * @param length length of the body
+     * @return range within the body, {@link #UNSATISFIABLE} if the range starts after the body, null if the header is
+     *         missing, invalid or has multiple ranges, so it is ignored
+     */
+    public static ByteRange parse(String range, long length) {
+        if (range == null || !range.regionMatches(true, 0, BYTES_UNIT, 0, BYTES_UNIT.length()) || range.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = range.substring(BYTES_UNIT.length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            if (dash == 0) {
+                // suffix range, the last bytes of the body
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0 || length == 0) {
+                    return UNSATISFIABLE;
+                }
+                return new ByteRange(Math.max(0, length - suffix), length - 1);
+            }
+            long first = Long.parseLong(spec.substring(0, dash));
+            // an open range lasts until the end of the body
+            long last = dash == spec.length() - 1 ? Long.MAX_VALUE : Long.parseLong(spec.substring(dash + 1));
+            if (first < 0 || last < first) {
+                return null;
+            }
+            if (first >= length) {
+                return UNSATISFIABLE;
+            }
+            return new ByteRange(first, Math.min(last, length - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return position of the first byte
+     */
+    public long getFirst() {
+        return first;
+    }
+
+    /**
+     * @return position of the last byte, inclusive
+     */
+    public long getLast() {
+        return last;
+    }
+
+    /**
+     * @return number of bytes in the range
+     */
+    public long getLength() {
+        return last - first + 1;
+    }
+
+    /**
+     * Returns the value of the Content-Range header
+     *
+     * @param length length of the body
+     * @return like {@code bytes 0-1023/4096}, or {@code bytes *}{@code /4096} if unsatisfiable
+     */
+    public String toContentRange(long length) {
+        return this == UNSATISFIABLE ? "bytes */" + length : "bytes " + first + '-' + last + '/' + length;
+    }
+}
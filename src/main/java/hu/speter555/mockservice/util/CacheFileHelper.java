@@ -21,28 +21,284 @@ package hu.speter555.mockservice.util;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import hu.icellmobilsoft.coffee.dto.exception.BaseException;
+import hu.speter555.mockservice.cache.CacheStats;
+import hu.speter555.mockservice.cache.MockCache;
+import hu.speter555.mockservice.cache.MockEntry;
+import hu.speter555.mockservice.cache.NegativeCache;
+import hu.speter555.mockservice.cache.SingleFlight;
+import hu.speter555.mockservice.config.ConfigKey;
+import hu.speter555.mockservice.exception.MockNotFoundException;
+import hu.speter555.mockservice.metrics.MetricsRegistry;
+import hu.speter555.mockservice.resource.MockDirectory;
+import hu.speter555.mockservice.template.ResponseTemplate;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 /**
- * File cache in Map
+ * File cache, bounded by entry count and size. The loaded mock files with placeholders are compiled into templates.
+ * <p>
+ * The last redirect response of a mock file path is cached as well, under a key of its own, so a cached mock file is
+ * never mistaken for a redirect response.
  *
  * @author speter555
  */
 @ApplicationScoped
 public class CacheFileHelper {
 
-    private Map<String, String> cache = new HashMap<>();
+    // file paths never contain a NUL character
+    private static final String REDIRECT_KEY_PREFIX = "\0redirect\0";
+
+    // the unnamed counter of a file survives its recompilation, and is kept apart from the named counters
+    private static final String FILE_SEQUENCE_PREFIX = "\0file\0";
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.CACHE_MAX_ENTRIES, defaultValue = "10000")
+    private long maxEntries;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.CACHE_MAX_BYTES, defaultValue = "268435456")
+    private long maxBytes;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.NEGATIVE_CACHE_MAX_ENTRIES, defaultValue = "10000")
+    private int negativeMaxEntries;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.NEGATIVE_CACHE_TTL_MILLIS, defaultValue = "60000")
+    private long negativeTtlMillis;
+
+    @Inject
+    @ConfigProperty(name = ConfigKey.TEMPLATES_ENABLED, defaultValue = "true")
+    private boolean templatesEnabled;
+
+    @Inject
+    private MockDirectory mockDirectory;
+
+    @Inject
+    private MetricsRegistry metricsRegistry;
+
+    private MockCache<String, MockEntry> cache;
+
+    private NegativeCache<String> negativeCache;
+
+    private final LongAdder resourceLookupCount = new LongAdder();
+
+    private final LongAdder notFoundCount = new LongAdder();
+
+    private final SingleFlight<String, MockEntry> resourceLoads = new SingleFlight<>();
+
+    private volatile Map<String, MockEntry> index = Map.of();
+
+    private final Map<String, AtomicLong> sequences = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the cache by the configured limits
+     */
+    @PostConstruct
+    public void init() {
+        cache = new MockCache<>(maxEntries, maxBytes, MockEntry::getHeapSize, key -> metricsRegistry.recordCacheEviction(filePathOf(key)));
+        negativeCache = new NegativeCache<>(negativeMaxEntries, negativeTtlMillis);
+    }
+
+    /**
+     * Returns the last redirect response of the mock file path. Only the hit is counted, a missing response is not a
+     * cache miss.
+     *
+     * @param filePath mock file path of the request path
+     * @return last redirect response, null if there is none
+     */
+    public MockEntry getRedirectResponse(String filePath) {
+        MockEntry response = cache.getIfPresent(redirectKey(filePath));
+        if (response != null) {
+            metricsRegistry.recordCacheHit(filePath);
+        }
+        return response;
+    }
+
+    /**
+     * Caches the redirect response of the mock file path, it is served instead of the mock files of the path
+     *
+     * @param filePath mock file path of the request path
+     * @param response redirect response
+     */
+    public void putRedirectResponse(String filePath, MockEntry response) {
+        // the validators are computed when the entry is cached, not by the conditional requests
+        response.getETag();
+        cache.put(redirectKey(filePath), response);
+    }
+
+    /**
+     * Returns whether the file can be served without loading it
+     *
+     * @param filePath file path
+     * @return true if the file is cached or preloaded
+     */
+    public boolean isLoaded(String filePath) {
+        return cache.containsKey(filePath) || index.containsKey(filePath);
+    }
+
+    /**
+     * Returns the cached resource file, or loads it from the classpath and caches it
+     *
+     * @param filePath resource file path
+     * @return pre-encoded file content
+     * @throws MockNotFoundException if the file does not exist, known-missing files are answered without lookup
+     * @throws BaseException if the file is unreadable
+     */
+    public MockEntry getOrLoadResource(String filePath) throws BaseException {
+        resourceLookupCount.increment();
+        MockEntry indexed = index.get(filePath);
+        // the mock directory overrides the preloaded file
+        if (indexed != null && !mockDirectory.contains(filePath)) {
+            metricsRegistry.recordCacheHit(filePath);
+            return indexed;
+        }
+        if (negativeCache.isMissing(filePath)) {
+            notFoundCount.increment();
+            throw new MockNotFoundException(filePath);
+        }
+        MockEntry cached = cache.getIfPresent(filePath);
+        if (cached != null) {
+            metricsRegistry.recordCacheHit(filePath);
+            return cached;
+        }
+        metricsRegistry.recordCacheMiss(filePath);
+        try {
+            // concurrent misses of the same file share one load, and its failure as well
+            return resourceLoads.execute(filePath, this::loadAndCacheResource);
+        } catch (MockNotFoundException e) {
+            notFoundCount.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * Replaces the index of the preloaded resource files. The indexed files are not limited by the cache size.
+     *
+     * @param index preloaded files by file path
+     */
+    public void setIndex(Map<String, MockEntry> index) {
+        Map<String, MockEntry> compiled = new HashMap<>(index);
+        compiled.replaceAll(this::compile);
+        this.index = Map.copyOf(compiled);
+    }
+
+    /**
+     * @return number of resource lookups
+     */
+    public long getResourceLookupCount() {
+        return resourceLookupCount.sum();
+    }
+
+    /**
+     * @return number of resource lookups of missing files
+     */
+    public long getNotFoundCount() {
+        return notFoundCount.sum();
+    }
+
+    /**
+     * @return number of missing file lookups answered by the negative cache
+     */
+    public long getNegativeCacheHitCount() {
+        return negativeCache.getHitCount();
+    }
+
+    /**
+     * @return ratio of the missing file lookups and all resource lookups, between 0 and 1
+     */
+    public double getNotFoundRate() {
+        long lookups = resourceLookupCount.sum();
+        return lookups == 0 ? 0.0 : (double) notFoundCount.sum() / lookups;
+    }
+
+    /**
+     * @return number of resource lookups which shared the in-flight load of another request
+     */
+    public long getCoalescedLoadCount() {
+        return resourceLoads.getSharedCount();
+    }
+
+    /**
+     * @return number of the preloaded resource files
+     */
+    public int getIndexSize() {
+        return index.size();
+    }
+
+    /**
+     * Removes the cached and the known-missing state of the file and its redirect response, e.g. because it has been
+     * changed
+     *
+     * @param filePath file path
+     */
+    public void invalidate(String filePath) {
+        cache.invalidate(filePath);
+        cache.invalidate(redirectKey(filePath));
+        negativeCache.invalidate(filePath);
+    }
+
+    private static String redirectKey(String filePath) {
+        return REDIRECT_KEY_PREFIX + filePath;
+    }
+
+    private static String filePathOf(String key) {
+        return key.startsWith(REDIRECT_KEY_PREFIX) ? key.substring(REDIRECT_KEY_PREFIX.length()) : key;
+    }
+
+    private MockEntry loadAndCacheResource(String filePath) throws BaseException {
+        try {
+            return cache.getOrLoad(filePath, this::loadResource);
+        } catch (MockNotFoundException e) {
+            negativeCache.markMissing(filePath);
+            throw e;
+        }
+    }
 
-    public boolean containsKey(String filePath) {
-        return cache.containsKey(filePath);
+    private MockEntry loadResource(String filePath) throws BaseException {
+        long start = System.nanoTime();
+        try {
+            MockEntry entry = mockDirectory.load(filePath);
+            if (entry == null) {
+                entry = MockEntry.of(FileUtil.readBytesFromResource(filePath), FileUtil.getMediaType(filePath));
+            }
+            entry.getETag();
+            return compile(filePath, entry);
+        } finally {
+            metricsRegistry.recordFileLoad(System.nanoTime() - start);
+        }
     }
 
-    public String get(String filePath) {
-        return cache.get(filePath);
+    /**
+     * Compiles the template of a text mock file, the placeholders are parsed once, not by the requests
+     *
+     * @param filePath file path, it keys the unnamed counter of the file
+     * @param entry loaded mock file
+     * @return entry with its template, or the entry itself if it has no placeholder
+     */
+    private MockEntry compile(String filePath, MockEntry entry) {
+        if (!templatesEnabled || !FileUtil.isText(entry.getMediaType())) {
+            return entry;
+        }
+        ResponseTemplate template = ResponseTemplate.compile(entry.getBodyAsString(), entry.getMediaType(),
+                name -> sequences.computeIfAbsent(name.isEmpty() ? FILE_SEQUENCE_PREFIX + filePath : name, k -> new AtomicLong()));
+        return template != null ? entry.withTemplate(template) : entry;
     }
 
-    public void put(String filePath, String response) {
-        cache.put(filePath, response);
+    /**
+     * Returns the cache hit/miss/eviction statistics
+     *
+     * @return statistics snapshot
+     */
+    public CacheStats getStats() {
+        return cache.stats();
     }
 }
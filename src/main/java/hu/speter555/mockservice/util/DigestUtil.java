@@ -0,0 +1,89 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import javax.enterprise.inject.Vetoed;
+
+/**
+ * Content hash helper
+ *
+ * @author speter555
+ */
+@Vetoed
+public final class DigestUtil {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private DigestUtil() {
+    }
+
+    /**
+     * Returns the SHA-256 hash of the content
+     *
+     * @param content hashed content
+     * @return lowercase hex hash
+     */
+    public static String sha256Hex(byte[] content) {
+        return toHex(newSha256().digest(content));
+    }
+
+    /**
+     * Returns the SHA-256 hash of the UTF-8 encoded text
+     *
+     * @param text hashed text, null is hashed as empty text
+     * @return lowercase hex hash
+     */
+    public static String sha256Hex(String text) {
+        return sha256Hex(text != null ? text.getBytes(StandardCharsets.UTF_8) : new byte[0]);
+    }
+
+    /**
+     * Creates a SHA-256 digest, for hashing content incrementally
+     *
+     * @return new digest
+     */
+    public static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform has to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Encodes the bytes as lowercase hex
+     *
+     * @param bytes encoded bytes
+     * @return hex text
+     */
+    public static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(hex);
+    }
+}
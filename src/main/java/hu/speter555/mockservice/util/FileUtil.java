@@ -19,20 +19,23 @@
  */
 package hu.speter555.mockservice.util;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.text.MessageFormat;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 import javax.enterprise.inject.Vetoed;
+import javax.ws.rs.core.MediaType;
 
 import hu.icellmobilsoft.coffee.dto.exception.BaseException;
+import hu.speter555.mockservice.exception.MockNotFoundException;
 import org.apache.commons.lang3.StringUtils;
 
 /**
@@ -45,6 +48,17 @@ public class FileUtil {
 
     private static final Logger LOG = Logger.getLogger(FileUtil.class.getName());
 
+    /**
+     * Returns whether the media type is a text format
+     *
+     * @param mediaType media type
+     * @return true for {@code text/*}, JSON and XML types
+     */
+    public static boolean isText(String mediaType) {
+        String type = mediaType.toLowerCase();
+        return type.startsWith("text/") || type.contains("json") || type.contains("xml");
+    }
+
     /**
      * Read file by java.nio (java 11+)
      *
@@ -67,21 +81,50 @@ public class FileUtil {
      * @throws BaseException if error
      */
     public static String readFileFromResource(String fileName) throws BaseException {
+        byte[] file = readBytesFromResource(fileName);
+        return file != null ? new String(file, StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * Read file content as is from ClassLoader.getSystemResourceAsStream, without decoding
+     *
+     * @param fileName filename like token.xml, in src/main/resources source
+     *                 directory
+     * @return file content
+     * @throws MockNotFoundException if the file does not exist
+     * @throws BaseException if error
+     */
+    public static byte[] readBytesFromResource(String fileName) throws BaseException {
         if (StringUtils.isBlank(fileName)) {
             return null;
         }
         try (InputStream inputStream = ClassLoader.getSystemResourceAsStream(fileName)) {
             if (inputStream != null) {
-                String file = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)).lines()
-                        .collect(Collectors.joining("\n"));
-                LOG.info(() -> MessageFormat.format("File [{0}] from resources readed!",
+                byte[] file = inputStream.readAllBytes();
+                LOG.fine(() -> MessageFormat.format("File [{0}] from resources readed!",
                         ClassLoader.getSystemResource(fileName)));
                 return file;
             }
         } catch (IOException e) {
             throw new BaseException(MessageFormat.format("Unable to read File [{0}] from resource", fileName), e);
         }
-        throw new BaseException(MessageFormat.format("Unable to find File [{0}] from resource", fileName));
+        throw new MockNotFoundException(fileName);
+    }
+
+    /**
+     * Returns the media type of the file by its extension. The mock file of a request path with extension, like
+     * {@code files/report.pdf.json}, has the media type of the request path extension.
+     *
+     * @param fileName file name
+     * @return media type, application/octet-stream if unknown
+     */
+    public static String getMediaType(String fileName) {
+        if (StringUtils.endsWith(fileName, ".json")) {
+            String pathMediaType = URLConnection.guessContentTypeFromName(StringUtils.removeEnd(fileName, ".json"));
+            return pathMediaType != null ? pathMediaType : MediaType.APPLICATION_JSON;
+        }
+        String mediaType = URLConnection.guessContentTypeFromName(fileName);
+        return mediaType != null ? mediaType : MediaType.APPLICATION_OCTET_STREAM;
     }
 
     /**
@@ -97,7 +140,7 @@ public class FileUtil {
         }
         try {
             String file = Files.readString(path);
-            LOG.info(() -> MessageFormat.format("File from path [{0}] readed!", path.toAbsolutePath()));
+            LOG.fine(() -> MessageFormat.format("File from path [{0}] readed!", path.toAbsolutePath()));
             return file;
         } catch (IOException e) {
             throw new BaseException(MessageFormat.format("Unable to read File from path: [{0}]", path.toAbsolutePath()),
@@ -105,4 +148,41 @@ public class FileUtil {
         }
     }
 
+    /**
+     * Read file content as is through FileChannel. Files not smaller than the map threshold are memory-mapped and not
+     * copied to the heap.<br>
+     * A memory-mapped file must not be truncated in place while it is served, so mapping is only safe for files which
+     * are replaced, never rewritten.
+     *
+     * @param path the path to the file
+     * @param mapThreshold minimum file size in bytes to be memory-mapped, {@link Long#MAX_VALUE} reads every file to
+     *            the heap
+     * @return file content, read-only if memory-mapped
+     * @throws BaseException if error
+     */
+    public static ByteBuffer readFileContent(Path path, long mapThreshold) throws BaseException {
+        if (path == null) {
+            throw new BaseException("path is null!");
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new BaseException(MessageFormat.format("File is too large: [{0}]", path.toAbsolutePath()));
+            }
+            if (size >= mapThreshold) {
+                // the mapping stays valid after the channel is closed
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            ByteBuffer content = ByteBuffer.allocate((int) size);
+            while (content.hasRemaining() && channel.read(content) >= 0) {
+                // read until the buffer is full or end of file
+            }
+            content.flip();
+            return content;
+        } catch (IOException e) {
+            throw new BaseException(MessageFormat.format("Unable to read File from path: [{0}]", path.toAbsolutePath()),
+                    e);
+        }
+    }
+
 }
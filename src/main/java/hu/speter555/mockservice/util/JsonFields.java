@@ -0,0 +1,347 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.enterprise.inject.Vetoed;
+
+/**
+ * Field lookup in a JSON document by a path of object keys and array indexes, without building any object model. The
+ * document is scanned until the field, the skipped values are not decoded. The JSON strings written by the service are
+ * escaped here as well.
+ *
+ * @author speter555
+ */
+@Vetoed
+public final class JsonFields {
+
+    // escape sequences of the characters up to the backslash, null if the character is written as is
+    private static final String[] ESCAPES = new String['\\' + 1];
+
+    static {
+        for (char c = 0; c < 0x20; c++) {
+            ESCAPES[c] = String.format("\\u%04x", (int) c);
+        }
+        ESCAPES['\b'] = "\\b";
+        ESCAPES['\f'] = "\\f";
+        ESCAPES['\n'] = "\\n";
+        ESCAPES['\r'] = "\\r";
+        ESCAPES['\t'] = "\\t";
+        ESCAPES['"'] = "\\\"";
+        ESCAPES['\\'] = "\\\\";
+    }
+
+    private final String json;
+
+    private int pos;
+
+    private JsonFields(String json) {
+        this.json = json;
+    }
+
+    /**
+     * Returns the value of the field
+     *
+     * @param json JSON document
+     * @param path object keys and array indexes from the root to the field, like {@code [user, addresses, 0, city]}
+     * @return JSON text of the value, like {@code "text"} or {@code {"a":1}}, null if the document is not JSON, or the
+     *         field is missing
+     */
+    public static String find(String json, String[] path) {
+        if (json == null) {
+            return null;
+        }
+        JsonFields fields = new JsonFields(json);
+        try {
+            for (String name : path) {
+                if (!fields.enter(name)) {
+                    return null;
+                }
+            }
+            return fields.value();
+        } catch (IllegalArgumentException | IllegalStateException | IndexOutOfBoundsException e) {
+            // not a JSON document, or not the expected structure
+            return null;
+        }
+    }
+
+    /**
+     * Returns the elements of a JSON array
+     *
+     * @param json JSON document with an array root
+     * @return JSON text of the elements, null if the document is not a JSON array
+     */
+    public static List<String> elements(String json) {
+        if (json == null) {
+            return null;
+        }
+        JsonFields fields = new JsonFields(json);
+        try {
+            fields.skipWhitespace();
+            fields.expect('[');
+            List<String> elements = new ArrayList<>();
+            fields.skipWhitespace();
+            if (json.charAt(fields.pos) == ']') {
+                fields.pos++;
+            } else {
+                do {
+                    elements.add(fields.value());
+                } while (fields.next(']'));
+            }
+            fields.skipWhitespace();
+            return fields.pos == json.length() ? elements : null;
+        } catch (IllegalArgumentException | IllegalStateException | IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    private boolean enter(String name) {
+        skipWhitespace();
+        char c = json.charAt(pos);
+        if (c == '{') {
+            pos++;
+            while (true) {
+                skipWhitespace();
+                if (json.charAt(pos) == '}') {
+                    return false;
+                }
+                String key = string();
+                skipWhitespace();
+                expect(':');
+                if (key.equals(name)) {
+                    return true;
+                }
+                skipValue();
+                if (!next('}')) {
+                    return false;
+                }
+            }
+        }
+        if (c == '[') {
+            int index = index(name);
+            pos++;
+            for (int i = 0; index >= 0; i++) {
+                skipWhitespace();
+                if (json.charAt(pos) == ']') {
+                    return false;
+                }
+                if (i == index) {
+                    return true;
+                }
+                skipValue();
+                if (!next(']')) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the text of a value found by {@link #find(String, String[])}
+     *
+     * @param value JSON text of a value
+     * @return decoded string of a string value, null of a null value, the JSON text of other values
+     */
+    public static String unquote(String value) {
+        if (value == null || "null".equals(value)) {
+            return null;
+        }
+        if (!value.startsWith("\"")) {
+            return value;
+        }
+        try {
+            return new JsonFields(value).string();
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            // not a complete string
+            return null;
+        }
+    }
+
+    /**
+     * Returns the escape sequence of a character in a JSON string
+     *
+     * @param c character
+     * @return escape sequence like {@code \n} or {@code \u0001}, null if the character is written as is
+     */
+    public static String escape(char c) {
+        return c < ESCAPES.length ? ESCAPES[c] : null;
+    }
+
+    /**
+     * Appends the value as a JSON string
+     *
+     * @param json JSON text
+     * @param value string value, null is appended as JSON null
+     */
+    public static void appendString(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        int length = value.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            String escaped = escape(value.charAt(i));
+            if (escaped != null) {
+                json.append(value, start, i).append(escaped);
+                start = i + 1;
+            }
+        }
+        json.append(value, start, length).append('"');
+    }
+
+    private String value() {
+        skipWhitespace();
+        int start = pos;
+        skipValue();
+        return json.substring(start, pos);
+    }
+
+    /**
+     * Skips the separator after a value
+     *
+     * @return true if another member follows, false at the end of the container
+     */
+    private boolean next(char end) {
+        skipWhitespace();
+        char c = json.charAt(pos++);
+        if (c == ',') {
+            return true;
+        }
+        if (c == end) {
+            return false;
+        }
+        throw new IllegalStateException("unexpected character");
+    }
+
+    private void skipValue() {
+        skipWhitespace();
+        char c = json.charAt(pos);
+        if (c == '"') {
+            skipString();
+            return;
+        }
+        if (c != '{' && c != '[') {
+            // number, true, false or null
+            int start = pos;
+            while (pos < json.length() && isScalarPart(json.charAt(pos))) {
+                pos++;
+            }
+            if (pos == start) {
+                throw new IllegalStateException("value expected");
+            }
+            return;
+        }
+        int depth = 0;
+        do {
+            c = json.charAt(pos);
+            if (c == '"') {
+                skipString();
+                continue;
+            }
+            if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+            }
+            pos++;
+        } while (depth > 0);
+    }
+
+    private static boolean isScalarPart(char c) {
+        return c != ',' && c != '}' && c != ']' && !Character.isWhitespace(c);
+    }
+
+    private void skipString() {
+        pos++;
+        while (true) {
+            char c = json.charAt(pos++);
+            if (c == '\\') {
+                pos++;
+            } else if (c == '"') {
+                return;
+            }
+        }
+    }
+
+    private String string() {
+        expect('"');
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            char c = json.charAt(pos++);
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            char escaped = json.charAt(pos++);
+            switch (escaped) {
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'u':
+                    value.append((char) Integer.parseInt(json.substring(pos, pos + 4), 16));
+                    pos += 4;
+                    break;
+                default:
+                    value.append(escaped);
+                    break;
+            }
+        }
+    }
+
+    private void expect(char expected) {
+        if (json.charAt(pos++) != expected) {
+            throw new IllegalStateException("expected [" + expected + "]");
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private static int index(String name) {
+        try {
+            return Integer.parseInt(name);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.text.MessageFormat;
+
+import javax.enterprise.inject.Vetoed;
+
+import hu.icellmobilsoft.coffee.dto.exception.BaseException;
+
+/**
+ * Syntax validator of UTF-8 encoded JSON documents (RFC 8259), without building any object model
+ *
+ * @author speter555
+ */
+@Vetoed
+public final class JsonValidator {
+
+    private static final int MAX_DEPTH = 512;
+
+    private final byte[] json;
+
+    private int pos;
+
+    private JsonValidator(byte[] json) {
+        this.json = json;
+    }
+
+    /**
+     * Validates the encoding and the syntax of the JSON document
+     *
+     * @param name name of the document, used in the error message
+     * @param json UTF-8 encoded JSON document
+     * @throws BaseException if the document is not valid UTF-8 or not valid JSON
+     */
+    public static void validate(String name, byte[] json) throws BaseException {
+        try {
+            StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(json));
+        } catch (CharacterCodingException e) {
+            throw new BaseException(MessageFormat.format("File [{0}] is not valid UTF-8", name), e);
+        }
+        JsonValidator validator = new JsonValidator(json);
+        try {
+            validator.skipWhitespace();
+            validator.value(0);
+            validator.skipWhitespace();
+            if (validator.pos != json.length) {
+                throw new IllegalStateException("unexpected content after the root value");
+            }
+        } catch (IllegalStateException e) {
+            throw new BaseException(MessageFormat.format("File [{0}] is not valid JSON at byte [{1}]: {2}", name,
+                    String.valueOf(validator.pos), e.getMessage()));
+        }
+    }
+
+    private void value(int depth) {
+        if (depth > MAX_DEPTH) {
+            throw new IllegalStateException("nesting too deep");
+        }
+        switch (peek()) {
+            case '{':
+                object(depth);
+                break;
+            case '[':
+                array(depth);
+                break;
+            case '"':
+                string();
+                break;
+            case 't':
+                literal("true");
+                break;
+            case 'f':
+                literal("false");
+                break;
+            case 'n':
+                literal("null");
+                break;
+            default:
+                number();
+                break;
+        }
+    }
+
+    private void object(int depth) {
+        pos++;
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            return;
+        }
+        while (true) {
+            skipWhitespace();
+            string();
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            value(depth + 1);
+            skipWhitespace();
+            if (peek() == ',') {
+                pos++;
+            } else {
+                expect('}');
+                return;
+            }
+        }
+    }
+
+    private void array(int depth) {
+        pos++;
+        skipWhitespace();
+        if (peek() == ']') {
+            pos++;
+            return;
+        }
+        while (true) {
+            skipWhitespace();
+            value(depth + 1);
+            skipWhitespace();
+            if (peek() == ',') {
+                pos++;
+            } else {
+                expect(']');
+                return;
+            }
+        }
+    }
+
+    private void string() {
+        expect('"');
+        while (true) {
+            int c = next();
+            if (c == '"') {
+                return;
+            } else if (c == '\\') {
+                int escaped = next();
+                if (escaped == 'u') {
+                    for (int i = 0; i < 4; i++) {
+                        if (Character.digit(next(), 16) < 0) {
+                            throw new IllegalStateException("invalid unicode escape");
+                        }
+                    }
+                } else if ("\"\\/bfnrt".indexOf(escaped) < 0) {
+                    throw new IllegalStateException("invalid escape character");
+                }
+            } else if (c < 0x20) {
+                throw new IllegalStateException("unescaped control character in string");
+            }
+        }
+    }
+
+    private void number() {
+        if (peek() == '-') {
+            pos++;
+        }
+        if (peek() == '0') {
+            pos++;
+        } else {
+            digits();
+        }
+        if (pos < json.length && json[pos] == '.') {
+            pos++;
+            digits();
+        }
+        if (pos < json.length && (json[pos] == 'e' || json[pos] == 'E')) {
+            pos++;
+            if (peek() == '+' || peek() == '-') {
+                pos++;
+            }
+            digits();
+        }
+    }
+
+    private void digits() {
+        if (!isDigit(peek())) {
+            throw new IllegalStateException("unexpected character");
+        }
+        while (pos < json.length && isDigit(json[pos])) {
+            pos++;
+        }
+    }
+
+    private void literal(String literal) {
+        for (int i = 0; i < literal.length(); i++) {
+            expect(literal.charAt(i));
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < json.length && (json[pos] == ' ' || json[pos] == '\t' || json[pos] == '\n' || json[pos] == '\r')) {
+            pos++;
+        }
+    }
+
+    private void expect(char c) {
+        if (next() != c) {
+            pos--;
+            throw new IllegalStateException("expected '" + c + "'");
+        }
+    }
+
+    private int peek() {
+        if (pos >= json.length) {
+            throw new IllegalStateException("unexpected end of document");
+        }
+        return json[pos] & 0xff;
+    }
+
+    private int next() {
+        int c = peek();
+        pos++;
+        return c;
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,99 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.batch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import hu.speter555.mockservice.exception.InvalidBatchException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Parsing of the batch keys and requests by {@link BatchKey}. An {@link InvalidBatchException} is answered with 400.
+ *
+ * @author speter555
+ */
+class BatchKeyTest {
+
+    private static final int MAX_KEYS = 3;
+
+    @Test
+    void keyWithMethodAndQuery() {
+        BatchKey key = BatchKey.parse(" POST /rest/users/1?type=full ");
+
+        assertEquals("POST /rest/users/1?type=full", key.getKey());
+        assertEquals("POST", key.getMethod());
+        assertEquals("rest/users/1", key.getPath());
+        assertEquals("type=full", key.getQuery());
+    }
+
+    @Test
+    void keyWithoutMethodIsGet() {
+        BatchKey key = BatchKey.parse("/rest/users");
+
+        assertEquals("GET", key.getMethod());
+        assertEquals("rest/users", key.getPath());
+        assertNull(key.getQuery());
+        assertEquals("root", BatchKey.parse("GET /").getPath());
+    }
+
+    @Test
+    void blankKeyAndUnknownMethodAreInvalid() {
+        assertNull(BatchKey.parse(null));
+        assertNull(BatchKey.parse("  "));
+        assertNull(BatchKey.parse("FETCH /rest/users"));
+    }
+
+    @Test
+    void jsonArrayRequest() throws InvalidBatchException {
+        List<BatchKey> keys = BatchKey.parseRequest("[\"GET /rest/users/1\", \"/rest/users/2\"]", false, MAX_KEYS);
+
+        assertEquals(2, keys.size());
+        assertEquals("rest/users/1", keys.get(0).getPath());
+        assertEquals("rest/users/2", keys.get(1).getPath());
+        assertEquals(0, BatchKey.parseRequest("[]", false, MAX_KEYS).size());
+    }
+
+    @Test
+    void plainTextRequest() throws InvalidBatchException {
+        List<BatchKey> keys = BatchKey.parseRequest("GET /rest/users/1\n\nPOST /rest/users\n", true, MAX_KEYS);
+
+        assertEquals(2, keys.size());
+        assertEquals("GET", keys.get(0).getMethod());
+        assertEquals("POST", keys.get(1).getMethod());
+    }
+
+    @Test
+    void malformedRequestIsRejected() {
+        assertThrows(InvalidBatchException.class, () -> BatchKey.parseRequest("{\"key\":\"/rest/users\"}", false, MAX_KEYS));
+        assertThrows(InvalidBatchException.class, () -> BatchKey.parseRequest("[\"/rest/users\"", false, MAX_KEYS));
+        assertThrows(InvalidBatchException.class, () -> BatchKey.parseRequest("FETCH /rest/users", true, MAX_KEYS));
+    }
+
+    @Test
+    void tooManyKeysAreRejected() throws InvalidBatchException {
+        assertEquals(MAX_KEYS, BatchKey.parseRequest("[\"/a\",\"/b\",\"/c\"]", false, MAX_KEYS).size());
+        assertThrows(InvalidBatchException.class, () -> BatchKey.parseRequest("[\"/a\",\"/b\",\"/c\",\"/d\"]", false, MAX_KEYS));
+        assertThrows(InvalidBatchException.class, () -> BatchKey.parseRequest("/a\n/b\n/c\n/d", true, MAX_KEYS));
+    }
+}
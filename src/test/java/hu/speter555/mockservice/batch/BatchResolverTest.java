@@ -0,0 +1,154 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.batch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import javax.ws.rs.core.MediaType;
+
+import hu.speter555.mockservice.cache.MockEntry;
+import hu.speter555.mockservice.metrics.MetricsRegistry;
+import hu.speter555.mockservice.resource.MockDirectory;
+import hu.speter555.mockservice.route.RouteTable;
+import hu.speter555.mockservice.util.CacheFileHelper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Route resolution of the batch keys by {@link BatchResolver}
+ *
+ * @author speter555
+ */
+class BatchResolverTest {
+
+    @TempDir
+    Path directory;
+
+    private final MockDirectory mockDirectory = new MockDirectory();
+
+    private final CacheFileHelper cacheFileHelper = new CacheFileHelper();
+
+    private final BatchResolver batchResolver = new BatchResolver();
+
+    @BeforeEach
+    void init() throws Exception {
+        write("rest/users.json", "{\"users\":[]}");
+        write("rest/users.POST.json", "{\"created\":true}");
+        write("rest/users/{id}.json", "{\"id\":\"{{path.id}}\"}");
+        write("rest/search.json", "{\"all\":true}");
+        write("rest/search[type=user].json", "{\"users\":true}");
+
+        set(mockDirectory, "directory", Optional.of(directory.toString()));
+        set(mockDirectory, "mapThreshold", Long.MAX_VALUE);
+        set(mockDirectory, "cacheFileHelper", cacheFileHelper);
+        mockDirectory.onStartup(null);
+
+        set(cacheFileHelper, "maxEntries", 100L);
+        set(cacheFileHelper, "maxBytes", 1024L * 1024);
+        set(cacheFileHelper, "negativeMaxEntries", 100);
+        set(cacheFileHelper, "negativeTtlMillis", 60_000L);
+        set(cacheFileHelper, "templatesEnabled", true);
+        set(cacheFileHelper, "mockDirectory", mockDirectory);
+        set(cacheFileHelper, "metricsRegistry", new MetricsRegistry());
+        cacheFileHelper.init();
+
+        RouteTable routeTable = new RouteTable();
+        set(routeTable, "enabled", true);
+        set(routeTable, "mockDirectory", mockDirectory);
+
+        set(batchResolver, "parallelism", 2);
+        set(batchResolver, "cacheFileHelper", cacheFileHelper);
+        set(batchResolver, "routeTable", routeTable);
+        batchResolver.init();
+    }
+
+    @AfterEach
+    void close() {
+        batchResolver.close();
+        mockDirectory.close();
+    }
+
+    @Test
+    void routesAreMatchedAfterTheFileOfThePathIsCached() throws Exception {
+        // the first batch loads and caches the plain files of the paths
+        assertEquals(List.of("{\"users\":[]}", "{\"all\":true}"), resolve("GET /rest/users", "GET /rest/search"));
+
+        assertEquals(List.of("{\"created\":true}", "{\"users\":true}", "{\"users\":[]}"),
+                resolve("POST /rest/users", "GET /rest/search?type=user", "GET /rest/users"));
+    }
+
+    @Test
+    void pathParametersAreRendered() throws Exception {
+        assertEquals(List.of("{\"id\":\"7\"}", "{\"id\":\"8\"}"), resolve("GET /rest/users/7", "GET /rest/users/8"));
+    }
+
+    @Test
+    void redirectResponseTakesPrecedence() throws Exception {
+        cacheFileHelper.putRedirectResponse("rest/users.json", MockEntry.of("{\"upstream\":true}", MediaType.APPLICATION_JSON));
+
+        assertEquals(List.of("{\"upstream\":true}", "{\"all\":true}"), resolve("POST /rest/users", "GET /rest/search"));
+    }
+
+    @Test
+    void unmatchedKeyIsNotFound() {
+        BatchResult result = batchResolver.resolve(List.of(BatchKey.parse("GET /rest/orders"))).get(0).join();
+
+        assertEquals(418, result.getStatus());
+    }
+
+    private List<String> resolve(String... keys) {
+        List<BatchKey> batchKeys = new ArrayList<>();
+        for (String key : keys) {
+            batchKeys.add(BatchKey.parse(key));
+        }
+        List<String> bodies = new ArrayList<>();
+        for (CompletableFuture<BatchResult> future : batchResolver.resolve(batchKeys)) {
+            BatchResult result = future.join();
+            assertEquals(200, result.getStatus(), result.getError());
+            bodies.add(result.getEntry().getBodyAsString());
+        }
+        return bodies;
+    }
+
+    private void write(String filePath, String body) throws IOException {
+        Path file = directory.resolve(filePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void set(Object bean, String name, Object value) throws ReflectiveOperationException {
+        // the settings and the beans are injected by CDI
+        Field field = bean.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(bean, value);
+    }
+}
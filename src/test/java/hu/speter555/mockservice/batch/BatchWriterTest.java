@@ -0,0 +1,110 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.batch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import javax.ws.rs.core.MediaType;
+
+import hu.speter555.mockservice.cache.MockEntry;
+import hu.speter555.mockservice.util.JsonFields;
+import org.junit.jupiter.api.Test;
+
+/**
+ * JSON array and newline delimited JSON output of {@link BatchWriter}
+ *
+ * @author speter555
+ */
+class BatchWriterTest {
+
+    private static final String PRETTY_JSON = "{\n  \"id\": 1,\r\n  \"name\": \"a\\nb\"\n}";
+
+    private static final String TEXT = "line1\nline2 \"quoted\"";
+
+    private static final byte[] BINARY = { (byte) 0x89, 'P', 'N', 'G', 0, '\n', (byte) 0xff };
+
+    @Test
+    void jsonArrayEmbedsBodiesAsTheyAre() throws IOException {
+        String output = write(false);
+
+        List<String> results = JsonFields.elements(output);
+        assertEquals(4, results.size());
+        assertEquals("{\"key\":\"GET /json\",\"status\":200,\"contentType\":\"application/json\",\"body\":" + PRETTY_JSON + "}",
+                results.get(0));
+        assertEquals(PRETTY_JSON, JsonFields.find(output, new String[] { "0", "body" }));
+    }
+
+    @Test
+    void ndjsonWritesOneResultPerLine() throws IOException {
+        String output = write(true);
+
+        String[] lines = output.split("\n", -1);
+        assertEquals(5, lines.length, output);
+        assertEquals("", lines[4]);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(lines[i].startsWith("{\"key\":") && lines[i].endsWith("}"), lines[i]);
+        }
+        // only the formatting whitespace of the body changes, the escaped line break of the string is kept
+        assertEquals("{   \"id\": 1,    \"name\": \"a\\nb\" }", JsonFields.find(lines[0], new String[] { "body" }));
+    }
+
+    @Test
+    void textBodyIsEmbeddedAsString() throws IOException {
+        String[] lines = write(true).split("\n");
+
+        assertEquals("\"line1\\nline2 \\\"quoted\\\"\"", JsonFields.find(lines[1], new String[] { "body" }));
+        assertEquals("line1\nline2 \"quoted\"", JsonFields.unquote(JsonFields.find(lines[1], new String[] { "body" })));
+    }
+
+    @Test
+    void binaryBodyIsEmbeddedAsBase64() throws IOException {
+        String[] lines = write(true).split("\n");
+
+        assertEquals("\"image/png\"", JsonFields.find(lines[2], new String[] { "contentType" }));
+        String base64 = JsonFields.unquote(JsonFields.find(lines[2], new String[] { "bodyBase64" }));
+        assertEquals(Base64.getEncoder().encodeToString(BINARY), base64);
+    }
+
+    @Test
+    void failedResultHasStatusAndError() throws IOException {
+        String[] lines = write(true).split("\n");
+
+        assertEquals("{\"key\":\"GET /missing\",\"status\":418,\"error\":\"Mock file not found\"}", lines[3]);
+    }
+
+    private static String write(boolean ndjson) throws IOException {
+        List<CompletableFuture<BatchResult>> results = List.of(
+                CompletableFuture.completedFuture(BatchResult.ok("GET /json", MockEntry.of(PRETTY_JSON, MediaType.APPLICATION_JSON))),
+                CompletableFuture.completedFuture(BatchResult.ok("GET /text", MockEntry.of(TEXT, MediaType.TEXT_PLAIN))),
+                CompletableFuture.completedFuture(BatchResult.ok("GET /logo.png", MockEntry.of(BINARY, "image/png"))),
+                CompletableFuture.supplyAsync(() -> BatchResult.failed("GET /missing", 418, "Mock file not found")));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BatchWriter.write(output, results, ndjson);
+        return output.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,239 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import hu.icellmobilsoft.coffee.dto.exception.BaseException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Eviction and weight accounting of {@link MockCache}
+ *
+ * @author speter555
+ */
+class MockCacheTest {
+
+    private static final int KEYS = 500;
+
+    private static final long MAX_ENTRIES = 100;
+
+    private static final long MAX_WEIGHT = 10_000;
+
+    private final MockCache<Integer, byte[]> cache = new MockCache<>(MAX_ENTRIES, MAX_WEIGHT, value -> value.length);
+
+    @Test
+    void evictsAboveEntryLimit() {
+        for (int key = 0; key < KEYS; key++) {
+            cache.put(key, new byte[10]);
+        }
+        assertEquals(MAX_ENTRIES, cache.size());
+        assertEquals(MAX_ENTRIES * 10, cache.weight());
+        assertEquals(KEYS - MAX_ENTRIES, cache.stats().getEvictionCount());
+    }
+
+    @Test
+    void notifiesEvictedKeys() {
+        List<Integer> evicted = new ArrayList<>();
+        MockCache<Integer, byte[]> listened = new MockCache<>(MAX_ENTRIES, MAX_WEIGHT, value -> value.length, evicted::add);
+        for (int key = 0; key < KEYS; key++) {
+            listened.put(key, new byte[10]);
+        }
+        listened.invalidate(KEYS - 1);
+
+        // the invalidated key is not an eviction
+        assertEquals(KEYS - MAX_ENTRIES, evicted.size());
+        for (Integer key : evicted) {
+            assertNull(listened.getIfPresent(key));
+        }
+    }
+
+    @Test
+    void evictsAboveWeightLimit() {
+        for (int key = 0; key < 20; key++) {
+            cache.put(key, new byte[1000]);
+        }
+        assertEquals(10, cache.size());
+        assertEquals(MAX_WEIGHT, cache.weight());
+    }
+
+    @Test
+    void keepsFrequentlyUsedEntries() {
+        cache.put(-1, new byte[10]);
+        for (int key = 0; key < KEYS; key++) {
+            cache.get(-1);
+            cache.put(key, new byte[10]);
+        }
+        assertTrue(cache.containsKey(-1), "hot entry evicted");
+    }
+
+    @Test
+    void doesNotCacheValuesHeavierThanTheLimit() throws Exception {
+        byte[] heavy = new byte[(int) MAX_WEIGHT + 1];
+        assertSame(heavy, cache.getOrLoad(1, key -> heavy));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weight());
+    }
+
+    @Test
+    void replacementUpdatesWeight() {
+        cache.put(1, new byte[100]);
+        cache.put(1, new byte[30]);
+        assertEquals(30, cache.weight());
+        cache.invalidate(1);
+        assertEquals(0, cache.weight());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void grownValueIsReweighedOnHit() {
+        MockCache<Integer, AtomicLong> growing = new MockCache<>(MAX_ENTRIES, MAX_WEIGHT, AtomicLong::get);
+        AtomicLong value = new AtomicLong(100);
+        growing.put(1, value);
+        growing.put(2, new AtomicLong(100));
+        // like a compressed variant built after the entry has been cached
+        value.set(MAX_WEIGHT - 50);
+        growing.get(1);
+        assertTrue(growing.weight() <= MAX_WEIGHT, "weight limit exceeded: " + growing.weight());
+        assertEquals(1, growing.size());
+    }
+
+    @Test
+    void invalidationDuringLoadIsNotCached() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch invalidated = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<byte[]> load = executor.submit(() -> cache.getOrLoad(1, key -> {
+                loading.countDown();
+                await(invalidated);
+                return new byte[10];
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            // the load runs outside of the map, it does not block the invalidation and the other keys
+            cache.invalidate(1);
+            cache.put(2, new byte[10]);
+            invalidated.countDown();
+            assertEquals(10, load.get(5, TimeUnit.SECONDS).length);
+            assertNull(cache.get(1), "outdated value cached");
+            assertEquals(10, cache.weight());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void invalidationOfOtherKeyDuringLoadIsCached() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch invalidated = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<byte[]> load = executor.submit(() -> cache.getOrLoad(1, key -> {
+                loading.countDown();
+                await(invalidated);
+                return new byte[10];
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            cache.invalidate(2);
+            invalidated.countDown();
+            byte[] loaded = load.get(5, TimeUnit.SECONDS);
+            assertSame(loaded, cache.getIfPresent(1), "value dropped by the invalidation of another key");
+            assertEquals(10, cache.weight());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void failedLoadIsNotCached() throws BaseException {
+        assertThrows(BaseException.class, () -> cache.getOrLoad(1, key -> {
+            throw new BaseException("load failed");
+        }));
+        assertNull(cache.getOrLoad(1, key -> null));
+        byte[] loaded = cache.getOrLoad(1, key -> new byte[10]);
+        assertSame(loaded, cache.getIfPresent(1));
+    }
+
+    @Test
+    void concurrentAccessKeepsLimitsAndWeight() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                futures.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 50_000; i++) {
+                        int key = random.nextInt(KEYS);
+                        int operation = random.nextInt(10);
+                        if (operation < 6) {
+                            cache.getOrLoad(key, k -> new byte[1 + k % 200]);
+                        } else if (operation < 9) {
+                            cache.put(key, new byte[random.nextInt(300)]);
+                        } else {
+                            cache.invalidate(key);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        long cachedWeight = 0;
+        long cachedEntries = 0;
+        for (int key = 0; key < KEYS; key++) {
+            byte[] value = cache.getIfPresent(key);
+            if (value != null) {
+                cachedWeight += value.length;
+                cachedEntries++;
+            }
+        }
+        assertEquals(cachedEntries, cache.size());
+        assertEquals(cachedWeight, cache.weight(), "weight out of sync with the cached values");
+        assertTrue(cache.size() <= MAX_ENTRIES, "entry limit exceeded: " + cache.size());
+        assertTrue(cache.weight() <= MAX_WEIGHT, "weight limit exceeded: " + cache.weight());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
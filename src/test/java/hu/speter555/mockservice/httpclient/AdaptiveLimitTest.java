@@ -0,0 +1,122 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.httpclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Slots and AIMD adaptation of {@link AdaptiveLimit}.
+ *
+ * @author speter555
+ */
+class AdaptiveLimitTest {
+
+    private static final long THRESHOLD = TimeUnit.SECONDS.toNanos(1);
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void rejectsAboveLimitWithoutWaiting() throws InterruptedException {
+        AdaptiveLimit limit = new AdaptiveLimit(2, 10, 0, THRESHOLD);
+
+        assertTrue(limit.acquire(0));
+        assertTrue(limit.acquire(0));
+        assertFalse(limit.acquire(0));
+        assertFalse(limit.acquire(TimeUnit.MILLISECONDS.toNanos(10)));
+        assertEquals(2, limit.getInFlight());
+
+        limit.cancel();
+        assertEquals(1, limit.getInFlight());
+        assertTrue(limit.acquire(0));
+    }
+
+    @Test
+    void waitingCallTimesOut() throws InterruptedException {
+        AdaptiveLimit limit = new AdaptiveLimit(1, 10, 1, THRESHOLD);
+
+        assertTrue(limit.acquire(0));
+        assertFalse(limit.acquire(TimeUnit.MILLISECONDS.toNanos(10)));
+        assertEquals(1, limit.getInFlight());
+    }
+
+    @Test
+    void waitingCallGetsReleasedSlot() throws InterruptedException {
+        AdaptiveLimit limit = new AdaptiveLimit(1, 10, 1, THRESHOLD);
+        assertTrue(limit.acquire(0));
+
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            limit.release(FAST, false);
+        });
+        releaser.start();
+
+        assertTrue(limit.acquire(TimeUnit.SECONDS.toNanos(10)));
+        releaser.join();
+        assertEquals(1, limit.getInFlight());
+    }
+
+    @Test
+    void saturatedFastCallsRaiseLimit() throws InterruptedException {
+        AdaptiveLimit limit = new AdaptiveLimit(2, 3, 0, THRESHOLD);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limit.acquire(0));
+            limit.release(FAST, false);
+        }
+        assertEquals(3, limit.getLimit());
+        assertEquals(0, limit.getInFlight());
+    }
+
+    @Test
+    void idleLimitIsNotRaised() throws InterruptedException {
+        AdaptiveLimit limit = new AdaptiveLimit(4, 10, 0, THRESHOLD);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limit.acquire(0));
+            limit.release(FAST, false);
+        }
+        assertEquals(4, limit.getLimit());
+    }
+
+    @Test
+    void slowOrFailedCallsLowerLimit() throws InterruptedException {
+        AdaptiveLimit limit = new AdaptiveLimit(10, 10, 0, THRESHOLD);
+
+        assertTrue(limit.acquire(0));
+        limit.release(2 * THRESHOLD, false);
+        assertEquals(9, limit.getLimit());
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limit.acquire(0));
+            limit.release(FAST, true);
+        }
+        assertEquals(1, limit.getLimit());
+    }
+}
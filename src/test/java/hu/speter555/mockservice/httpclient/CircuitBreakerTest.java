@@ -0,0 +1,134 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.httpclient;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * State changes of {@link CircuitBreaker}, and the outcomes of calls permitted in an earlier state.
+ *
+ * @author speter555
+ */
+class CircuitBreakerTest {
+
+    private static final int THRESHOLD = 2;
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        CircuitBreaker circuit = new CircuitBreaker(THRESHOLD, TimeUnit.MINUTES.toNanos(1));
+
+        circuit.release(circuit.tryAcquire(), true);
+        circuit.release(circuit.tryAcquire(), false);
+        circuit.release(circuit.tryAcquire(), true);
+        assertFalse(circuit.isOpen());
+
+        circuit.release(circuit.tryAcquire(), true);
+        assertTrue(circuit.isOpen());
+        assertNull(circuit.tryAcquire());
+    }
+
+    @Test
+    void trialCallClosesOrReopens() {
+        CircuitBreaker circuit = open(new CircuitBreaker(THRESHOLD, 0));
+
+        CircuitBreaker.Permit trial = circuit.tryAcquire();
+        assertNotNull(trial);
+        assertNull(circuit.tryAcquire());
+        circuit.release(trial, true);
+        assertTrue(circuit.isOpen());
+
+        trial = circuit.tryAcquire();
+        circuit.release(trial, false);
+        assertFalse(circuit.isOpen());
+        assertNotNull(circuit.tryAcquire());
+        assertNotNull(circuit.tryAcquire());
+    }
+
+    @Test
+    void cancelledTrialAllowsNewTrial() {
+        CircuitBreaker circuit = open(new CircuitBreaker(THRESHOLD, 0));
+
+        CircuitBreaker.Permit trial = circuit.tryAcquire();
+        circuit.cancel(trial);
+        CircuitBreaker.Permit next = circuit.tryAcquire();
+        assertNotNull(next);
+
+        // the first trial is not the trial in flight anymore
+        circuit.cancel(trial);
+        assertNull(circuit.tryAcquire());
+        circuit.release(trial, false);
+        assertNull(circuit.tryAcquire());
+
+        circuit.release(next, false);
+        assertFalse(circuit.isOpen());
+    }
+
+    @Test
+    void lateOutcomeOfClosedCallIsIgnored() {
+        CircuitBreaker circuit = new CircuitBreaker(THRESHOLD, 0);
+        CircuitBreaker.Permit slowSuccess = circuit.tryAcquire();
+        CircuitBreaker.Permit slowFailure = circuit.tryAcquire();
+        CircuitBreaker.Permit slowCancel = circuit.tryAcquire();
+        open(circuit);
+
+        CircuitBreaker.Permit trial = circuit.tryAcquire();
+        assertNotNull(trial);
+
+        // neither closes nor reopens the circuit, and the trial stays in flight
+        circuit.release(slowSuccess, false);
+        circuit.release(slowFailure, true);
+        circuit.cancel(slowCancel);
+        assertNull(circuit.tryAcquire());
+
+        circuit.release(trial, false);
+        assertFalse(circuit.isOpen());
+    }
+
+    @Test
+    void failuresBeforeClosingAreNotCounted() {
+        CircuitBreaker circuit = open(new CircuitBreaker(THRESHOLD, 0));
+        CircuitBreaker.Permit trial = circuit.tryAcquire();
+        circuit.release(trial, false);
+
+        CircuitBreaker.Permit call = circuit.tryAcquire();
+        circuit.release(call, true);
+        // the late outcome of the trial call belongs to the previous generation
+        circuit.release(trial, true);
+        assertFalse(circuit.isOpen());
+
+        circuit.release(circuit.tryAcquire(), true);
+        assertTrue(circuit.isOpen());
+    }
+
+    private static CircuitBreaker open(CircuitBreaker circuit) {
+        for (int i = 0; i < THRESHOLD; i++) {
+            circuit.release(circuit.tryAcquire(), true);
+        }
+        assertTrue(circuit.isOpen());
+        return circuit;
+    }
+}
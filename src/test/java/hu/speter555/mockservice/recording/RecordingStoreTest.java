@@ -0,0 +1,176 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.recording;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.ws.rs.core.MediaType;
+
+import hu.icellmobilsoft.coffee.dto.exception.BaseException;
+import hu.speter555.mockservice.cache.MockEntry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Recovery and compaction of {@link RecordingStore}
+ *
+ * @author speter555
+ */
+class RecordingStoreTest {
+
+    private static final long SEGMENT_MAX_BYTES = 1024;
+
+    @TempDir
+    Path directory;
+
+    private RecordingStore store;
+
+    @AfterEach
+    void close() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    @Test
+    void recordsSurviveRestart() throws Exception {
+        record("GET /a", "{\"a\":1}");
+        record("GET /b", "{\"b\":1}");
+        record("GET /a", "{\"a\":2}");
+
+        open(RecordingMode.REPLAY);
+        assertEquals(2, store.size());
+        assertEquals("{\"a\":2}", store.get("GET /a").getBodyAsString());
+        assertEquals("{\"b\":1}", store.get("GET /b").getBodyAsString());
+        assertNull(store.get("GET /c"));
+    }
+
+    @Test
+    void tornTailIsTruncatedOnRecovery() throws Exception {
+        record("GET /a", "{\"a\":1}");
+        long intact = Files.size(lastSegment());
+        record("GET /b", "{\"b\":1}");
+        try (FileChannel channel = FileChannel.open(lastSegment(), StandardOpenOption.WRITE)) {
+            // the crash interrupted the write of the last record
+            channel.truncate(channel.size() - 3);
+        }
+
+        open(RecordingMode.REPLAY);
+        assertEquals(1, store.size());
+        assertEquals("{\"a\":1}", store.get("GET /a").getBodyAsString());
+        assertNull(store.get("GET /b"));
+        assertEquals(intact, Files.size(lastSegment()));
+    }
+
+    @Test
+    void corruptedTailIsTruncatedOnRecovery() throws Exception {
+        record("GET /a", "{\"a\":1}");
+        long intact = Files.size(lastSegment());
+        record("GET /b", "{\"b\":1}");
+        try (FileChannel channel = FileChannel.open(lastSegment(), StandardOpenOption.WRITE)) {
+            // the lengths are intact, only the body was not written completely
+            channel.write(ByteBuffer.wrap(new byte[] { 'x' }), channel.size() - 2);
+        }
+
+        open(RecordingMode.REPLAY);
+        assertEquals(1, store.size());
+        assertNull(store.get("GET /b"));
+        assertEquals(intact, Files.size(lastSegment()));
+
+        // the truncated segment is appended again
+        store.close();
+        record("GET /b", "{\"b\":2}");
+        open(RecordingMode.REPLAY);
+        assertEquals("{\"b\":2}", store.get("GET /b").getBodyAsString());
+    }
+
+    @Test
+    void compactionDeletesReplacedRecords() throws Exception {
+        open(RecordingMode.RECORD);
+        store.record("GET /kept", MockEntry.of("kept", MediaType.TEXT_PLAIN));
+        for (int i = 0; i < 500; i++) {
+            store.record("GET /replaced", MockEntry.of("replaced " + i + " ".repeat(100), MediaType.TEXT_PLAIN));
+        }
+        store.close();
+
+        List<Path> segments = segments();
+        long bytes = 0;
+        for (Path segment : segments) {
+            bytes += Files.size(segment);
+        }
+        // without compaction the 500 records would take about 70 segments
+        assertTrue(segments.size() <= 3, "segments not compacted: " + segments.size());
+        assertTrue(bytes <= 3 * SEGMENT_MAX_BYTES, "garbage not reclaimed: " + bytes);
+
+        open(RecordingMode.REPLAY);
+        assertEquals(2, store.size());
+        assertEquals("kept", store.get("GET /kept").getBodyAsString());
+        assertEquals("replaced 499" + " ".repeat(100), store.get("GET /replaced").getBodyAsString());
+    }
+
+    private void record(String key, String body) throws Exception {
+        open(RecordingMode.RECORD);
+        store.record(key, MockEntry.of(body, MediaType.APPLICATION_JSON));
+        // waits for the writer
+        store.close();
+    }
+
+    private void open(RecordingMode mode) throws ReflectiveOperationException {
+        store = new RecordingStore();
+        set("mode", mode);
+        set("directory", directory.toString());
+        set("segmentMaxBytes", SEGMENT_MAX_BYTES);
+        set("fsyncIntervalMillis", 1000L);
+        set("compactionRatio", 0.5);
+        store.onStartup(null);
+    }
+
+    private void set(String name, Object value) throws ReflectiveOperationException {
+        // the settings are injected by CDI
+        Field field = RecordingStore.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(store, value);
+    }
+
+    private Path lastSegment() throws IOException {
+        List<Path> segments = segments();
+        return segments.get(segments.size() - 1);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> Segment.parseId(file.getFileName().toString()) >= 0).sorted().collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.route;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Route precedence of {@link RouteTrie}
+ *
+ * @author speter555
+ */
+class RouteTrieTest {
+
+    private static final String GET = "GET";
+
+    @Test
+    void literalWinsOverParameterWhichWinsOverWildcard() {
+        RouteTrie trie = RouteTrie.compile(List.of("rest/users/*.json", "rest/users/{id}.json", "rest/users/12.json"));
+
+        assertEquals("rest/users/12.json", match(trie, GET, "rest/users/12", Map.of()).getFilePath());
+
+        RouteMatch parameter = match(trie, GET, "rest/users/7", Map.of());
+        assertEquals("rest/users/{id}.json", parameter.getFilePath());
+        assertEquals(Map.of("id", "7"), parameter.getParameters());
+
+        RouteMatch wildcard = match(trie, GET, "rest/users/7/orders/1", Map.of());
+        assertEquals("rest/users/*.json", wildcard.getFilePath());
+        assertEquals("7/orders/1", wildcard.getParameters().get(RouteMatch.WILDCARD));
+    }
+
+    @Test
+    void parameterIsTriedWhenLiteralBranchDoesNotMatch() {
+        RouteTrie trie = RouteTrie.compile(List.of("rest/users/12/profile.json", "rest/users/{id}/orders.json"));
+
+        RouteMatch match = match(trie, GET, "rest/users/12/orders", Map.of());
+        assertEquals("rest/users/{id}/orders.json", match.getFilePath());
+        assertEquals(Map.of("id", "12"), match.getParameters());
+        assertNull(match(trie, GET, "rest/users/12/settings", Map.of()));
+    }
+
+    @Test
+    void methodPredicateIsApplied() {
+        RouteTrie trie = RouteTrie.compile(List.of("rest/users.json", "rest/users.POST.json", "rest/orders.DELETE.json"));
+
+        assertEquals("rest/users.POST.json", match(trie, "POST", "rest/users", Map.of()).getFilePath());
+        assertEquals("rest/users.json", match(trie, GET, "rest/users", Map.of()).getFilePath());
+        assertEquals("rest/orders.DELETE.json", match(trie, "DELETE", "rest/orders", Map.of()).getFilePath());
+        assertNull(match(trie, GET, "rest/orders", Map.of()));
+    }
+
+    @Test
+    void routeWithMoreQueryPredicatesWins() {
+        RouteTrie trie = RouteTrie.compile(List.of("rest/search.json", "rest/search[type=user].json", "rest/search[type=user&page].json"));
+
+        Map<String, String> page = Map.of("type", "user", "page", "2");
+        assertEquals("rest/search[type=user&page].json", match(trie, GET, "rest/search", page).getFilePath());
+        assertEquals("rest/search[type=user].json", match(trie, GET, "rest/search", Map.of("type", "user")).getFilePath());
+        assertEquals("rest/search.json", match(trie, GET, "rest/search", Map.of("type", "admin", "page", "2")).getFilePath());
+    }
+
+    @Test
+    void methodPredicateWinsOverQueryPredicates() {
+        RouteTrie trie = RouteTrie.compile(List.of("rest/search[type=user&page].json", "rest/search.GET.json"));
+
+        Map<String, String> page = Map.of("type", "user", "page", "2");
+        assertEquals("rest/search.GET.json", match(trie, GET, "rest/search", page).getFilePath());
+        assertEquals("rest/search[type=user&page].json", match(trie, "POST", "rest/search", page).getFilePath());
+    }
+
+    @Test
+    void predicatesOfLiteralRouteFallBackToParameter() {
+        RouteTrie trie = RouteTrie.compile(List.of("rest/users/12.POST.json", "rest/users/{id}.json"));
+
+        assertEquals("rest/users/12.POST.json", match(trie, "POST", "rest/users/12", Map.of()).getFilePath());
+        assertEquals("rest/users/{id}.json", match(trie, GET, "rest/users/12", Map.of()).getFilePath());
+    }
+
+    private static RouteMatch match(RouteTrie trie, String method, String path, Map<String, String> query) {
+        return trie.match(method, path.split("/"), query);
+    }
+}
@@ -0,0 +1,192 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.template;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compiling and rendering of {@link ResponseTemplate}, with the escaping of the values by the media type.
+ *
+ * @author speter555
+ */
+class ResponseTemplateTest {
+
+    private static final String JSON = "application/json";
+
+    private static final String XML = "application/xml";
+
+    private final Map<String, AtomicLong> sequences = new HashMap<>();
+
+    private final Function<String, AtomicLong> counters = name -> sequences.computeIfAbsent(name, k -> new AtomicLong());
+
+    @Test
+    void textWithoutPlaceholderIsNotCompiled() {
+        assertFalse(ResponseTemplate.hasPlaceholder(bytes("{\"id\": 1}")));
+        assertTrue(ResponseTemplate.hasPlaceholder(bytes("{\"id\": {{path.id}}}")));
+        assertNull(ResponseTemplate.compile("{\"id\": 1}", JSON, counters));
+        assertNull(ResponseTemplate.compile("{\"id\": {{unknown}}}", JSON, counters));
+    }
+
+    @Test
+    void requestValues() {
+        ResponseTemplate template = compile("{{path.id}}/{{query.page}}/{{header.X-Request-Id}}/{{query.missing}}", "text/plain");
+
+        Context context = new Context().path("id", "7").query("page", "2").header("X-Request-Id", "abc");
+        assertEquals("7/2/abc/", render(template, context));
+    }
+
+    @Test
+    void unknownExpressionIsKeptAsText() {
+        ResponseTemplate template = compile("{{nope}} {{path.id}} {{now(", "text/plain");
+
+        assertEquals("{{nope}} 1 {{now(", render(template, new Context().path("id", "1")));
+    }
+
+    @Test
+    void quotedJsonValueIsEscapedString() {
+        ResponseTemplate template = compile("{\"name\": \"{{query.name}}\"}", JSON);
+
+        assertEquals("{\"name\": \"a\\\"b\\\\c\\n\"}", render(template, new Context().query("name", "a\"b\\c\n")));
+    }
+
+    @Test
+    void rawJsonBodyFieldIsInsertedAsValue() {
+        ResponseTemplate template = compile("{\"user\": {{body.user}}, \"city\": \"{{body.user.addresses.0.city}}\"}", JSON);
+
+        Context context = new Context().body("{\"user\": {\"addresses\": [{\"city\": \"Budapest\"}]}}");
+        assertEquals("{\"user\": {\"addresses\": [{\"city\": \"Budapest\"}]}, \"city\": \"Budapest\"}", render(template, context));
+    }
+
+    @Test
+    void xmlValueIsEscapedText() {
+        ResponseTemplate template = compile("<name a=\"{{query.name}}\">{{query.name}}</name>", XML);
+
+        assertEquals("<name a=\"&lt;&amp;&quot;&apos;&gt;\">&lt;&amp;&quot;&apos;&gt;</name>",
+                render(template, new Context().query("name", "<&\"'>")));
+    }
+
+    @Test
+    void multibyteValueIsUtf8() {
+        ResponseTemplate template = compile("\"{{query.name}}\"", JSON);
+
+        String name = "\u00e1rv\u00edzt\u0171r\u0151 \ud83d\ude00";
+        assertEquals('"' + name + '"', render(template, new Context().query("name", name)));
+    }
+
+    @Test
+    void countersAreOwnedByCaller() {
+        ResponseTemplate first = compile("{{seq()}} {{seq(orders)}}", "text/plain");
+        ResponseTemplate second = compile("{{seq(orders)}}", "text/plain");
+
+        assertEquals("1 1", render(first, new Context()));
+        assertEquals("2", render(second, new Context()));
+        assertEquals("2 3", render(first, new Context()));
+
+        // a recompiled template continues the counters
+        ResponseTemplate recompiled = compile("{{seq()}}", "text/plain");
+        assertEquals("3", render(recompiled, new Context()));
+    }
+
+    @Test
+    void nowMillisIsNumber() {
+        long before = System.currentTimeMillis();
+        String rendered = render(compile("{{now(millis)}}", JSON), new Context());
+
+        assertTrue(Long.parseLong(rendered) >= before);
+        assertNotNull(compile("{{now(yyyy-MM-dd)}}", JSON));
+    }
+
+    private ResponseTemplate compile(String text, String mediaType) {
+        ResponseTemplate template = ResponseTemplate.compile(text, mediaType, counters);
+        assertNotNull(template);
+        return template;
+    }
+
+    private static String render(ResponseTemplate template, TemplateContext context) {
+        return new String(template.render(context), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static final class Context implements TemplateContext {
+
+        private final Map<String, String> pathParameters = new HashMap<>();
+
+        private final Map<String, String> queryParameters = new HashMap<>();
+
+        private final Map<String, String> headers = new HashMap<>();
+
+        private String body;
+
+        Context path(String name, String value) {
+            pathParameters.put(name, value);
+            return this;
+        }
+
+        Context query(String name, String value) {
+            queryParameters.put(name, value);
+            return this;
+        }
+
+        Context header(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+
+        Context body(String value) {
+            body = value;
+            return this;
+        }
+
+        @Override
+        public String getPathParameter(String name) {
+            return pathParameters.get(name);
+        }
+
+        @Override
+        public String getQueryParameter(String name) {
+            return queryParameters.get(name);
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return headers.get(name);
+        }
+
+        @Override
+        public String getBody() {
+            return body;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.charset.StandardCharsets;
+
+import javax.ws.rs.core.MediaType;
+
+import hu.speter555.mockservice.cache.MockEntry;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Parsing of the Range header by {@link ByteRange}: a range is answered with 206, {@link ByteRange#UNSATISFIABLE} with
+ * 416, null with the whole body
+ *
+ * @author speter555
+ */
+class ByteRangeTest {
+
+    private static final long LENGTH = 100;
+
+    @Test
+    void closedRangeIsPartialContent() {
+        assertRange(0, 9, ByteRange.parse("bytes=0-9", LENGTH));
+        assertRange(50, 50, ByteRange.parse("bytes=50-50", LENGTH));
+        assertRange(10, 19, ByteRange.parse("BYTES= 10-19", LENGTH));
+        assertEquals("bytes 0-9/100", ByteRange.parse("bytes=0-9", LENGTH).toContentRange(LENGTH));
+    }
+
+    @Test
+    void rangeIsCutAtTheEndOfTheBody() {
+        assertRange(90, 99, ByteRange.parse("bytes=90-1000", LENGTH));
+        assertRange(90, 99, ByteRange.parse("bytes=90-", LENGTH));
+        assertEquals("bytes 90-99/100", ByteRange.parse("bytes=90-", LENGTH).toContentRange(LENGTH));
+    }
+
+    @Test
+    void suffixRangeIsTheEndOfTheBody() {
+        assertRange(80, 99, ByteRange.parse("bytes=-20", LENGTH));
+        assertRange(0, 99, ByteRange.parse("bytes=-1000", LENGTH));
+    }
+
+    @Test
+    void rangeOutsideOfTheBodyIsUnsatisfiable() {
+        assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=100-", LENGTH));
+        assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=200-300", LENGTH));
+        assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=-0", LENGTH));
+        assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=-10", 0));
+        assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=0-", 0));
+        assertEquals("bytes */100", ByteRange.UNSATISFIABLE.toContentRange(LENGTH));
+    }
+
+    @Test
+    void invalidOrMultipleRangesAreIgnored() {
+        assertNull(ByteRange.parse(null, LENGTH));
+        assertNull(ByteRange.parse("items=0-9", LENGTH));
+        assertNull(ByteRange.parse("bytes=0-9,20-29", LENGTH));
+        assertNull(ByteRange.parse("bytes=9-0", LENGTH));
+        assertNull(ByteRange.parse("bytes=10", LENGTH));
+        assertNull(ByteRange.parse("bytes=a-b", LENGTH));
+        assertNull(ByteRange.parse("bytes=-", LENGTH));
+    }
+
+    @Test
+    void rangeSelectsTheBytesOfTheBody() {
+        String body = "0123456789";
+        MockEntry entry = MockEntry.of(body.getBytes(StandardCharsets.UTF_8), MediaType.TEXT_PLAIN);
+        ByteRange range = ByteRange.parse("bytes=-3", body.length());
+
+        MockEntry part = entry.getRange((int) range.getFirst(), (int) range.getLength());
+        assertEquals("789", part.getBodyAsString());
+        assertEquals(3, part.getContentLength());
+        assertEquals("bytes 7-9/10", range.toContentRange(body.length()));
+    }
+
+    private static void assertRange(long first, long last, ByteRange range) {
+        assertEquals(first, range.getFirst());
+        assertEquals(last, range.getLast());
+        assertEquals(last - first + 1, range.getLength());
+    }
+}
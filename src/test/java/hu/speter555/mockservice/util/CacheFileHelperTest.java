@@ -0,0 +1,170 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import javax.ws.rs.core.MediaType;
+
+import hu.speter555.mockservice.cache.MockEntry;
+import hu.speter555.mockservice.metrics.MetricsRegistry;
+import hu.speter555.mockservice.metrics.PrometheusWriter;
+import hu.speter555.mockservice.resource.MockDirectory;
+import hu.speter555.mockservice.route.RouteTable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Mock files and redirect responses of {@link CacheFileHelper}, resolved like the mock requests: the redirect response of
+ * the path first, then the file of the matching route
+ *
+ * @author speter555
+ */
+class CacheFileHelperTest {
+
+    @TempDir
+    Path directory;
+
+    private final MockDirectory mockDirectory = new MockDirectory();
+
+    private final CacheFileHelper cacheFileHelper = new CacheFileHelper();
+
+    private final RouteTable routeTable = new RouteTable();
+
+    private final MetricsRegistry metricsRegistry = new MetricsRegistry();
+
+    @BeforeEach
+    void init() throws Exception {
+        write("rest/users.json", "{\"users\":[]}");
+        write("rest/users.POST.json", "{\"created\":true}");
+        write("rest/search.json", "{\"all\":true}");
+        write("rest/search[type=user].json", "{\"users\":true}");
+
+        set(mockDirectory, "directory", Optional.of(directory.toString()));
+        set(mockDirectory, "mapThreshold", Long.MAX_VALUE);
+        set(mockDirectory, "cacheFileHelper", cacheFileHelper);
+        mockDirectory.onStartup(null);
+
+        set(cacheFileHelper, "maxEntries", 100L);
+        set(cacheFileHelper, "maxBytes", 1024L * 1024);
+        set(cacheFileHelper, "negativeMaxEntries", 100);
+        set(cacheFileHelper, "negativeTtlMillis", 60_000L);
+        set(cacheFileHelper, "templatesEnabled", true);
+        set(cacheFileHelper, "mockDirectory", mockDirectory);
+        set(metricsRegistry, "enabled", true);
+        set(metricsRegistry, "maxLabels", 100);
+        set(cacheFileHelper, "metricsRegistry", metricsRegistry);
+        cacheFileHelper.init();
+
+        set(routeTable, "enabled", true);
+        set(routeTable, "mockDirectory", mockDirectory);
+    }
+
+    @AfterEach
+    void close() {
+        mockDirectory.close();
+    }
+
+    @Test
+    void cachedMockFileIsNotARedirectResponse() throws Exception {
+        assertEquals("{\"users\":[]}", resolve("GET", "rest/users", null));
+        assertNull(cacheFileHelper.getRedirectResponse("rest/users.json"));
+
+        // the routes with predicates are still matched after the plain file of the path is cached
+        assertEquals("{\"created\":true}", resolve("POST", "rest/users", null));
+        assertEquals("{\"all\":true}", resolve("GET", "rest/search", null));
+        assertEquals("{\"users\":true}", resolve("GET", "rest/search", "type=user"));
+    }
+
+    @Test
+    void redirectResponseTakesPrecedence() throws Exception {
+        resolve("GET", "rest/users", null);
+        MockEntry redirected = MockEntry.of("{\"upstream\":true}", MediaType.APPLICATION_JSON);
+        cacheFileHelper.putRedirectResponse("rest/users.json", redirected);
+
+        assertSame(redirected, cacheFileHelper.getRedirectResponse("rest/users.json"));
+        assertEquals("{\"upstream\":true}", resolve("POST", "rest/users", null));
+        // the mock file itself is not replaced
+        assertEquals("{\"users\":[]}", cacheFileHelper.getOrLoadResource("rest/users.json").getBodyAsString());
+    }
+
+    @Test
+    void invalidationRemovesRedirectResponse() throws Exception {
+        cacheFileHelper.putRedirectResponse("rest/users.json", MockEntry.of("{\"upstream\":true}", MediaType.APPLICATION_JSON));
+
+        cacheFileHelper.invalidate("rest/users.json");
+
+        assertNull(cacheFileHelper.getRedirectResponse("rest/users.json"));
+        assertEquals("{\"users\":[]}", resolve("GET", "rest/users", null));
+    }
+
+    @Test
+    void cacheCountersByRoute() throws Exception {
+        resolve("GET", "rest/users", null);
+        resolve("GET", "rest/users", null);
+        cacheFileHelper.putRedirectResponse("rest/search.json", MockEntry.of("{\"upstream\":true}", MediaType.APPLICATION_JSON));
+        resolve("GET", "rest/search", null);
+
+        PrometheusWriter writer = new PrometheusWriter();
+        metricsRegistry.writeTo(writer);
+        String metrics = writer.toString();
+        assertTrue(metrics.contains("mockservice_route_cache_misses_total{route=\"rest/users.json\"} 1\n"), metrics);
+        assertTrue(metrics.contains("mockservice_route_cache_hits_total{route=\"rest/users.json\"} 1\n"), metrics);
+        assertTrue(metrics.contains("mockservice_route_cache_hits_total{route=\"rest/search.json\"} 1\n"), metrics);
+        assertTrue(metrics.contains("mockservice_route_cache_evictions_total{route=\"rest/users.json\"} 0\n"), metrics);
+    }
+
+    /**
+     * Resolves the mock response like the mock requests without redirect header
+     */
+    private String resolve(String method, String path, String query) throws Exception {
+        MockEntry redirected = cacheFileHelper.getRedirectResponse(path + ".json");
+        if (redirected != null) {
+            return redirected.getBodyAsString();
+        }
+        String mockFile = routeTable.match(method, path, query).getFilePath();
+        return cacheFileHelper.getOrLoadResource(mockFile).getBodyAsString();
+    }
+
+    private void write(String filePath, String body) throws IOException {
+        Path file = directory.resolve(filePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void set(Object bean, String name, Object value) throws ReflectiveOperationException {
+        // the settings and the beans are injected by CDI
+        Field field = bean.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(bean, value);
+    }
+}
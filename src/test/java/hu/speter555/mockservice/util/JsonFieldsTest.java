@@ -0,0 +1,61 @@
+/*-
+ * #%L
+ * Mockservice
+ * %%
+ * Copyright (C) 2020 speter555
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package hu.speter555.mockservice.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Escaping of the JSON strings by {@link JsonFields}, shared by the access log, the fault bodies, the batch results and
+ * the templates.
+ *
+ * @author speter555
+ */
+class JsonFieldsTest {
+
+    @Test
+    void escapesQuotesBackslashAndControlCharacters() {
+        StringBuilder json = new StringBuilder();
+        JsonFields.appendString(json, "a\"b\\c\n\r\t\b\f\u0001 \u00e1");
+
+        assertEquals("\"a\\\"b\\\\c\\n\\r\\t\\b\\f\\u0001 \u00e1\"", json.toString());
+    }
+
+    @Test
+    void nullIsJsonNull() {
+        StringBuilder json = new StringBuilder("[");
+        JsonFields.appendString(json, null);
+
+        assertEquals("[null", json.toString());
+    }
+
+    @Test
+    void escapedStringIsUnquotedBack() {
+        String value = "line\nbreak \"quoted\" \\ \u001f";
+        StringBuilder json = new StringBuilder();
+        JsonFields.appendString(json, value);
+
+        assertEquals(value, JsonFields.unquote(json.toString()));
+        assertNull(JsonFields.escape('a'));
+        assertEquals("\\u001f", JsonFields.escape('\u001f'));
+    }
+}